@@ -0,0 +1,141 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.ShulkerBox;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.BlockStateMeta;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Realistic inputs for the codec benchmarks, built on a MockBukkit server.
+ *
+ * The codecs need a server for worlds, item meta and registries; MockBukkit provides those
+ * without a Minecraft runtime. One server per benchmark JVM, created on first use.
+ */
+final class Fixtures {
+
+    static final String WORLD = "world";
+    static final int PLAYER_SLOTS = 41;   // 36 storage + 4 armour + offhand
+    static final int ENDER_SLOTS = 27;
+
+    private static ServerMock server;
+    private static World world;
+
+    private Fixtures() { }
+
+    static synchronized World world() {
+        if (server == null) {
+            server = MockBukkit.mock();
+            world = server.addSimpleWorld(WORLD);
+        }
+        return world;
+    }
+
+    // ─────────────────────────── Locations / homes ───────────────────────────
+
+    static Location location(Random r) {
+        return new Location(world(),
+                r.nextInt(60_000) - 30_000 + r.nextDouble(),
+                r.nextInt(320) - 64 + r.nextDouble(),
+                r.nextInt(60_000) - 30_000 + r.nextDouble(),
+                r.nextFloat() * 360f - 180f,
+                r.nextFloat() * 180f - 90f);
+    }
+
+    static Map<String, Location> homes(int count, long seed) {
+        Random r = new Random(seed);
+        Map<String, Location> homes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) homes.put(i == 0 ? "home" : "base_" + i, location(r));
+        return homes;
+    }
+
+    // ─────────────────────────── Groups ───────────────────────────
+
+    /**
+     * LuckPerms-style group names, some with the casing and spacing players type in by hand.
+     */
+    static List<String> groups(int count) {
+        String[] tracks = {"default", "member", "vip", "vip_plus", "builder", "helper", "moderator", "admin"};
+        List<String> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String g = tracks[i % tracks.length] + (i < tracks.length ? "" : "." + i);
+            out.add(i % 5 == 4 ? " " + g.toUpperCase() + " " : g);
+        }
+        return out;
+    }
+
+    // ─────────────────────────── Items ───────────────────────────
+
+    /**
+     * Player inventory contents.
+     *
+     * @param layout "empty", "survival" (typical mid-game inventory) or "shulkers"
+     *               (every storage slot a shulker box filled with 27 enchanted items)
+     */
+    static ItemStack[] inventory(String layout) {
+        world();
+        ItemStack[] inv = new ItemStack[PLAYER_SLOTS];
+        switch (layout) {
+            case "empty" -> { }
+            case "survival" -> {
+                inv[0] = enchanted(Material.NETHERITE_SWORD);
+                inv[1] = enchanted(Material.DIAMOND_PICKAXE);
+                for (int i = 2; i < 20; i++) inv[i] = new ItemStack(i % 2 == 0 ? Material.STONE : Material.DIAMOND, 64);
+                inv[20] = filledShulker();
+            }
+            case "shulkers" -> {
+                for (int i = 0; i < 36; i++) inv[i] = filledShulker();
+            }
+            default -> throw new IllegalArgumentException(layout);
+        }
+        return inv;
+    }
+
+    static ItemStack enchanted(Material type) {
+        ItemStack it = new ItemStack(type);
+        it.addUnsafeEnchantment(Enchantment.SHARPNESS, 5);
+        it.addUnsafeEnchantment(Enchantment.UNBREAKING, 3);
+        it.addUnsafeEnchantment(Enchantment.MENDING, 1);
+        return it;
+    }
+
+    static ItemStack filledShulker() {
+        ItemStack box = new ItemStack(Material.SHULKER_BOX);
+        BlockStateMeta meta = (BlockStateMeta) box.getItemMeta();
+        ShulkerBox state = (ShulkerBox) meta.getBlockState();
+        ItemStack[] contents = new ItemStack[27];
+        for (int i = 0; i < contents.length; i++) contents[i] = enchanted(Material.DIAMOND_SWORD);
+        state.getInventory().setContents(contents);
+        meta.setBlockState(state);
+        box.setItemMeta(meta);
+        return box;
+    }
+
+    // ─────────────────────────── Potion effects ───────────────────────────
+
+    static List<PotionEffect> effects(int count) {
+        world();
+        PotionEffectType[] types = {
+                PotionEffectType.SPEED, PotionEffectType.STRENGTH, PotionEffectType.REGENERATION,
+                PotionEffectType.RESISTANCE, PotionEffectType.FIRE_RESISTANCE, PotionEffectType.NIGHT_VISION,
+                PotionEffectType.WATER_BREATHING, PotionEffectType.HASTE,
+        };
+        List<PotionEffect> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            out.add(new PotionEffect(types[i % types.length], 20 * 60 * (i + 1), i % 3, i % 4 == 0, i % 2 == 0));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,71 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.GroupCodec;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GroupCodec JSON/CSV paths used by the group sync, including the merge done on import.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupCodecBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int groups;
+
+    private List<String> names;
+    private String json;
+    private String otherJson;
+    private String csv;
+
+    @Setup
+    public void setup() {
+        names = Fixtures.groups(groups);
+        json = GroupCodec.serialize(names);
+        otherJson = GroupCodec.serialize(Fixtures.groups(groups + 3).subList(3, groups + 3));
+        csv = GroupCodec.toCsv(names);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return GroupCodec.serialize(names);
+    }
+
+    @Benchmark
+    public Set<String> deserializeToSet() {
+        return GroupCodec.deserializeToSet(json);
+    }
+
+    @Benchmark
+    public String toCsv() {
+        return GroupCodec.toCsv(names);
+    }
+
+    @Benchmark
+    public Set<String> fromCsv() {
+        return GroupCodec.fromCsv(csv);
+    }
+
+    @Benchmark
+    public String mergeJsonGroups() {
+        return GroupCodec.mergeJsonGroups(json, otherJson);
+    }
+}
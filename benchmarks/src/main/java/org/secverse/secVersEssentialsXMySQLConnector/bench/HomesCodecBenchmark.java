@@ -0,0 +1,52 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.HomesCodec;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HomesCodec JSON round trip from a single home up to a heavy /sethome user.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HomesCodecBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int homes;
+
+    private Map<String, Location> map;
+    private String json;
+
+    @Setup
+    public void setup() {
+        map = Fixtures.homes(homes, 11);
+        json = HomesCodec.serialize(map);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return HomesCodec.serialize(map);
+    }
+
+    @Benchmark
+    public Map<String, Location> deserialize() {
+        return HomesCodec.deserialize(json);
+    }
+}
@@ -0,0 +1,85 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.secverse.secVersEssentialsXMySQLConnector.helper.InvalidationBus;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * End-to-end check of InvalidationBus delivery between servers, over LoopbackTransport.
+ *
+ * Three buses ("a", "b", "c") share one hub. A change committed on "a" must reach the others
+ * with its domains and version, never "a" itself, and a per-server row must only invalidate
+ * the server it belongs to. Exits non-zero on the first mismatch.
+ *
+ * Like UidCacheSoak this is a manual harness, not part of any build:
+ *
+ *   java -cp benchmarks/target/benchmarks.jar \
+ *        org.secverse.secVersEssentialsXMySQLConnector.bench.InvalidationBusCheck
+ */
+public final class InvalidationBusCheck {
+
+    private record Seen(UUID uuid, int domains, long version) { }
+
+    public static void main(String[] args) {
+        LoopbackTransport.Hub hub = new LoopbackTransport.Hub();
+        InvalidationBus a = new InvalidationBus(new LoopbackTransport(hub), "a");
+        InvalidationBus b = new InvalidationBus(new LoopbackTransport(hub), "b");
+        InvalidationBus c = new InvalidationBus(new LoopbackTransport(hub), "c");
+        List<Seen> onA = start(a);
+        List<Seen> onB = start(b);
+        List<Seen> onC = start(c);
+
+        UUID player = UUID.randomUUID();
+
+        // Network-wide row: every other server refetches
+        a.changed(player, null, PlayerSession.BALANCE, 7L);
+        expect("global change on b", onB, new Seen(player, PlayerSession.BALANCE, 7L));
+        expect("global change on c", onC, new Seen(player, PlayerSession.BALANCE, 7L));
+        expect("own message on a", onA);
+
+        // Per-server row of b, written from a: only b refetches
+        a.changed(player, "b", PlayerSession.HOMES, 8L);
+        expect("b's profile row on b", onB, new Seen(player, PlayerSession.HOMES, 8L));
+        expect("b's profile row on c", onC);
+        expect("own message on a", onA);
+
+        // A row carrying both kinds of domain keeps only the global ones elsewhere
+        b.changed(player, "b", PlayerSession.HOMES | PlayerSession.BALANCE, 9L);
+        expect("mixed row on a", onA, new Seen(player, PlayerSession.BALANCE, 9L));
+        expect("mixed row on c", onC, new Seen(player, PlayerSession.BALANCE, 9L));
+        expect("own message on b", onB);
+
+        // After stop a bus neither sends to nor hears from the hub
+        c.stop();
+        a.changed(player, null, PlayerSession.BALANCE, 10L);
+        expect("stopped bus c", onC);
+        expect("global change on b after c stopped", onB, new Seen(player, PlayerSession.BALANCE, 10L));
+
+        if (a.getSent() != 3 || b.getSent() != 1 || b.getReceived() != 3) {
+            fail("counters sent(a)=" + a.getSent() + " sent(b)=" + b.getSent() + " received(b)=" + b.getReceived());
+        }
+        System.out.println("PASS");
+    }
+
+    private static List<Seen> start(InvalidationBus bus) {
+        List<Seen> seen = new ArrayList<>();
+        bus.start((uuid, domains, version) -> seen.add(new Seen(uuid, domains, version)));
+        return seen;
+    }
+
+    // Delivery is synchronous, so whatever a bus received is already in its list
+    private static void expect(String what, List<Seen> actual, Seen... expected) {
+        if (!actual.equals(List.of(expected))) fail(what + ": expected " + List.of(expected) + ", got " + actual);
+        actual.clear();
+    }
+
+    private static void fail(String why) {
+        System.out.println("FAIL: " + why);
+        System.exit(1);
+    }
+
+    private InvalidationBusCheck() { }
+}
@@ -0,0 +1,62 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.ItemStackCodec;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inventory blob encode/decode (Bukkit object stream, plain as shipped or gzipped as with
+ * sync.compress_inventories) and the main-thread copy taken before encoding, from an empty
+ * inventory up to 36 full shulker boxes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemStackCodecBenchmark {
+
+    @Param({"empty", "survival", "shulkers"})
+    public String layout;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    private ItemStack[] contents;
+    private byte[] blob;
+
+    @Setup
+    public void setup() {
+        contents = Fixtures.inventory(layout);
+        blob = ItemStackCodec.encode(contents, compress);
+        if (blob == null) throw new IllegalStateException("encode failed for " + layout);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return ItemStackCodec.encode(contents, compress);
+    }
+
+    @Benchmark
+    public ItemStack[] decode() {
+        return ItemStackCodec.decode(blob, Fixtures.PLAYER_SLOTS);
+    }
+
+    @Benchmark
+    public ItemStack[] copyOf() {
+        return ItemStackCodec.copyOf(contents);
+    }
+}
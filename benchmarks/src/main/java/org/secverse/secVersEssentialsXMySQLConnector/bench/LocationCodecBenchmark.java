@@ -0,0 +1,48 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.LocationCodec;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LocationCodec round trip for a single last-location / logout-location value.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationCodecBenchmark {
+
+    private Location location;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        location = Fixtures.location(new Random(7));
+        encoded = LocationCodec.serialize(location);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return LocationCodec.serialize(location);
+    }
+
+    @Benchmark
+    public Location deserialize() {
+        return LocationCodec.deserialize(encoded);
+    }
+}
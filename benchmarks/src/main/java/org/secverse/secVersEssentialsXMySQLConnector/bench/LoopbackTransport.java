@@ -0,0 +1,49 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.secverse.secVersEssentialsXMySQLConnector.helper.InvalidationBus;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process InvalidationBus transport for running buses without a proxy, used by
+ * InvalidationBusCheck. Every transport started on the same Hub receives every message sent
+ * on it, including its own, just as with a proxy that echoes; the bus drops its own messages
+ * by origin.
+ *
+ * Delivery is synchronous on the sending thread and each receiver gets its own copy.
+ */
+public final class LoopbackTransport implements InvalidationBus.Transport {
+
+    /**
+     * Stands in for the proxy: connects the transports of several buses.
+     */
+    public static final class Hub {
+        private final List<Consumer<byte[]>> receivers = new CopyOnWriteArrayList<>();
+    }
+
+    private final Hub hub;
+    private Consumer<byte[]> receiver;
+
+    public LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        hub.receivers.add(receiver);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (Consumer<byte[]> r : hub.receivers) r.accept(message.clone());
+    }
+
+    @Override
+    public void stop() {
+        if (receiver != null) hub.receivers.remove(receiver);
+        receiver = null;
+    }
+}
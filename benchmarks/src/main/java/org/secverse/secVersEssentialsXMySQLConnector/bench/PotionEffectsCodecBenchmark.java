@@ -0,0 +1,45 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.bukkit.potion.PotionEffect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PotionEffectsCodec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Potion effect JSON builder, written with every player-data snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PotionEffectsCodecBenchmark {
+
+    @Param({"0", "3", "12"})
+    public int effects;
+
+    private List<PotionEffect> list;
+
+    @Setup
+    public void setup() {
+        list = Fixtures.effects(effects);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return PotionEffectsCodec.serialize(list);
+    }
+}
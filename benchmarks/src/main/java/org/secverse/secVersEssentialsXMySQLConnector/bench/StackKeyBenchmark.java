@@ -0,0 +1,95 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.XxHash64;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dupe audit content key: old SHA-256 + Base64 String key vs xxHash64 long key.
+ *
+ * Item serialization itself needs a running server (registries, data components), so the
+ * payloads stand in for the byte form of one stack. Sizes follow Paper's serializeAsBytes
+ * output for the named items: a plain stack, an enchanted and renamed sword and a shulker
+ * box filled with 27 enchanted items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackKeyBenchmark {
+
+    @Param({"plain", "enchanted", "shulker"})
+    public String item;
+
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        int size = switch (item) {
+            case "plain" -> 48;
+            case "enchanted" -> 320;
+            case "shulker" -> 9_500;
+            default -> throw new IllegalArgumentException(item);
+        };
+        payload = Payloads.itemBytes(size, item.hashCode());
+    }
+
+    @Benchmark
+    public String sha256Base64() throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        return Base64.getEncoder().encodeToString(md.digest(payload));
+    }
+
+    @Benchmark
+    public long xxHash64() {
+        return XxHash64.hash(payload);
+    }
+
+    /**
+     * Byte payloads shaped like serialized item NBT: repeated component keys with random values.
+     */
+    static final class Payloads {
+        private static final byte[][] KEYS = {
+                "minecraft:enchantments".getBytes(StandardCharsets.UTF_8),
+                "minecraft:custom_name".getBytes(StandardCharsets.UTF_8),
+                "minecraft:container".getBytes(StandardCharsets.UTF_8),
+                "minecraft:sharpness".getBytes(StandardCharsets.UTF_8),
+                "minecraft:unbreaking".getBytes(StandardCharsets.UTF_8),
+                "minecraft:diamond_sword".getBytes(StandardCharsets.UTF_8),
+        };
+
+        static byte[] itemBytes(int size, long seed) {
+            Random r = new Random(seed);
+            byte[] out = new byte[size];
+            int p = 0;
+            while (p < size) {
+                byte[] k = KEYS[r.nextInt(KEYS.length)];
+                int n = Math.min(k.length, size - p);
+                System.arraycopy(k, 0, out, p, n);
+                p += n;
+                for (int i = 0; i < 6 && p < size; i++) out[p++] = (byte) r.nextInt();
+            }
+            return out;
+        }
+
+        private Payloads() { }
+    }
+}
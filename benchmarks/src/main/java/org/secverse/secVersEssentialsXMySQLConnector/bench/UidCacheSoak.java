@@ -0,0 +1,125 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench;
+
+import org.secverse.secVersEssentialsXMySQLConnector.helper.BloomFilter;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.UidHolderCache;
+
+import java.util.SplittableRandom;
+
+/**
+ * Soak run for the shulker UID registry's in-memory structures.
+ *
+ * Pushes millions of UID sightings through UidHolderCache and BloomFilter the way
+ * ItemUidRegistry does (hot set of traded shulkers plus a long tail of one-off UIDs) and
+ * checks three bounds: used heap stays under a fixed budget, the cache never holds more than
+ * its capacity, and at least MIN_SKIP_RATE of sightings skip the DB write. Exits non-zero if
+ * any of them fails.
+ *
+ * This is a manual harness, not part of any build: run it after changing either structure.
+ *
+ *   java -Xmx64m -cp benchmarks/target/benchmarks.jar \
+ *        org.secverse.secVersEssentialsXMySQLConnector.bench.UidCacheSoak [sightings] [budgetMb]
+ */
+public final class UidCacheSoak {
+
+    // Requested capacity; the cache rounds it up to a power of two
+    private static final int CACHE_CAPACITY = 10_000;
+    // 70% of sightings are hot UIDs that stay cached; a few of those are rewrites or handoffs
+    private static final double MIN_SKIP_RATE = 0.60;
+
+    public static void main(String[] args) {
+        long sightings = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+        long budgetBytes = (args.length > 1 ? Long.parseLong(args[1]) : 48L) << 20;
+
+        UidHolderCache cache = new UidHolderCache(CACHE_CAPACITY, 3_600_000L);
+        BloomFilter registered = new BloomFilter(200_000, 0.01);
+        SplittableRandom rnd = new SplittableRandom(42);
+
+        // 2k hot UIDs moving between 500 players, everything else is a new UID
+        long[] hot = new long[2_000 * 2];
+        for (int i = 0; i < hot.length; i++) hot[i] = rnd.nextLong();
+
+        Runtime rt = Runtime.getRuntime();
+        long baseline = usedAfterGc(rt);
+        long peak = 0;
+        int maxCached = 0;
+        long writes = 0, skips = 0, bloomResets = 0;
+        long nowMs = 0;
+
+        long started = System.nanoTime();
+        for (long n = 1; n <= sightings; n++) {
+            nowMs += 5; // ~200 sightings per second of simulated uptime
+            long uHi, uLo, hHi;
+            if (rnd.nextInt(10) < 7) {
+                // Hot shulkers change hands every ~1M sightings
+                int h = rnd.nextInt(hot.length / 2);
+                uHi = hot[h * 2];
+                uLo = hot[h * 2 + 1];
+                hHi = (h * 31L + n / 1_000_000) % 500;
+            } else {
+                uHi = rnd.nextLong();
+                uLo = rnd.nextLong();
+                hHi = rnd.nextInt(500);
+            }
+            long hLo = ~hHi;
+
+            int slot = cache.find(uHi, uLo, nowMs);
+            if (slot >= 0 && cache.holderHi(slot) == hHi && cache.holderLo(slot) == hLo
+                    && nowMs - cache.writtenAt(slot) < 600_000L) {
+                skips++;
+            } else if (slot < 0 && registered.mightContain(uHi ^ hLo, uLo ^ hHi)) {
+                cache.put(uHi, uLo, hHi, hLo, nowMs, nowMs);
+                skips++;
+            } else {
+                if (slot >= 0) cache.update(slot, hHi, hLo, nowMs);
+                else cache.put(uHi, uLo, hHi, hLo, nowMs, nowMs);
+                if (registered.isSaturated()) {
+                    registered.clear();
+                    bloomResets++;
+                }
+                registered.put(uHi ^ hLo, uLo ^ hHi);
+                writes++;
+            }
+
+            maxCached = Math.max(maxCached, cache.size());
+            if (n % 2_000_000 == 0) {
+                long used = usedAfterGc(rt) - baseline;
+                peak = Math.max(peak, used);
+                System.out.printf("sightings=%,d cached=%,d evictions=%,d expirations=%,d heapDelta=%,d KB%n",
+                        n, cache.size(), cache.evictions(), cache.expirations(), used >> 10);
+            }
+        }
+        long tookMs = (System.nanoTime() - started) / 1_000_000;
+
+        long fixed = cache.sizeInBytes() + registered.sizeInBytes();
+        System.out.printf("done: sightings=%,d writes=%,d skips=%,d bloomResets=%d in %,d ms%n",
+                sightings, writes, skips, bloomResets, tookMs);
+        System.out.printf("structures=%,d KB peakHeapDelta=%,d KB budget=%,d KB%n",
+                fixed >> 10, peak >> 10, budgetBytes >> 10);
+        double skipRate = (double) skips / sightings;
+        System.out.printf("maxCached=%,d capacity=%,d skipRate=%.3f min=%.2f%n",
+                maxCached, cache.capacity(), skipRate, MIN_SKIP_RATE);
+
+        boolean ok = true;
+        if (peak > budgetBytes) {
+            System.out.println("FAIL: heap budget exceeded");
+            ok = false;
+        }
+        if (maxCached > cache.capacity()) {
+            System.out.println("FAIL: cache grew past its capacity");
+            ok = false;
+        }
+        if (skipRate < MIN_SKIP_RATE) {
+            System.out.println("FAIL: skip rate below bound");
+            ok = false;
+        }
+        if (!ok) System.exit(1);
+        System.out.println("PASS");
+    }
+
+    private static long usedAfterGc(Runtime rt) {
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private UidCacheSoak() { }
+}
@@ -0,0 +1,169 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.db;
+
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synthetic players and payloads shaped like what the plugin writes.
+ *
+ * Inventory blobs are random bytes: the real ones are gzip output and do not compress
+ * further. Sizes are typical for a mid-game survival inventory.
+ */
+final class Dataset {
+
+    static final int INV_MAIN_BYTES = 3_500;
+    static final int INV_ARMOR_BYTES = 600;
+    static final int INV_OFFHAND_BYTES = 150;
+    static final int ENDER_BYTES = 2_500;
+    static final int VARIANTS = 16;
+
+    final UUID[] players;
+    final UUID[] itemUids;
+    final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private final byte[][] invMain = new byte[VARIANTS][];
+    private final byte[][] invArmor = new byte[VARIANTS][];
+    private final byte[][] invOffhand = new byte[VARIANTS][];
+    private final byte[][] ender = new byte[VARIANTS][];
+    private final String[] homes = new String[VARIANTS];
+
+    Dataset(int playerCount, long seed) {
+        SplittableRandom r = new SplittableRandom(seed);
+        players = new UUID[playerCount];
+        for (int i = 0; i < playerCount; i++) players[i] = new UUID(r.nextLong(), r.nextLong());
+        itemUids = new UUID[playerCount * 2];
+        for (int i = 0; i < itemUids.length; i++) itemUids[i] = new UUID(r.nextLong(), r.nextLong());
+
+        for (int v = 0; v < VARIANTS; v++) {
+            invMain[v] = bytes(r, INV_MAIN_BYTES);
+            invArmor[v] = bytes(r, INV_ARMOR_BYTES);
+            invOffhand[v] = bytes(r, INV_OFFHAND_BYTES);
+            ender[v] = bytes(r, ENDER_BYTES);
+            homes[v] = homesJson(r, 1 + v * 3);
+        }
+    }
+
+    String name(UUID player) {
+        return "p" + Long.toHexString(player.getMostSignificantBits()).substring(0, 8);
+    }
+
+    String homes(SplittableRandom r) { return homes[r.nextInt(VARIANTS)]; }
+
+    String location(SplittableRandom r) {
+        return String.format(Locale.ROOT, "world,%.3f,%.3f,%.3f,%.1f,%.1f",
+                r.nextDouble(-30_000, 30_000), r.nextDouble(-64, 320), r.nextDouble(-30_000, 30_000),
+                r.nextDouble(-180, 180), r.nextDouble(-90, 90));
+    }
+
+    String group(SplittableRandom r) {
+        String[] groups = {"default", "member", "vip", "vip_plus", "builder", "moderator"};
+        return groups[r.nextInt(groups.length)];
+    }
+
+    /**
+     * Whole per-server profile, written unconditionally.
+     */
+    DBCommands.ServerProfile profile(UUID player, SplittableRandom r) {
+        DBCommands.ServerProfile sp = new DBCommands.ServerProfile();
+        sp.uuid = player;
+        sp.serverName = DbBench.SERVER;
+        sp.groupName = group(r);
+        sp.lastLocation = location(r);
+        sp.homes = homes(r);
+        sp.homesVersion = -1;
+        sp.groupVersion = -1;
+        sp.locationVersion = -1;
+        return sp;
+    }
+
+    /**
+     * Full player state as the snapshot pipeline writes it.
+     */
+    DBCommands.UserState state(UUID player, SplittableRandom r) {
+        int v = r.nextInt(VARIANTS);
+        DBCommands.UserState s = new DBCommands.UserState();
+        s.uuid = player;
+        s.serverName = DbBench.SERVER;
+        s.invMain = invMain[v];
+        s.invOffhand = invOffhand[v];
+        s.invArmor = invArmor[v];
+        s.enderChest = ender[v];
+        s.xpLevel = r.nextInt(100);
+        s.xpTotal = s.xpLevel * 30;
+        s.xpProgress = (float) r.nextDouble();
+        s.health = 1 + r.nextInt(20);
+        s.maxHealth = 20;
+        s.foodLevel = r.nextInt(21);
+        s.saturation = (float) r.nextDouble(0, 5);
+        s.exhaustion = (float) r.nextDouble(0, 4);
+        s.gameMode = "SURVIVAL";
+        s.potionEffects = "[{\"type\":\"minecraft:speed\",\"duration\":2400,\"amplifier\":1,\"ambient\":false,\"particles\":true}]";
+        s.statsJson = "{}";
+        s.lastDeathLoc = location(r);
+        s.bedSpawnLoc = location(r);
+        // Unconditional writes
+        s.inventoryVersion = -1;
+        s.xpVersion = -1;
+        s.vitalsVersion = -1;
+        s.metaVersion = -1;
+        return s;
+    }
+
+    /**
+     * Inserts every player into all tables, plus two shulker UID sightings per player.
+     */
+    void seed(DBCommands db) throws SQLException {
+        SplittableRandom r = new SplittableRandom(7);
+        final int chunk = 500;
+        for (int from = 0; from < players.length; from += chunk) {
+            int to = Math.min(players.length, from + chunk);
+            final int start = from;
+            db.inTransaction(() -> {
+                for (int i = start; i < to; i++) {
+                    UUID p = players[i];
+                    long ts = clock.incrementAndGet();
+                    db.upsertGlobalUserIfVersion(p, name(p), BigDecimal.valueOf(r.nextLong(0, 10_000_000), 2), -1, ts);
+                    db.upsertServerProfileIfVersion(profile(p, r), ts);
+                    db.upsertUserStateIfVersion(state(p, r), ts);
+                }
+                List<DBCommands.ItemUidSighting> sightings = new ArrayList<>();
+                for (int i = start * 2; i < to * 2; i++) sightings.add(sighting(itemUids[i], players[i / 2], clock.get()));
+                db.upsertItemUids(sightings);
+                return null;
+            });
+        }
+        db.upsertServerRegistry(DbBench.SERVER, true);
+    }
+
+    DBCommands.ItemUidSighting sighting(UUID uid, UUID holder, long ts) {
+        DBCommands.ItemUidSighting s = new DBCommands.ItemUidSighting();
+        s.uid = uid;
+        s.holder = holder;
+        s.serverName = DbBench.SERVER;
+        s.lastSeen = ts;
+        return s;
+    }
+
+    private static byte[] bytes(SplittableRandom r, int n) {
+        byte[] b = new byte[n];
+        r.nextBytes(b);
+        return b;
+    }
+
+    private String homesJson(SplittableRandom r, int count) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("\"home").append(i).append("\":\"").append(location(r)).append('"');
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,286 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.db;
+
+import org.HdrHistogram.Histogram;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.database;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and throughput harness for every DBCommands statement against a local database.
+ *
+ * Starts a throwaway MariaDB/MySQL on 127.0.0.1 (or uses an existing one with --host/--port),
+ * creates the schema with the plugin's own database.setupTable(), seeds N synthetic players
+ * and then runs each operation for a fixed time with T threads. Every thread has its own
+ * connection, like T servers sharing the database. Latencies go into HdrHistograms.
+ *
+ * Output (--out, default dbbench-results/):
+ *   summary.csv     one line per operation: ops/s and p50/p99/p999/max in microseconds
+ *   &lt;op&gt;.hgrm      full percentile distribution of that operation
+ *
+ * With --baseline &lt;old summary.csv&gt; each operation is compared to the old numbers and the
+ * run exits with status 2 if p99 got worse or throughput dropped by more than --tolerance.
+ *
+ *   java -cp benchmarks/target/benchmarks.jar \
+ *        org.secverse.secVersEssentialsXMySQLConnector.bench.db.DbBench \
+ *        --players 5000 --threads 4 --seconds 10 --baseline old/summary.csv
+ *
+ * Options: --players --threads --seconds --warmup --ops (comma separated subset) --out
+ *          --baseline --tolerance (0.10) --bin (server binaries dir) --port (33906)
+ *          --host/--user/--password (use a running server instead of starting one)
+ */
+public final class DbBench {
+
+    static final String SERVER = "bench-1";
+    static final String SCHEMA = "essentials_bench";
+    private static final long HIGHEST_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parseArgs(args);
+        int players = Integer.parseInt(opt.getOrDefault("players", "5000"));
+        int threads = Integer.parseInt(opt.getOrDefault("threads", "4"));
+        int seconds = Integer.parseInt(opt.getOrDefault("seconds", "10"));
+        int warmup = Integer.parseInt(opt.getOrDefault("warmup", "3"));
+        double tolerance = Double.parseDouble(opt.getOrDefault("tolerance", "0.10"));
+        Path out = Path.of(opt.getOrDefault("out", "dbbench-results"));
+
+        LocalDbServer local = null;
+        String host = opt.get("host");
+        int port = Integer.parseInt(opt.getOrDefault("port", "33906"));
+        String user = opt.getOrDefault("user", "root");
+        String password = opt.getOrDefault("password", "");
+        try {
+            if (host == null) {
+                local = LocalDbServer.start(opt.containsKey("bin") ? Path.of(opt.get("bin")) : null, port);
+                host = local.host;
+                local.recreateDatabase(SCHEMA);
+                System.out.println("[DbBench] started local " + local.flavour + " on " + host + ":" + port);
+            }
+
+            Dataset data = new Dataset(players, 42);
+            Conn setup = new Conn(host, port, user, password);
+            setup.db.setupTable();
+            long seedStart = System.nanoTime();
+            data.seed(setup.cmd);
+            System.out.printf(Locale.ROOT, "[DbBench] seeded %d players in %d ms%n",
+                    players, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - seedStart));
+            setup.db.close();
+
+            Map<String, Op> ops = Ops.all(data);
+            if (opt.containsKey("ops")) ops.keySet().retainAll(Set.of(opt.get("ops").split(",")));
+
+            List<Result> results = new ArrayList<>();
+            for (Op op : ops.values()) {
+                if (warmup > 0) run(op, data, host, port, user, password, threads, warmup);
+                Result r = run(op, data, host, port, user, password, threads, seconds);
+                results.add(r);
+                System.out.println(r.line());
+            }
+
+            Files.createDirectories(out);
+            Report.write(out, threads, players, results);
+            System.out.println("[DbBench] results written to " + out.toAbsolutePath());
+
+            if (opt.containsKey("baseline")) {
+                int regressions = Report.compare(Path.of(opt.get("baseline")), results, tolerance, System.out);
+                if (regressions > 0) System.exit(2);
+            }
+        } finally {
+            if (local != null) local.close();
+        }
+    }
+
+    /**
+     * Runs one operation with the given number of threads for the given time.
+     */
+    private static Result run(Op op, Dataset data, String host, int port, String user, String password,
+                              int threads, int seconds) throws InterruptedException, SQLException {
+        List<Conn> conns = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) conns.add(new Conn(host, port, user, password));
+
+        Histogram[] hist = new Histogram[threads];
+        long[] errors = new long[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] window = new long[2];
+        List<Thread> workers = new ArrayList<>(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int idx = t;
+            hist[t] = new Histogram(HIGHEST_NANOS, 3);
+            Thread th = new Thread(() -> {
+                Worker w = new Worker(idx, data, conns.get(idx).cmd);
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                long stopAt = window[1];
+                while (System.nanoTime() < stopAt) {
+                    try {
+                        if (op.prepare != null) op.prepare.run(w.cmd, w);
+                        long s = System.nanoTime();
+                        op.timed.run(w.cmd, w);
+                        hist[idx].recordValue(Math.min(System.nanoTime() - s, HIGHEST_NANOS));
+                    } catch (SQLException ex) {
+                        errors[idx]++;
+                    }
+                }
+            }, "dbbench-" + op.name + "-" + t);
+            workers.add(th);
+            th.start();
+        }
+
+        ready.await();
+        window[0] = System.nanoTime();
+        window[1] = window[0] + TimeUnit.SECONDS.toNanos(seconds);
+        go.countDown();
+        for (Thread th : workers) th.join();
+        long elapsed = System.nanoTime() - window[0];
+        for (Conn c : conns) c.db.close();
+
+        Histogram merged = new Histogram(HIGHEST_NANOS, 3);
+        long errs = 0;
+        for (int t = 0; t < threads; t++) {
+            merged.add(hist[t]);
+            errs += errors[t];
+        }
+        return new Result(op.name, merged, elapsed, errs);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected --key value, got " + args[i]);
+            }
+            out.put(args[i].substring(2), args[++i]);
+        }
+        return out;
+    }
+
+    // ─────────────────────────── Plumbing ───────────────────────────
+
+    /**
+     * One connection opened through the plugin's own database class.
+     */
+    static final class Conn {
+        final database db;
+        final DBCommands cmd;
+
+        Conn(String host, int port, String user, String password) throws SQLException {
+            YamlConfiguration cfg = new YamlConfiguration();
+            cfg.set("mysql.host", host);
+            cfg.set("mysql.port", port);
+            cfg.set("mysql.database", SCHEMA);
+            cfg.set("mysql.user", user);
+            cfg.set("mysql.password", password);
+            this.db = new database(cfg);
+            db.connect();
+            this.cmd = new DBCommands(db.getConnection());
+        }
+    }
+
+    /**
+     * Per-thread state handed to every operation.
+     */
+    static final class Worker {
+        final int index;
+        final Dataset data;
+        final DBCommands cmd;
+        final SplittableRandom rnd;
+        final UUID scratch;
+
+        Worker(int index, Dataset data, DBCommands cmd) {
+            this.index = index;
+            this.data = data;
+            this.cmd = cmd;
+            this.rnd = new SplittableRandom(1000L + index);
+            this.scratch = new UUID(0xBE7C4L, index);
+        }
+
+        UUID player() { return data.players[rnd.nextInt(data.players.length)]; }
+
+        long ts() { return data.clock.incrementAndGet(); }
+    }
+
+    @FunctionalInterface
+    interface Step {
+        void run(DBCommands db, Worker w) throws SQLException;
+    }
+
+    /**
+     * A benchmarked call. prepare runs untimed before each timed call (e.g. recreate the row
+     * a delete removes); it may be null.
+     */
+    static final class Op {
+        final String name;
+        final Step prepare;
+        final Step timed;
+
+        Op(String name, Step prepare, Step timed) {
+            this.name = name;
+            this.prepare = prepare;
+            this.timed = timed;
+        }
+    }
+
+    static final class Result {
+        final String op;
+        final Histogram hist;
+        final long elapsedNanos;
+        final long errors;
+
+        Result(String op, Histogram hist, long elapsedNanos, long errors) {
+            this.op = op;
+            this.hist = hist;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        double opsPerSecond() { return hist.getTotalCount() / (elapsedNanos / 1e9); }
+        double p50Micros() { return hist.getValueAtPercentile(50) / 1e3; }
+        double p99Micros() { return hist.getValueAtPercentile(99) / 1e3; }
+        double p999Micros() { return hist.getValueAtPercentile(99.9) / 1e3; }
+        double maxMicros() { return hist.getMaxValue() / 1e3; }
+
+        String line() {
+            return String.format(Locale.ROOT, "%-28s %10.0f ops/s  p50 %8.1f  p99 %8.1f  p999 %8.1f  max %9.1f us%s",
+                    op, opsPerSecond(), p50Micros(), p99Micros(), p999Micros(), maxMicros(),
+                    errors > 0 ? "  errors " + errors : "");
+        }
+
+        void writeDistribution(PrintStream ps) {
+            hist.outputPercentileDistribution(ps, 1000.0);
+        }
+    }
+
+    private DbBench() { }
+
+    static void writeFile(Path file, IOWork work) throws IOException {
+        try (PrintStream ps = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            work.write(ps);
+        }
+    }
+
+    @FunctionalInterface
+    interface IOWork {
+        void write(PrintStream ps) throws IOException;
+    }
+}
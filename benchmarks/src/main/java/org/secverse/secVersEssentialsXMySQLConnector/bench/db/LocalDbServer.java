@@ -0,0 +1,164 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throwaway MariaDB or MySQL server on 127.0.0.1 with its own data directory.
+ *
+ * Uses the server binaries installed on the machine (mariadbd / mysqld on the PATH or in the
+ * given directory). The data directory is initialised with a passwordless root account and
+ * deleted again on close(). Shared by DbBench and the load simulator.
+ */
+public final class LocalDbServer implements AutoCloseable {
+
+    public final String host = "127.0.0.1";
+    public final int port;
+    public final String user = "root";
+    public final String password = "";
+    public final String flavour;
+
+    private final Path dataDir;
+    private final Process process;
+
+    private LocalDbServer(String flavour, int port, Path dataDir, Process process) {
+        this.flavour = flavour;
+        this.port = port;
+        this.dataDir = dataDir;
+        this.process = process;
+    }
+
+    /**
+     * Initialises a fresh data directory, starts the server and waits until it accepts connections.
+     *
+     * @param binDir directory holding the server binaries, or null to search the PATH
+     */
+    public static LocalDbServer start(Path binDir, int port) throws IOException, InterruptedException, SQLException {
+        Path dataDir = Files.createTempDirectory("essx-dbbench-");
+        Path log = dataDir.resolveSibling(dataDir.getFileName() + ".log");
+
+        String flavour;
+        List<String> run = new ArrayList<>();
+        Path mariadbd = find(binDir, "mariadbd");
+        if (mariadbd != null) {
+            flavour = "mariadb";
+            Path install = find(binDir, "mariadb-install-db");
+            if (install == null) install = find(binDir, "mysql_install_db");
+            if (install == null) throw new IOException("mariadb-install-db not found next to " + mariadbd);
+            exec(log, install.toString(), "--no-defaults", "--datadir=" + dataDir,
+                    "--auth-root-authentication-method=normal", "--skip-test-db");
+            run.add(mariadbd.toString());
+        } else {
+            Path mysqld = find(binDir, "mysqld");
+            if (mysqld == null) throw new IOException("neither mariadbd nor mysqld found" + (binDir != null ? " in " + binDir : " on PATH"));
+            flavour = "mysql";
+            exec(log, mysqld.toString(), "--no-defaults", "--initialize-insecure", "--datadir=" + dataDir);
+            run.add(mysqld.toString());
+            run.add("--mysqlx=OFF");
+        }
+        run.add(1, "--no-defaults");
+        run.add("--datadir=" + dataDir);
+        run.add("--port=" + port);
+        run.add("--bind-address=127.0.0.1");
+        run.add("--socket=" + dataDir.resolve("bench.sock"));
+        run.add("--pid-file=" + dataDir.resolve("bench.pid"));
+
+        Process p = new ProcessBuilder(run)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+        LocalDbServer server = new LocalDbServer(flavour, port, dataDir, p);
+        try {
+            server.awaitReady(TimeUnit.SECONDS.toMillis(60), log);
+        } catch (IOException | SQLException | InterruptedException ex) {
+            server.close();
+            throw ex;
+        }
+        return server;
+    }
+
+    /**
+     * Drops and recreates the schema so every run starts from the same state.
+     */
+    public void recreateDatabase(String name) throws SQLException {
+        try (Connection c = DriverManager.getConnection(adminUrl(), user, password);
+             Statement st = c.createStatement()) {
+            st.executeUpdate("DROP DATABASE IF EXISTS `" + name + "`");
+            st.executeUpdate("CREATE DATABASE `" + name + "` CHARACTER SET utf8mb4");
+        }
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private String adminUrl() {
+        return "jdbc:mysql://" + host + ":" + port + "/?useSSL=false&allowPublicKeyRetrieval=true";
+    }
+
+    private void awaitReady(long timeoutMs, Path log) throws IOException, SQLException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        SQLException last = null;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) throw new IOException(flavour + " exited with " + process.exitValue() + ", see " + log);
+            try (Connection ignored = DriverManager.getConnection(adminUrl(), user, password)) {
+                return;
+            } catch (SQLException ex) {
+                last = ex;
+                Thread.sleep(250);
+            }
+        }
+        throw last != null ? last : new SQLException(flavour + " did not start within " + timeoutMs + " ms");
+    }
+
+    private static void exec(Path log, String... cmd) throws IOException, InterruptedException {
+        Process p = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()))
+                .start();
+        if (!p.waitFor(120, TimeUnit.SECONDS)) {
+            p.destroyForcibly();
+            throw new IOException(cmd[0] + " timed out, see " + log);
+        }
+        if (p.exitValue() != 0) throw new IOException(cmd[0] + " failed with " + p.exitValue() + ", see " + log);
+    }
+
+    private static Path find(Path binDir, String name) {
+        if (binDir != null) {
+            Path p = binDir.resolve(name);
+            return Files.isExecutable(p) ? p : null;
+        }
+        String path = System.getenv("PATH");
+        if (path == null) return null;
+        for (String dir : path.split(File.pathSeparator)) {
+            Path p = Path.of(dir, name);
+            if (Files.isExecutable(p)) return p;
+        }
+        for (String dir : new String[]{"/usr/sbin", "/usr/local/sbin", "/usr/local/mysql/bin"}) {
+            Path p = Path.of(dir, name);
+            if (Files.isExecutable(p)) return p;
+        }
+        return null;
+    }
+}
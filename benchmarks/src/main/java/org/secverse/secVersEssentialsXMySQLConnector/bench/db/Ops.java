@@ -0,0 +1,104 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.db;
+
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One entry per public DBCommands statement, with arguments drawn from the dataset.
+ */
+final class Ops {
+
+    static final int BATCH = 50;
+
+    private Ops() { }
+
+    static Map<String, DbBench.Op> all(Dataset d) {
+        Map<String, DbBench.Op> ops = new LinkedHashMap<>();
+
+        // Global users
+        add(ops, "ensureGlobalUser", (db, w) -> { UUID p = w.player(); db.ensureGlobalUser(p, d.name(p), w.ts()); });
+        add(ops, "upsertGlobalUserIfVersion", (db, w) -> { UUID p = w.player(); db.upsertGlobalUserIfVersion(p, d.name(p), BigDecimal.valueOf(w.rnd.nextLong(0, 10_000_000), 2), -1, w.ts()); });
+        add(ops, "updateBalanceIfVersion", (db, w) -> db.updateBalanceIfVersion(w.player(), BigDecimal.valueOf(w.rnd.nextLong(0, 10_000_000), 2), -1, w.ts()));
+        add(ops, "getGlobalUser", (db, w) -> db.getGlobalUser(w.player()));
+
+        // Per-server profiles
+        add(ops, "ensureServerProfile", (db, w) -> db.ensureServerProfile(w.player(), DbBench.SERVER, w.ts()));
+        add(ops, "upsertServerProfileIfVersion", (db, w) -> db.upsertServerProfileIfVersion(d.profile(w.player(), w.rnd), w.ts()));
+        add(ops, "updateHomesIfVersion", (db, w) -> db.updateHomesIfVersion(w.player(), DbBench.SERVER, d.homes(w.rnd), -1, w.ts()));
+        add(ops, "updateGroupIfVersion", (db, w) -> db.updateGroupIfVersion(w.player(), DbBench.SERVER, d.group(w.rnd), -1, w.ts()));
+        add(ops, "updateLastLocationIfVersion", (db, w) -> db.updateLastLocationIfVersion(w.player(), DbBench.SERVER, d.location(w.rnd), -1, w.ts()));
+        add(ops, "getServerProfile", (db, w) -> db.getServerProfile(w.player(), DbBench.SERVER));
+        add(ops, "listServerProfiles", (db, w) -> db.listServerProfiles(w.player()));
+        ops.put("deleteServerProfile", new DbBench.Op("deleteServerProfile",
+                (db, w) -> db.ensureServerProfile(w.scratch, DbBench.SERVER, w.ts()),
+                (db, w) -> db.deleteServerProfile(w.scratch, DbBench.SERVER)));
+
+        // Player state
+        add(ops, "ensureUserState", (db, w) -> db.ensureUserState(w.player(), DbBench.SERVER, w.ts()));
+        add(ops, "upsertUserStateIfVersion", (db, w) -> db.upsertUserStateIfVersion(d.state(w.player(), w.rnd), w.ts()));
+        add(ops, "updateInventoryIfVersion", (db, w) -> {
+            DBCommands.UserState s = d.state(w.player(), w.rnd);
+            db.updateInventoryIfVersion(s.uuid, DbBench.SERVER, s.invMain, s.invOffhand, s.invArmor, s.enderChest, -1, w.ts());
+        });
+        add(ops, "updateXpIfVersion", (db, w) -> db.updateXpIfVersion(w.player(), DbBench.SERVER,
+                w.rnd.nextInt(100), w.rnd.nextInt(3000), (float) w.rnd.nextDouble(), -1, w.ts()));
+        add(ops, "updateVitalsIfVersion", (db, w) -> db.updateVitalsIfVersion(w.player(), DbBench.SERVER,
+                1 + w.rnd.nextInt(20), 20, w.rnd.nextInt(21), 5f, 0f, -1, w.ts()));
+        add(ops, "updateMetadataIfVersion", (db, w) -> {
+            DBCommands.UserState s = d.state(w.player(), w.rnd);
+            db.updateMetadataIfVersion(s.uuid, DbBench.SERVER, s.gameMode, s.potionEffects, s.statsJson,
+                    s.lastDeathLoc, s.bedSpawnLoc, -1, w.ts());
+        });
+        add(ops, "updateUserStatesIfVersion[" + BATCH + "]", (db, w) -> {
+            List<DBCommands.UserState> batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) batch.add(d.state(w.player(), w.rnd));
+            db.updateUserStatesIfVersion(batch, w.ts());
+        });
+        add(ops, "getUserState", (db, w) -> db.getUserState(w.player(), DbBench.SERVER));
+        add(ops, "listUserStateServers", (db, w) -> db.listUserStateServers(w.player()));
+        ops.put("deleteUserState", new DbBench.Op("deleteUserState",
+                (db, w) -> db.ensureUserState(w.scratch, DbBench.SERVER, w.ts()),
+                (db, w) -> db.deleteUserState(w.scratch, DbBench.SERVER)));
+
+        // Shulker UID registry (read + upsert in one transaction, as ItemUidRegistry does)
+        add(ops, "getItemUids[" + BATCH + "]", (db, w) -> db.getItemUids(uids(d, w)));
+        add(ops, "upsertItemUids[" + BATCH + "]", (db, w) -> {
+            List<DBCommands.ItemUidSighting> batch = new ArrayList<>(BATCH);
+            long ts = w.ts();
+            for (UUID uid : uids(d, w)) batch.add(d.sighting(uid, w.player(), ts));
+            db.upsertItemUids(batch);
+        });
+        add(ops, "itemUidRegistryBatch[" + BATCH + "]", (db, w) -> {
+            List<UUID> uids = uids(d, w);
+            List<DBCommands.ItemUidSighting> batch = new ArrayList<>(BATCH);
+            long ts = w.ts();
+            for (UUID uid : uids) batch.add(d.sighting(uid, w.player(), ts));
+            db.inTransaction(() -> {
+                db.getItemUids(uids);
+                db.upsertItemUids(batch);
+                return null;
+            });
+        });
+
+        // Server registry
+        add(ops, "upsertServerRegistry", (db, w) -> db.upsertServerRegistry("bench-" + (w.index + 2), false));
+        add(ops, "isMasterServer", (db, w) -> db.isMasterServer(DbBench.SERVER));
+        return ops;
+    }
+
+    private static void add(Map<String, DbBench.Op> ops, String name, DbBench.Step step) {
+        ops.put(name, new DbBench.Op(name, null, step));
+    }
+
+    private static List<UUID> uids(Dataset d, DbBench.Worker w) {
+        List<UUID> out = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) out.add(d.itemUids[w.rnd.nextInt(d.itemUids.length)]);
+        return out;
+    }
+}
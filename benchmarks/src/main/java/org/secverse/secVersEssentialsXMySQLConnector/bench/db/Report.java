@@ -0,0 +1,75 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.db;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes DbBench results and compares them with an earlier summary.csv.
+ */
+final class Report {
+
+    static final String HEADER = "op,threads,players,count,errors,ops_per_s,p50_us,p99_us,p999_us,max_us";
+
+    private Report() { }
+
+    static void write(Path dir, int threads, int players, List<DbBench.Result> results) throws IOException {
+        DbBench.writeFile(dir.resolve("summary.csv"), ps -> {
+            ps.println(HEADER);
+            for (DbBench.Result r : results) {
+                ps.printf(Locale.ROOT, "%s,%d,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                        r.op, threads, players, r.hist.getTotalCount(), r.errors,
+                        r.opsPerSecond(), r.p50Micros(), r.p99Micros(), r.p999Micros(), r.maxMicros());
+            }
+        });
+        for (DbBench.Result r : results) {
+            String file = r.op.replaceAll("[^A-Za-z0-9_-]", "_") + ".hgrm";
+            DbBench.writeFile(dir.resolve(file), r::writeDistribution);
+        }
+    }
+
+    /**
+     * Prints each operation next to its baseline and counts regressions: p99 above
+     * baseline * (1 + tolerance) or throughput below baseline * (1 - tolerance).
+     */
+    static int compare(Path baselineCsv, List<DbBench.Result> results, double tolerance, PrintStream out) throws IOException {
+        Map<String, double[]> base = new HashMap<>();
+        List<String> lines = Files.readAllLines(baselineCsv);
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split(",");
+            if (f.length < 10) continue;
+            // ops_per_s, p50, p99, p999
+            base.put(f[0], new double[]{
+                    Double.parseDouble(f[5]), Double.parseDouble(f[6]),
+                    Double.parseDouble(f[7]), Double.parseDouble(f[8])});
+        }
+
+        out.printf(Locale.ROOT, "%n[DbBench] baseline %s, tolerance %.0f%%%n", baselineCsv, tolerance * 100);
+        int regressions = 0;
+        for (DbBench.Result r : results) {
+            double[] b = base.get(r.op);
+            if (b == null) {
+                out.printf(Locale.ROOT, "%-28s (no baseline)%n", r.op);
+                continue;
+            }
+            boolean slower = r.p99Micros() > b[2] * (1 + tolerance);
+            boolean fewer = r.opsPerSecond() < b[0] * (1 - tolerance);
+            if (slower || fewer) regressions++;
+            out.printf(Locale.ROOT, "%-28s ops/s %+6.1f%%  p50 %+6.1f%%  p99 %+6.1f%%  p999 %+6.1f%%%s%n",
+                    r.op, delta(r.opsPerSecond(), b[0]), delta(r.p50Micros(), b[1]),
+                    delta(r.p99Micros(), b[2]), delta(r.p999Micros(), b[3]),
+                    slower || fewer ? "  REGRESSION" : "");
+        }
+        out.println("[DbBench] " + regressions + " regression(s)");
+        return regressions;
+    }
+
+    private static double delta(double now, double before) {
+        return before == 0 ? 0 : (now - before) / before * 100;
+    }
+}
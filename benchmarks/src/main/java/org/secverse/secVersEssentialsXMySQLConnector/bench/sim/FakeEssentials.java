@@ -0,0 +1,80 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.sim;
+
+import com.earth2me.essentials.Essentials;
+import com.earth2me.essentials.User;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mockito-backed Essentials with in-memory users: money, homes, group and last location.
+ *
+ * Covers exactly the User methods the workers call. Users are kept per UUID across joins
+ * like Essentials' userdata files, so a rejoin on the same node sees the old local state.
+ */
+final class FakeEssentials {
+
+    static final class UserData {
+        volatile BigDecimal money = BigDecimal.ZERO;
+        volatile String group = "default";
+        volatile Location lastLocation;
+        final Map<String, Location> homes = new LinkedHashMap<>();
+        volatile Player base;
+    }
+
+    final Essentials essentials;
+    private final Map<UUID, UserData> data = new ConcurrentHashMap<>();
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+
+    FakeEssentials() {
+        essentials = mock(Essentials.class);
+        when(essentials.getUser(any(Player.class))).thenAnswer(inv -> user(inv.getArgument(0)));
+        when(essentials.getUser(any(UUID.class))).thenAnswer(inv -> users.get(inv.<UUID>getArgument(0)));
+    }
+
+    UserData data(UUID id) {
+        return data.computeIfAbsent(id, k -> new UserData());
+    }
+
+    private User user(Player p) {
+        UserData d = data(p.getUniqueId());
+        d.base = p;
+        return users.computeIfAbsent(p.getUniqueId(), id -> newUser(id, d));
+    }
+
+    private static User newUser(UUID id, UserData d) {
+        User u = mock(User.class);
+        try {
+            when(u.getUUID()).thenReturn(id);
+            when(u.getName()).thenAnswer(inv -> d.base != null ? d.base.getName() : null);
+            when(u.getBase()).thenAnswer(inv -> d.base);
+            when(u.getMoney()).thenAnswer(inv -> d.money);
+            doAnswer(inv -> { d.money = inv.getArgument(0); return null; }).when(u).setMoney(any());
+            when(u.getGroup()).thenAnswer(inv -> d.group);
+            when(u.getLastLocation()).thenAnswer(inv -> d.lastLocation);
+            doAnswer(inv -> { d.lastLocation = inv.getArgument(0); return null; }).when(u).setLastLocation(any());
+            when(u.getLocation()).thenAnswer(inv -> d.base != null ? d.base.getLocation() : null);
+            when(u.getHomes()).thenAnswer(inv -> { synchronized (d.homes) { return new ArrayList<>(d.homes.keySet()); } });
+            when(u.getHome(anyString())).thenAnswer(inv -> { synchronized (d.homes) { return d.homes.get(inv.<String>getArgument(0)); } });
+            doAnswer(inv -> { synchronized (d.homes) { d.homes.put(inv.getArgument(0), inv.getArgument(1)); } return null; })
+                    .when(u).setHome(anyString(), any());
+            doAnswer(inv -> { synchronized (d.homes) { d.homes.remove(inv.<String>getArgument(0)); } return null; })
+                    .when(u).delHome(anyString());
+        } catch (Exception ex) {
+            throw new IllegalStateException("stubbing User failed", ex);
+        }
+        return u;
+    }
+}
@@ -0,0 +1,556 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.sim;
+
+import org.HdrHistogram.Histogram;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.secverse.secVersEssentialsXMySQLConnector.bench.db.LocalDbServer;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.database;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synthetic load for the sync workers without a Minecraft network.
+ *
+ * Starts a local database (see LocalDbServer, or --host for a running one) and one or two
+ * SimNode processes: MockBukkit servers running the real PlayerDataWorker, HomeDataWorker and
+ * EssentialsXDataWorker against the shared schema. Scenarios, in order:
+ *
+ *   join-storm  --players joins on node A spread over --storm-seconds (after an unmeasured
+ *               priming pass that gives every player stored state)
+ *   steady      --steady-seconds of level changes and teleports on --changes-per-tick players
+ *   mass-quit   every online player quits in the same tick
+ *   bounce      --bounce-players players switch between node A and node B --bounces times,
+ *               --switch-delay-ms between quit and join (like a proxy server switch)
+ *
+ * Reported per scenario: tick time per node (p50/p99/max), DB queries per second (server
+ * 'Questions' counter minus the harness's own polling), and sync lag percentiles:
+ *   join-storm, bounce   join -> stored level applied to the player (measured on the node)
+ *   steady, mass-quit    level change / quit -> row in essentials_user_state (polled)
+ * "stale" counts joins that never saw the stored level (join-storm, bounce) or rows that were
+ * not written before the timeout (steady, mass-quit).
+ *
+ *   java -cp benchmarks/target/benchmarks.jar \
+ *        org.secverse.secVersEssentialsXMySQLConnector.bench.sim.LoadSim --players 500
+ */
+public final class LoadSim {
+
+    static final String SCHEMA = "essentials_loadsim";
+    private static final long LAG_HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<String, String> opt;
+    private final int players;
+    private final UUID[] ids;
+    private final Map<UUID, Integer> index = new HashMap<>();
+    private final int[] stored;      // last level written per player on node A
+    private final Path out;
+    private final List<String> csv = new ArrayList<>();
+
+    private DBCommands db;
+    private database dbHelper;
+    private long ownQueries;
+    private final List<Node> nodes = new ArrayList<>();
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private int nextLevel = 1_000;
+
+    private LoadSim(Map<String, String> opt) {
+        this.opt = opt;
+        this.players = Integer.parseInt(opt.getOrDefault("players", "500"));
+        this.ids = new UUID[players];
+        this.stored = new int[players];
+        SplittableRandom r = new SplittableRandom(99);
+        for (int i = 0; i < players; i++) {
+            ids[i] = new UUID(r.nextLong(), r.nextLong());
+            index.put(ids[i], i);
+        }
+        this.out = Path.of(opt.getOrDefault("out", "loadsim-results"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parseArgs(args);
+        LocalDbServer local = null;
+        try {
+            if (!opt.containsKey("host")) {
+                int port = Integer.parseInt(opt.getOrDefault("port", "33907"));
+                local = LocalDbServer.start(opt.containsKey("bin") ? Path.of(opt.get("bin")) : null, port);
+                local.recreateDatabase(SCHEMA);
+                opt.put("host", local.host);
+                opt.put("port", String.valueOf(port));
+                System.out.println("[LoadSim] started local " + local.flavour + " on " + local.host + ":" + port);
+            }
+            new LoadSim(opt).run();
+        } finally {
+            if (local != null) local.close();
+        }
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(out);
+        connect();
+        dbHelper.setupTable();
+
+        nodes.add(startNode(0, "sim-a"));
+        if (Integer.parseInt(opt.getOrDefault("bounces", "3")) > 0) nodes.add(startNode(1, "sim-b"));
+        for (Node n : nodes) await(n, "@READY", TimeUnit.SECONDS.toMillis(120));
+
+        try {
+            prime();
+            joinStorm();
+            steady();
+            massQuit();
+            if (nodes.size() > 1) bounce();
+        } finally {
+            for (Node n : nodes) n.send("SHUTDOWN");
+            for (Node n : nodes) {
+                if (!n.process.waitFor(60, TimeUnit.SECONDS)) n.process.destroyForcibly();
+            }
+            dbHelper.close();
+        }
+
+        Files.write(out.resolve("summary.csv"), csv, StandardCharsets.UTF_8);
+        System.out.println("[LoadSim] results written to " + out.toAbsolutePath());
+    }
+
+    // ─────────────────────────── Scenarios ───────────────────────────
+
+    /**
+     * Unmeasured: every player joins, gets a level and quits, so later joins have state to import.
+     */
+    private void prime() throws Exception {
+        Node a = nodes.get(0);
+        Map<UUID, Pending> pending = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            a.send("JOIN " + ids[i] + " " + name(i) + " -1");
+            if (i % 50 == 49) Thread.sleep(100);
+        }
+        Thread.sleep(2_000);
+        for (int i = 0; i < players; i++) {
+            stored[i] = nextLevel++;
+            a.send("SET " + ids[i] + " " + stored[i]);
+            a.send("QUIT " + ids[i]);
+            pending.put(ids[i], new Pending(stored[i], 0));
+        }
+        awaitDb(a.serverName, pending, new Histogram(LAG_HIGHEST_MICROS, 3), TimeUnit.SECONDS.toMillis(120));
+        drainEvents();
+        a.send("STATS");
+        await(a, "@TICKS", 10_000);
+        System.out.println("[LoadSim] primed " + players + " players");
+    }
+
+    private void joinStorm() throws Exception {
+        Node a = nodes.get(0);
+        int seconds = Integer.parseInt(opt.getOrDefault("storm-seconds", "10"));
+        Histogram lag = new Histogram(LAG_HIGHEST_MICROS, 3);
+        long q0 = questions();
+        long start = System.nanoTime();
+
+        long spacing = TimeUnit.SECONDS.toNanos(seconds) / Math.max(1, players);
+        for (int i = 0; i < players; i++) {
+            long due = start + i * spacing;
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            a.send("JOIN " + ids[i] + " " + name(i) + " " + stored[i]);
+        }
+        int[] stale = {0};
+        collectSyncs(players, lag, stale, TimeUnit.SECONDS.toMillis(60));
+        report("join-storm", start, q0, lag, stale[0]);
+    }
+
+    private void steady() throws Exception {
+        Node a = nodes.get(0);
+        int seconds = Integer.parseInt(opt.getOrDefault("steady-seconds", "60"));
+        int perTick = Integer.parseInt(opt.getOrDefault("changes-per-tick", String.valueOf(Math.max(1, players / 100))));
+        Histogram lag = new Histogram(LAG_HIGHEST_MICROS, 3);
+        Map<UUID, Pending> pending = new HashMap<>();
+        SplittableRandom r = new SplittableRandom(3);
+        long q0 = questions();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        long nextPoll = 0;
+        while (System.nanoTime() < end) {
+            for (int k = 0; k < perTick; k++) {
+                int i = r.nextInt(players);
+                stored[i] = nextLevel++;
+                a.send("SET " + ids[i] + " " + stored[i]);
+            }
+            drainSets(pending);
+            if (System.nanoTime() >= nextPoll) {
+                pollDb(a.serverName, pending, lag);
+                nextPoll = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            }
+            Thread.sleep(50);
+        }
+        // Changes made near the end still get their flush
+        long flushMs = TimeUnit.SECONDS.toMillis(Integer.parseInt(opt.getOrDefault("flush-seconds", "20")) * 2L + 5);
+        drainSets(pending);
+        int unflushed = awaitDb(a.serverName, pending, lag, flushMs);
+        report("steady", start, q0, lag, unflushed);
+    }
+
+    private void massQuit() throws Exception {
+        Node a = nodes.get(0);
+        Map<UUID, Pending> pending = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            stored[i] = nextLevel++;
+            a.send("SET " + ids[i] + " " + stored[i]);
+        }
+        Thread.sleep(1_000);
+        drainEvents();
+        a.send("STATS");
+        await(a, "@TICKS", 10_000);
+
+        Histogram lag = new Histogram(LAG_HIGHEST_MICROS, 3);
+        long q0 = questions();
+        long start = System.nanoTime();
+        StringBuilder batch = new StringBuilder();
+        for (int i = 0; i < players; i++) batch.append("QUIT ").append(ids[i]).append('\n');
+        a.sendRaw(batch.toString());
+
+        int seen = 0;
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (seen < players && System.currentTimeMillis() < deadline) {
+            Event e = events.poll(100, TimeUnit.MILLISECONDS);
+            if (e == null || !e.f[0].equals("@QUIT")) continue;
+            int i = indexOf(UUID.fromString(e.f[1]));
+            pending.put(ids[i], new Pending(stored[i], Long.parseLong(e.f[2])));
+            seen++;
+        }
+        int missing = awaitDb(a.serverName, pending, lag, TimeUnit.SECONDS.toMillis(60));
+        report("mass-quit", start, q0, lag, missing);
+    }
+
+    /**
+     * Players alternate between node A and node B. Every visit checks that the level the node
+     * stored at the previous visit is applied on join, then sets a new level and quits.
+     */
+    private void bounce() throws Exception {
+        int count = Math.min(players, Integer.parseInt(opt.getOrDefault("bounce-players", "100")));
+        int rounds = Integer.parseInt(opt.getOrDefault("bounces", "3"));
+        long switchNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(opt.getOrDefault("switch-delay-ms", "100")));
+
+        int[][] levelAt = new int[count][2];
+        int[] visits = new int[count];
+        int[] at = new int[count];
+        for (int i = 0; i < count; i++) {
+            levelAt[i][0] = stored[i];
+            levelAt[i][1] = -1;
+        }
+
+        Histogram lag = new Histogram(LAG_HIGHEST_MICROS, 3);
+        int stale = 0;
+        for (Node n : nodes) n.send("STATS");
+        for (Node n : nodes) await(n, "@TICKS", 10_000);
+        long q0 = questions();
+        long start = System.nanoTime();
+
+        // {due nanos, player index}; a negative index -1-i is the "leave" marker for a first visit
+        PriorityQueue<long[]> due = new PriorityQueue<>((x, y) -> Long.compare(x[0], y[0]));
+        for (int i = 0; i < count; i++) due.add(new long[]{start + i * TimeUnit.MILLISECONDS.toNanos(10), i});
+        int done = 0;
+        long deadline = start + TimeUnit.MINUTES.toNanos(10);
+
+        while (done < count && System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            while (!due.isEmpty() && due.peek()[0] <= now) {
+                long who = due.poll()[1];
+                if (who < 0) {
+                    // First visit to a node has nothing to import; leave after a second instead of @SYNCED
+                    if (leave((int) (-1 - who), levelAt, visits, at, rounds, due, switchNanos)) done++;
+                    continue;
+                }
+                int i = (int) who;
+                nodes.get(at[i]).send("JOIN " + ids[i] + " " + name(i) + " " + levelAt[i][at[i]]);
+                if (levelAt[i][at[i]] < 0) due.add(new long[]{now + TimeUnit.SECONDS.toNanos(1), -1 - i});
+            }
+            long wait = due.isEmpty() ? 50 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(due.peek()[0] - now));
+            Event e = events.poll(Math.min(wait, 50), TimeUnit.MILLISECONDS);
+            if (e == null) continue;
+
+            if (e.f[0].equals("@SYNCED") || e.f[0].equals("@STALE")) {
+                int i = indexOf(UUID.fromString(e.f[1]));
+                if (i < 0 || i >= count) continue;
+                if (e.f[0].equals("@SYNCED")) lag.recordValue(Math.min(Long.parseLong(e.f[2]), LAG_HIGHEST_MICROS));
+                else stale++;
+                if (leave(i, levelAt, visits, at, rounds, due, switchNanos)) done++;
+            }
+        }
+        report("bounce", start, q0, lag, stale);
+    }
+
+    /**
+     * Sets a fresh level on the current node, quits and schedules the join on the other node.
+     *
+     * @return true once the player has finished all rounds
+     */
+    private boolean leave(int i, int[][] levelAt, int[] visits, int[] at, int rounds,
+                          PriorityQueue<long[]> due, long switchNanos) {
+        Node n = nodes.get(at[i]);
+        levelAt[i][at[i]] = nextLevel++;
+        n.send("SET " + ids[i] + " " + levelAt[i][at[i]]);
+        n.send("QUIT " + ids[i]);
+        if (++visits[i] >= rounds * 2) return true;
+        at[i] ^= 1;
+        due.add(new long[]{System.nanoTime() + switchNanos, i});
+        return false;
+    }
+
+    // ─────────────────────────── Measurements ───────────────────────────
+
+    private void collectSyncs(int expected, Histogram lag, int[] stale, long timeoutMs) throws InterruptedException {
+        int seen = 0;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (seen < expected && System.currentTimeMillis() < deadline) {
+            Event e = events.poll(100, TimeUnit.MILLISECONDS);
+            if (e == null) continue;
+            if (e.f[0].equals("@SYNCED")) {
+                lag.recordValue(Math.min(Long.parseLong(e.f[2]), LAG_HIGHEST_MICROS));
+                seen++;
+            } else if (e.f[0].equals("@STALE")) {
+                stale[0]++;
+                seen++;
+            }
+        }
+        stale[0] += expected - seen;
+    }
+
+    /**
+     * A level that should show up in essentials_user_state, and when it was set on the node.
+     */
+    private static final class Pending {
+        final int level;
+        final long sinceMicros;
+
+        Pending(int level, long sinceMicros) {
+            this.level = level;
+            this.sinceMicros = sinceMicros;
+        }
+    }
+
+    /**
+     * Moves @SET replies into the pending map. A newer change replaces the older one.
+     */
+    private void drainSets(Map<UUID, Pending> pending) {
+        Event e;
+        while ((e = events.poll()) != null) {
+            if (!e.f[0].equals("@SET")) continue;
+            UUID id = UUID.fromString(e.f[1]);
+            pending.put(id, new Pending(stored[indexOf(id)], Long.parseLong(e.f[2])));
+        }
+    }
+
+    /**
+     * One pass over the pending rows; records the lag of every row that now holds its level.
+     */
+    private void pollDb(String serverName, Map<UUID, Pending> pending, Histogram lag) throws SQLException {
+        for (Iterator<Map.Entry<UUID, Pending>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, Pending> e = it.next();
+            DBCommands.UserState s = db.getUserState(e.getKey(), serverName);
+            ownQueries++;
+            if (s == null || s.xpLevel != e.getValue().level) continue;
+            long t0 = e.getValue().sinceMicros;
+            if (t0 != 0) lag.recordValue(Math.max(0, Math.min(SimNode.epochMicros() - t0, LAG_HIGHEST_MICROS)));
+            it.remove();
+        }
+    }
+
+    /**
+     * Polls until every pending row holds its level or the timeout passes.
+     *
+     * @return rows still not written
+     */
+    private int awaitDb(String serverName, Map<UUID, Pending> pending, Histogram lag, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            drainSets(pending);
+            pollDb(serverName, pending, lag);
+            if (!pending.isEmpty()) Thread.sleep(50);
+        }
+        return pending.size();
+    }
+
+    private void report(String scenario, long startNanos, long questionsBefore, Histogram lag, int stale) throws Exception {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        double qps = (questions() - questionsBefore) / secs;
+
+        System.out.printf(Locale.ROOT, "%n[LoadSim] %s  %.1f s  db %.0f q/s%n", scenario, secs, qps);
+        System.out.printf(Locale.ROOT, "  sync lag  n=%d p50 %.1f ms  p99 %.1f ms  p999 %.1f ms  max %.1f ms  stale %d%n",
+                lag.getTotalCount(), lag.getValueAtPercentile(50) / 1e3, lag.getValueAtPercentile(99) / 1e3,
+                lag.getValueAtPercentile(99.9) / 1e3, lag.getMaxValue() / 1e3, stale);
+
+        if (csv.isEmpty()) {
+            csv.add("scenario,node,seconds,db_qps,ticks,tick_p50_us,tick_p99_us,tick_p999_us,tick_max_us,"
+                    + "lag_count,lag_p50_ms,lag_p99_ms,lag_p999_ms,lag_max_ms,stale");
+        }
+        drainEvents();
+        for (Node n : nodes) {
+            n.send("STATS");
+            String[] t = await(n, "@TICKS", 10_000);
+            System.out.printf(Locale.ROOT, "  %s ticks n=%s p50 %s us  p99 %s us  p999 %s us  max %s us%n",
+                    n.serverName, t[1], t[2], t[3], t[4], t[5]);
+            csv.add(String.format(Locale.ROOT, "%s,%s,%.1f,%.0f,%s,%s,%s,%s,%s,%d,%.1f,%.1f,%.1f,%.1f,%d",
+                    scenario, n.serverName, secs, qps, t[1], t[2], t[3], t[4], t[5],
+                    lag.getTotalCount(), lag.getValueAtPercentile(50) / 1e3, lag.getValueAtPercentile(99) / 1e3,
+                    lag.getValueAtPercentile(99.9) / 1e3, lag.getMaxValue() / 1e3, stale));
+        }
+    }
+
+    /**
+     * Server-wide statement counter minus the statements this harness issued itself.
+     */
+    private long questions() throws SQLException {
+        try (Statement st = dbHelper.getConnection().createStatement();
+             ResultSet rs = st.executeQuery("SHOW GLOBAL STATUS LIKE 'Questions'")) {
+            ownQueries++;
+            return rs.next() ? rs.getLong(2) - ownQueries : 0;
+        }
+    }
+
+    // ─────────────────────────── Nodes ───────────────────────────
+
+    private static final class Event {
+        final Node node;
+        final String[] f;
+
+        Event(Node node, String[] f) {
+            this.node = node;
+            this.f = f;
+        }
+    }
+
+    private final class Node {
+        final String serverName;
+        final Process process;
+        final Writer stdin;
+
+        Node(String serverName, Process process) {
+            this.serverName = serverName;
+            this.process = process;
+            this.stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            Thread reader = new Thread(() -> {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.startsWith("@")) events.add(new Event(this, line.split(" ")));
+                    }
+                } catch (IOException ignored) {
+                }
+            }, "loadsim-" + serverName);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(String line) {
+            sendRaw(line + "\n");
+        }
+
+        synchronized void sendRaw(String lines) {
+            try {
+                stdin.write(lines);
+                stdin.flush();
+            } catch (IOException ex) {
+                throw new IllegalStateException(serverName + " is gone, see its log", ex);
+            }
+        }
+    }
+
+    private Node startNode(int index, String serverName) throws IOException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-Xmx" + opt.getOrDefault("node-heap", "1g"));
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(SimNode.class.getName());
+        for (String key : new String[]{"host", "port", "user", "password", "flush-seconds", "dupe", "sync-timeout-ms"}) {
+            if (opt.containsKey(key)) {
+                cmd.add("--" + key);
+                cmd.add(opt.get(key));
+            }
+        }
+        cmd.add("--server");
+        cmd.add(serverName);
+        cmd.add("--schema");
+        cmd.add(SCHEMA);
+
+        Process p = new ProcessBuilder(cmd)
+                .redirectError(ProcessBuilder.Redirect.to(out.resolve("node-" + index + "-" + serverName + ".log").toFile()))
+                .start();
+        return new Node(serverName, p);
+    }
+
+    /**
+     * Waits for a reply of the given kind from the node; other events stay queued.
+     */
+    private String[] await(Node n, String kind, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        List<Event> other = new ArrayList<>();
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Event e = events.poll(100, TimeUnit.MILLISECONDS);
+                if (e == null) continue;
+                if (e.node == n && e.f[0].equals(kind)) return e.f;
+                other.add(e);
+            }
+            throw new IllegalStateException(n.serverName + " did not answer " + kind + " within " + timeoutMs + " ms");
+        } finally {
+            events.addAll(other);
+        }
+    }
+
+    private void drainEvents() {
+        events.clear();
+    }
+
+    private void connect() throws SQLException {
+        YamlConfiguration cfg = new YamlConfiguration();
+        cfg.set("mysql.host", opt.get("host"));
+        cfg.set("mysql.port", Integer.parseInt(opt.get("port")));
+        cfg.set("mysql.database", SCHEMA);
+        cfg.set("mysql.user", opt.getOrDefault("user", "root"));
+        cfg.set("mysql.password", opt.getOrDefault("password", ""));
+        dbHelper = new database(cfg);
+        dbHelper.connect();
+        db = new DBCommands(dbHelper.getConnection());
+    }
+
+    private int indexOf(UUID id) {
+        Integer i = index.get(id);
+        return i != null ? i : -1;
+    }
+
+    private static String name(int i) {
+        return "sim" + i;
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> out = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("expected --key value, got " + args[i]);
+            }
+            out.put(args[i].substring(2), args[++i]);
+        }
+        return out;
+    }
+}
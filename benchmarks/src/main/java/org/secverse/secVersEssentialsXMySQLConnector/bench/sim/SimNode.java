@@ -0,0 +1,265 @@
+package org.secverse.secVersEssentialsXMySQLConnector.bench.sim;
+
+import org.HdrHistogram.Histogram;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.player.PlayerLevelChangeEvent;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.mockbukkit.mockbukkit.plugin.MockPlugin;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSessions;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.database;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.EssentialsXDataWorker;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.HomeDataWorker;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.PlayerDataWorker;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One simulated game server: MockBukkit, the three sync workers wired like onEnable(), a
+ * fake Essentials and a 20 TPS tick loop. Driven by LoadSim over stdin/stdout.
+ *
+ * Commands (one per line, run at the start of the next tick):
+ *   JOIN uuid name expectLevel   add the player; if expectLevel >= 0 report when it is applied
+ *   SET uuid level               change level (fires PlayerLevelChangeEvent) and teleport
+ *   QUIT uuid                    disconnect the player
+ *   STATS                        report tick times since the last STATS and reset them
+ *   SHUTDOWN                     run the onDisable flush and exit
+ *
+ * Replies start with '@'; everything else on stdout is log noise:
+ *   @READY  @SYNCED uuid lagMicros  @STALE uuid level expected  @SET uuid epochMicros
+ *   @QUIT uuid epochMicros  @TICKS count p50 p99 p999 max (micros)  @BYE players
+ */
+public final class SimNode {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long HIGHEST_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final String serverName;
+    private final long syncTimeoutNanos;
+    private final ConcurrentLinkedQueue<String> commands = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, PlayerMock> online = new HashMap<>();
+    private final Map<UUID, Watch> watches = new HashMap<>();
+    private final SplittableRandom rnd = new SplittableRandom(5);
+    private Histogram ticks = new Histogram(HIGHEST_NANOS, 3);
+
+    private ServerMock server;
+    private World world;
+    private database dbHelper;
+    private PlayerSessions sessions;
+    private SyncExecutors executors;
+    private MainThreadApplyQueue applyQueue;
+    private PlayerDataWorker playerData;
+    private HomeDataWorker homes;
+    private EssentialsXDataWorker essx;
+    private volatile boolean running = true;
+
+    private static final class Watch {
+        final int expect;
+        final long joinedAt;
+        final long deadline;
+
+        Watch(int expect, long joinedAt, long deadline) {
+            this.expect = expect;
+            this.joinedAt = joinedAt;
+            this.deadline = deadline;
+        }
+    }
+
+    private SimNode(String serverName, long syncTimeoutMs) {
+        this.serverName = serverName;
+        this.syncTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(syncTimeoutMs);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = LoadSim.parseArgs(args);
+        SimNode node = new SimNode(opt.getOrDefault("server", "sim-a"),
+                Long.parseLong(opt.getOrDefault("sync-timeout-ms", "5000")));
+        node.enable(opt);
+        node.readCommands();
+        emit("@READY");
+        node.loop();
+    }
+
+    // ─────────────────────────── Wiring ───────────────────────────
+
+    private void enable(Map<String, String> opt) throws Exception {
+        server = MockBukkit.mock();
+        world = server.addSimpleWorld("world");
+        MockPlugin plugin = MockBukkit.createMockPlugin("SecVersEssentialsXMySQL");
+
+        int flushSecs = Integer.parseInt(opt.getOrDefault("flush-seconds", "20"));
+        FileConfiguration cfg = plugin.getConfig();
+        cfg.set("serverName", serverName);
+        cfg.set("playerdata.enabled", true);
+        cfg.set("dupeProtection.enabled", Boolean.parseBoolean(opt.getOrDefault("dupe", "false")));
+        cfg.set("sync.apply_budget_ms", 2);
+
+        YamlConfiguration dbCfg = new YamlConfiguration();
+        dbCfg.set("mysql.host", opt.getOrDefault("host", "127.0.0.1"));
+        dbCfg.set("mysql.port", Integer.parseInt(opt.getOrDefault("port", "33906")));
+        dbCfg.set("mysql.database", opt.getOrDefault("schema", LoadSim.SCHEMA));
+        dbCfg.set("mysql.user", opt.getOrDefault("user", "root"));
+        dbCfg.set("mysql.password", opt.getOrDefault("password", ""));
+        dbHelper = new database(dbCfg);
+        dbHelper.connect();
+        DBCommands db = new DBCommands(dbHelper.getConnection());
+
+        FakeEssentials ess = new FakeEssentials();
+        sessions = new PlayerSessions(plugin);
+        sessions.start();
+        executors = new SyncExecutors(2);
+        applyQueue = new MainThreadApplyQueue(plugin, 2L);
+        applyQueue.start();
+
+        playerData = new PlayerDataWorker(plugin, ess.essentials, db, sessions, executors, applyQueue, null, null, serverName, flushSecs);
+        playerData.start();
+        homes = new HomeDataWorker(plugin, ess.essentials, db, sessions, applyQueue, executors, null, serverName, flushSecs, 10);
+        homes.start();
+        essx = new EssentialsXDataWorker(plugin, ess.essentials, db, sessions, applyQueue, executors, null, serverName, true, flushSecs, null);
+        essx.start();
+    }
+
+    private void disable() {
+        int players = online.size();
+        playerData.flushAllForShutdown(200);
+        homes.flushAllForShutdown();
+        essx.flushAllForShutdown();
+        playerData.stop();
+        homes.stop();
+        essx.stop();
+        applyQueue.stop();
+        sessions.stop();
+        executors.shutdown(server.getLogger(), TimeUnit.SECONDS.toMillis(10));
+        dbHelper.close();
+        MockBukkit.unmock();
+        emit("@BYE " + players);
+    }
+
+    // ─────────────────────────── Tick loop ───────────────────────────
+
+    private void readCommands() {
+        Thread reader = new Thread(() -> {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) commands.add(line.trim());
+            } catch (Exception ignored) {
+            }
+            commands.add("SHUTDOWN");
+        }, "simnode-stdin");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void loop() {
+        long next = System.nanoTime();
+        while (running) {
+            long start = System.nanoTime();
+            String cmd;
+            while (running && (cmd = commands.poll()) != null) handle(cmd);
+            if (!running) break;
+            server.getScheduler().performOneTick();
+            checkWatches();
+            ticks.recordValue(Math.min(System.nanoTime() - start, HIGHEST_NANOS));
+
+            next += TICK_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            else next = System.nanoTime();
+        }
+        disable();
+    }
+
+    private void handle(String line) {
+        String[] f = line.split(" ");
+        switch (f[0]) {
+            case "JOIN" -> join(UUID.fromString(f[1]), f[2], Integer.parseInt(f[3]));
+            case "SET" -> set(UUID.fromString(f[1]), Integer.parseInt(f[2]));
+            case "QUIT" -> quit(UUID.fromString(f[1]));
+            case "STATS" -> {
+                Histogram h = ticks;
+                ticks = new Histogram(HIGHEST_NANOS, 3);
+                emit(String.format("@TICKS %d %d %d %d %d", h.getTotalCount(),
+                        h.getValueAtPercentile(50) / 1000, h.getValueAtPercentile(99) / 1000,
+                        h.getValueAtPercentile(99.9) / 1000, h.getMaxValue() / 1000));
+            }
+            case "SHUTDOWN" -> running = false;
+            case "" -> { }
+            default -> System.err.println("[SimNode] unknown command: " + line);
+        }
+    }
+
+    private void join(UUID id, String name, int expect) {
+        PlayerMock p = new PlayerMock(server, name, id);
+        online.put(id, p);
+        long now = System.nanoTime();
+        if (expect >= 0) watches.put(id, new Watch(expect, now, now + syncTimeoutNanos));
+        server.addPlayer(p);
+    }
+
+    private void set(UUID id, int level) {
+        PlayerMock p = online.get(id);
+        if (p == null) return;
+        int old = p.getLevel();
+        p.setLevel(level);
+        server.getPluginManager().callEvent(new PlayerLevelChangeEvent(p, old, level));
+        p.teleport(new Location(world, rnd.nextInt(-5000, 5000), 64, rnd.nextInt(-5000, 5000)));
+        emit("@SET " + id + " " + epochMicros());
+    }
+
+    private void quit(UUID id) {
+        PlayerMock p = online.remove(id);
+        if (p == null) return;
+        watches.remove(id);
+        p.disconnect();
+        emit("@QUIT " + id + " " + epochMicros());
+    }
+
+    private void checkWatches() {
+        if (watches.isEmpty()) return;
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<UUID, Watch>> it = watches.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, Watch> e = it.next();
+            PlayerMock p = online.get(e.getKey());
+            Watch w = e.getValue();
+            if (p == null) {
+                it.remove();
+            } else if (p.getLevel() == w.expect) {
+                emit("@SYNCED " + e.getKey() + " " + (now - w.joinedAt) / 1000);
+                it.remove();
+            } else if (now > w.deadline) {
+                emit("@STALE " + e.getKey() + " " + p.getLevel() + " " + w.expect);
+                it.remove();
+            }
+        }
+    }
+
+    static long epochMicros() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    private static void emit(String line) {
+        synchronized (System.out) {
+            System.out.println(line);
+            System.out.flush();
+        }
+    }
+}
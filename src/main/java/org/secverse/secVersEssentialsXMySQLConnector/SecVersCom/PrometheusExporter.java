@@ -0,0 +1,261 @@
+package org.secverse.secVersEssentialsXMySQLConnector.SecVersCom;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bukkit.plugin.Plugin;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Optional /metrics endpoint in Prometheus text format, served by the JDK's built-in HTTP server.
+ *
+ * DB statement latencies come from SyncMetrics as histograms (since start); everything else is
+ * registered as counter or gauge suppliers. Scrapes render into one reused ASCII buffer on a
+ * single thread, so a scrape allocates next to nothing beyond the JDK's own request objects.
+ */
+public final class PrometheusExporter {
+
+    // Histogram upper bounds in µs and their rendered form in seconds
+    private static final long[] LE_MICROS = {
+            250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 5_000_000
+    };
+    private static final String[] LE_TEXT = {
+            "0.00025", "0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "5"
+    };
+
+    private final Plugin plugin;
+    private final SyncMetrics metrics;
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    // Render state, only touched on the HTTP thread
+    private final Ascii out = new Ascii(64 * 1024);
+    private final long[] cumulative = new long[LE_MICROS.length];
+
+    private HttpServer server;
+
+    private static final class Family {
+        final String type;
+        final String help;
+        final List<Sample> samples = new ArrayList<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private record Sample(String labels, LongSupplier value, boolean nanosAsSeconds) { }
+
+    public PrometheusExporter(Plugin plugin, SyncMetrics metrics) {
+        this.plugin = plugin;
+        this.metrics = metrics;
+    }
+
+    // ─────────────────────────── Registration ───────────────────────────
+
+    /**
+     * Registers a monotonically increasing value. labels is preformatted (e.g. worker="homes") or null.
+     */
+    public PrometheusExporter counter(String name, String help, String labels, LongSupplier value) {
+        return add(name, "counter", help, new Sample(labels, value, false));
+    }
+
+    /**
+     * Registers a counter kept in nanoseconds and exported in seconds.
+     */
+    public PrometheusExporter counterSeconds(String name, String help, String labels, LongSupplier nanos) {
+        return add(name, "counter", help, new Sample(labels, nanos, true));
+    }
+
+    public PrometheusExporter gauge(String name, String help, String labels, LongSupplier value) {
+        return add(name, "gauge", help, new Sample(labels, value, false));
+    }
+
+    private synchronized PrometheusExporter add(String name, String type, String help, Sample sample) {
+        families.computeIfAbsent(name, n -> new Family(type, help)).samples.add(sample);
+        return this;
+    }
+
+    // ─────────────────────────── Lifecycle ───────────────────────────
+
+    public void start(String bindAddress, int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SecVers-Metrics");
+            t.setDaemon(true);
+            return t;
+        }));
+        server.start();
+        plugin.getLogger().info("[Metrics] Prometheus endpoint on http://" + bindAddress + ":" + port + "/metrics");
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            render();
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, out.len);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(out.buf, 0, out.len);
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("[Metrics] scrape failed: " + e.getMessage());
+            ex.sendResponseHeaders(500, -1);
+        } finally {
+            ex.close();
+        }
+    }
+
+    // ─────────────────────────── Rendering ───────────────────────────
+
+    private synchronized void render() {
+        out.len = 0;
+        renderStatements();
+        // Sync gauges (queue depths, sessions, dirty players); names come from SyncMetrics.gauge()
+        metrics.forEachGauge((name, value) -> {
+            out.a("# TYPE secvers_").name(name).a(" gauge\n");
+            out.a("secvers_").name(name).a(' ').num(value).a('\n');
+        });
+        for (Map.Entry<String, Family> e : families.entrySet()) {
+            Family f = e.getValue();
+            header(e.getKey(), f.type, f.help);
+            for (Sample s : f.samples) {
+                out.a(e.getKey());
+                if (s.labels != null) out.a('{').a(s.labels).a('}');
+                out.a(' ');
+                long v = s.value.getAsLong();
+                if (s.nanosAsSeconds) out.micros(v / 1_000);
+                else out.num(v);
+                out.a('\n');
+            }
+        }
+    }
+
+    private void renderStatements() {
+        header("secvers_db_statement_seconds", "histogram", "DBCommands call latency per worker and statement");
+        metrics.forEachStat((worker, statement, st) -> {
+            long count = st.cumulative(LE_MICROS, cumulative);
+            for (int i = 0; i < LE_MICROS.length; i++) {
+                labels("secvers_db_statement_seconds_bucket", worker, statement).a(",le=\"").a(LE_TEXT[i]).a("\"} ")
+                        .num(cumulative[i]).a('\n');
+            }
+            labels("secvers_db_statement_seconds_bucket", worker, statement).a(",le=\"+Inf\"} ").num(count).a('\n');
+            labels("secvers_db_statement_seconds_sum", worker, statement).a("} ").micros(st.sumMicros()).a('\n');
+            labels("secvers_db_statement_seconds_count", worker, statement).a("} ").num(count).a('\n');
+        });
+        statementCounter("secvers_db_rows_written_total", "Rows written by *IfVersion and batch statements", SyncMetrics.Stat::rowsWritten);
+        statementCounter("secvers_db_rows_skipped_total", "Rows left untouched by the (? > last_update) guard", SyncMetrics.Stat::rowsSkipped);
+        statementCounter("secvers_db_errors_total", "Statements that threw", SyncMetrics.Stat::errors);
+    }
+
+    private void statementCounter(String name, String help, ToLongFunction<SyncMetrics.Stat> value) {
+        header(name, "counter", help);
+        metrics.forEachStat((worker, statement, st) ->
+                labels(name, worker, statement).a("} ").num(value.applyAsLong(st)).a('\n'));
+    }
+
+    private Ascii labels(String metric, String worker, String statement) {
+        return out.a(metric).a("{worker=\"").a(worker).a("\",statement=\"").a(statement).a('"');
+    }
+
+    private void header(String name, String type, String help) {
+        out.a("# HELP ").a(name).a(' ').a(help).a('\n');
+        out.a("# TYPE ").a(name).a(' ').a(type).a('\n');
+    }
+
+    /**
+     * Growable ASCII buffer with allocation-free number formatting.
+     */
+    private static final class Ascii {
+        byte[] buf;
+        int len;
+
+        Ascii(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        Ascii a(char c) {
+            ensure(1);
+            buf[len++] = (byte) c;
+            return this;
+        }
+
+        Ascii a(String s) {
+            int n = s.length();
+            ensure(n);
+            for (int i = 0; i < n; i++) buf[len++] = (byte) s.charAt(i);
+            return this;
+        }
+
+        /** Metric name part: anything outside [a-zA-Z0-9_] becomes '_'. */
+        Ascii name(String s) {
+            int n = s.length();
+            ensure(n);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+                buf[len++] = (byte) (ok ? c : '_');
+            }
+            return this;
+        }
+
+        Ascii num(long v) {
+            ensure(20);
+            if (v < 0) {
+                if (v == Long.MIN_VALUE) return a("-9223372036854775808");
+                buf[len++] = '-';
+                v = -v;
+            }
+            int start = len;
+            do {
+                buf[len++] = (byte) ('0' + (v % 10));
+                v /= 10;
+            } while (v != 0);
+            for (int i = start, j = len - 1; i < j; i++, j--) {
+                byte t = buf[i];
+                buf[i] = buf[j];
+                buf[j] = t;
+            }
+            return this;
+        }
+
+        /** Microseconds as seconds with six decimals. */
+        Ascii micros(long us) {
+            if (us < 0) {
+                a('-');
+                us = -us;
+            }
+            num(us / 1_000_000).a('.');
+            long frac = us % 1_000_000;
+            ensure(6);
+            for (int d = 100_000; d > 0; d /= 10) buf[len++] = (byte) ('0' + (frac / d) % 10);
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.secverse.secVersEssentialsXMySQLConnector.SecVersCom;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.InvalidationBus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * InvalidationBus transport over the BungeeCord plugin-messaging channel, using the
+ * proxy's "Forward ALL" sub-command. Works with BungeeCord and with Velocity when
+ * bungee-plugin-message-channel is enabled.
+ *
+ * Plugin messages travel over a player connection, so a server with nobody online can
+ * neither send nor receive; such messages are dropped and the change feed covers them.
+ */
+public final class ProxyChannelTransport implements InvalidationBus.Transport, PluginMessageListener {
+
+    private static final String CHANNEL = "BungeeCord";
+    private static final String SUBCHANNEL = "SecVersInvalidate";
+
+    private final Plugin plugin;
+    private volatile Consumer<byte[]> receiver;
+
+    // Messages not sent because no player was online to carry them
+    private final AtomicLong dropped = new AtomicLong();
+
+    public ProxyChannelTransport(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        Bukkit.getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+        Bukkit.getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+    }
+
+    @Override
+    public void stop() {
+        receiver = null;
+        try {
+            Bukkit.getMessenger().unregisterIncomingPluginChannel(plugin);
+            Bukkit.getMessenger().unregisterOutgoingPluginChannel(plugin);
+        } catch (Exception ignored) {}
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void send(byte[] message) {
+        Iterator<? extends Player> online = Bukkit.getOnlinePlayers().iterator();
+        if (!online.hasNext()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Player carrier = online.next();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + message.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF("Forward");
+            out.writeUTF("ALL");
+            out.writeUTF(SUBCHANNEL);
+            out.writeShort(message.length);
+            out.write(message);
+        } catch (IOException ex) {
+            return; // cannot happen for an in-memory stream
+        }
+        try {
+            carrier.sendPluginMessage(plugin, CHANNEL, bytes.toByteArray());
+        } catch (Exception ex) {
+            // Carrier left between the lookup and the send
+            dropped.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        Consumer<byte[]> r = receiver;
+        if (r == null || !CHANNEL.equals(channel)) return;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (!SUBCHANNEL.equals(in.readUTF())) return;
+            byte[] data = new byte[in.readUnsignedShort()];
+            in.readFully(data);
+            r.accept(data);
+        } catch (IOException ex) {
+            plugin.getLogger().warning("[Invalidation] malformed proxy message: " + ex.getMessage());
+        }
+    }
+}
@@ -8,17 +8,36 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.SecVersCom.PrometheusExporter;
+import org.secverse.secVersEssentialsXMySQLConnector.SecVersCom.ProxyChannelTransport;
 import org.secverse.secVersEssentialsXMySQLConnector.SecVersCom.Telemetry;
 import org.secverse.secVersEssentialsXMySQLConnector.SecVersCom.UpdateChecker;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.InvalidationBus;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSessions;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SlowOpLog;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncMetrics;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.TimedDBCommands;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.database;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.BalanceLedger;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.ChangeFeedWorker;
 import org.secverse.secVersEssentialsXMySQLConnector.worker.EssentialsXDataWorker;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.HandoffCoordinator;
 import org.secverse.secVersEssentialsXMySQLConnector.worker.HomeDataWorker;
 import org.secverse.secVersEssentialsXMySQLConnector.worker.PlayerDataWorker;
+import org.secverse.secVersEssentialsXMySQLConnector.worker.PresenceTracker;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -30,14 +49,27 @@ public final class SecVersEssentialsXMySQLConnector extends JavaPlugin {
     private database dbHelper;
     private DBCommands db;
 
+    // Shared per-player sync state and off-thread executors
+    private PlayerSessions sessions;
+    private SyncExecutors executors;
+    private MainThreadApplyQueue applyQueue;
+    private SyncMetrics metrics;
+    private SlowOpLog slowLog;
+    private InvalidationBus invalidation;
+
     // Workers
     private PlayerDataWorker playerDataWorker;
     private HomeDataWorker homeDataWorker;
     private EssentialsXDataWorker essentialsXDataWorker;
+    private BalanceLedger ledger;
+    private ChangeFeedWorker changeFeed;
+    private HandoffCoordinator handoff;
+    private PresenceTracker presence;
 
     // Optional services
     private UpdateChecker updateChecker;
     private Telemetry telemetry;
+    private PrometheusExporter prometheus;
 
     @Override
     public void onEnable() {
@@ -97,12 +129,55 @@ public final class SecVersEssentialsXMySQLConnector extends JavaPlugin {
 
         final boolean enablePlayerData = cfg.getBoolean("playerdata.enabled", false);
 
+        sessions = new PlayerSessions(this);
+        sessions.start();
+        executors = new SyncExecutors(cfg.getInt("sync.encode_threads", 2));
+        if (cfg.getBoolean("slowlog.enabled", true)) {
+            slowLog = new SlowOpLog(this);
+            slowLog.start();
+        }
+        applyQueue = new MainThreadApplyQueue(this, cfg.getLong("sync.apply_budget_ms", 2L), slowLog);
+        applyQueue.start();
+
+        if (cfg.getBoolean("metrics.enabled", true)) {
+            metrics = new SyncMetrics(cfg.getInt("metrics.window_seconds", 60));
+            registerGauges();
+        }
+
+        // Before the workers, so workerDb() can hook their writes up
+        if (cfg.getBoolean("invalidation.enabled", false)) {
+            invalidation = new InvalidationBus(new ProxyChannelTransport(this), serverName);
+        }
+
+        // Before the workers, so its join listener runs ahead of theirs
+        if (cfg.getBoolean("handoff.enabled", true)) {
+            handoff = new HandoffCoordinator(this, workerDb("handoff"), executors, serverName);
+            handoff.start();
+            if (metrics != null) {
+                metrics.gauge("handoff_wait_p50_us", () -> handoff.waitPercentileMicros(50));
+                metrics.gauge("handoff_wait_p99_us", () -> handoff.waitPercentileMicros(99));
+                metrics.gauge("handoff_release_p50_us", () -> handoff.releasePercentileMicros(50));
+                metrics.gauge("handoff_release_p99_us", () -> handoff.releasePercentileMicros(99));
+                metrics.gauge("handoff_takeovers", handoff::getTakeovers);
+            }
+        }
+
+        if (cfg.getBoolean("presence.enabled", true)) {
+            presence = new PresenceTracker(this, workerDb("presence"), executors, handoff, serverName);
+            presence.start();
+        }
+
         // Start workers
         if(enablePlayerData) {
             playerDataWorker = new PlayerDataWorker(
                     this,
                     essentials,
-                    db,
+                    workerDb("player"),
+                    sessions,
+                    executors,
+                    applyQueue,
+                    slowLog,
+                    handoff,
                     serverName,
                     playerFlushSecs
             );
@@ -113,31 +188,129 @@ public final class SecVersEssentialsXMySQLConnector extends JavaPlugin {
         homeDataWorker = new HomeDataWorker(
                 this,
                 essentials,
-                db,
+                workerDb("homes"),
+                sessions,
+                applyQueue,
+                executors,
+                handoff,
                 serverName,
                 homesFlushSecs,
                 homesDebounceTicks
         );
         homeDataWorker.start();
 
+        if (balanceWriteEnabled && cfg.getBoolean("essx.ledger.enabled", false)) {
+            ledger = new BalanceLedger(this, essentials, workerDb("ledger"), applyQueue, executors, handoff, serverName);
+            ledger.start();
+            if (metrics != null) {
+                metrics.gauge("ledger_pending", ledger::getPending);
+                metrics.gauge("ledger_appended", ledger::getAppended);
+                metrics.gauge("ledger_applied", ledger::getApplied);
+                metrics.gauge("ledger_compacted", ledger::getCompacted);
+                metrics.gauge("ledger_watermark", ledger::getWatermark);
+            }
+        }
+
         essentialsXDataWorker = new EssentialsXDataWorker(
                 this,
                 essentials,
-                db,
+                workerDb("essx"),
+                sessions,
+                applyQueue,
+                executors,
+                handoff,
                 serverName,
                 balanceWriteEnabled,
-                exFlushSecs
+                exFlushSecs,
+                ledger
         );
         essentialsXDataWorker.start();
 
+        changeFeed = new ChangeFeedWorker(this, workerDb("feed"), homeDataWorker, essentialsXDataWorker, executors, serverName);
+        if (cfg.getBoolean("feed.enabled", true)) {
+            changeFeed.start();
+            if (metrics != null) metrics.gauge("feed_lag_ms", changeFeed::getLagMillis);
+        }
+        if (invalidation != null) {
+            invalidation.start((uuid, domains, version) -> {
+                changeFeed.invalidate(uuid, domains, version);
+                if (handoff != null && (domains & PlayerSession.HANDOFF) != 0) handoff.leaseReleased(uuid);
+            });
+            if (metrics != null) {
+                metrics.gauge("invalidation_sent", invalidation::getSent);
+                metrics.gauge("invalidation_received", invalidation::getReceived);
+            }
+        }
+
+        if (metrics != null && cfg.getBoolean("metrics.prometheus.enabled", false)) {
+            startPrometheus(cfg);
+        }
+
         getLogger().info("EssentialsX SQL Sync enabled");
     }
 
     @Override
     public void onDisable() {
-        // Stop workers first
+        // Snapshot everyone still online before the workers drop their state
+        long started = System.nanoTime();
+        CompletableFuture<Integer> playerFlush = CompletableFuture.completedFuture(0);
+        int profileFlush = 0;
+        if (executors != null) {
+            try {
+                if (playerDataWorker != null) {
+                    playerFlush = playerDataWorker.flushAllForShutdown(getConfig().getInt("sync.shutdown_batch_size", 200));
+                }
+                if (homeDataWorker != null) homeDataWorker.flushAllForShutdown();
+                if (essentialsXDataWorker != null) profileFlush = essentialsXDataWorker.flushAllForShutdown();
+                if (ledger != null) ledger.flushAllForShutdown();
+            } catch (Exception ex) {
+                getLogger().warning("[Shutdown] final flush failed: " + ex.getMessage());
+            }
+        }
+
+        if (prometheus != null) {
+            prometheus.stop();
+            prometheus = null;
+        }
+
+        // Stop workers
         safeStopWorkers();
 
+        // Let queued encodes and writes finish before the connection goes away
+        boolean drained = false;
+        if (executors != null) {
+            long deadlineMs = TimeUnit.SECONDS.toMillis(Math.max(1, getConfig().getInt("sync.shutdown_deadline_seconds", 10)));
+            drained = executors.shutdown(getLogger(), deadlineMs);
+            long tookMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            Integer written = playerFlush.getNow(null);
+            getLogger().info("[Shutdown] flushed players=" + (written != null ? written : "incomplete")
+                    + " profiles=" + profileFlush
+                    + " in " + tookMs + " ms" + (drained ? "" : " (deadline reached)"));
+        }
+
+        // After the drain, so slow or failed final writes still make it into the log
+        if (slowLog != null) {
+            slowLog.stop();
+            slowLog = null;
+        }
+
+        // After an abandoned drain the io thread may still be inside a statement on the shared
+        // connection; nothing else touches it unless that thread is gone
+        boolean connectionFree = drained || (executors != null && executors.isIoTerminated());
+
+        // Sessions only count as cleanly ended if every final write landed
+        if (presence != null) {
+            if (connectionFree) presence.leaveAll(drained);
+            presence = null;
+        }
+
+        // Only once every final write has landed may the next server load these players;
+        // otherwise the leases stay held until they expire
+        if (handoff != null) {
+            if (drained) handoff.releaseAll();
+            handoff = null;
+        }
+
         // Close DB last
         if (dbHelper != null) {
             dbHelper.close();
@@ -148,14 +321,101 @@ public final class SecVersEssentialsXMySQLConnector extends JavaPlugin {
         }
     }
 
+    /**
+     * DBCommands for one worker: timed under the worker's name (and slow-logged) when metrics are on,
+     * and broadcasting its committed changes when invalidation is on.
+     */
+    private DBCommands workerDb(String worker) {
+        DBCommands d = metrics != null ? new TimedDBCommands(dbHelper.getConnection(), metrics, slowLog, worker) : db;
+        if (invalidation != null) d.setChangeListener(invalidation);
+        return d;
+    }
+
+    private void registerGauges() {
+        metrics.gauge("encode_backlog", executors::cpuBacklog);
+        metrics.gauge("write_backlog", executors::ioBacklog);
+        metrics.gauge("apply_backlog", applyQueue::backlog);
+        metrics.gauge("apply_spilled_ticks", applyQueue::spilledTicks);
+        metrics.gauge("sessions", sessions::size);
+        metrics.gauge("flushes_in_flight", () -> sessions.all().stream().filter(PlayerSession::isFlushing).count());
+        metrics.gauge("dirty.player", () -> countDirty(PlayerSession.PLAYER_DATA));
+        metrics.gauge("dirty.homes", () -> countDirty(PlayerSession.HOME_DATA));
+        metrics.gauge("dirty.essx", () -> countDirty(PlayerSession.ESSENTIALS_DATA));
+        if (slowLog != null) metrics.gauge("slowlog_dropped", slowLog::getDropped);
+    }
+
+    private long countDirty(int mask) {
+        return sessions.all().stream().filter(s -> s.isDirty(mask)).count();
+    }
+
+    private void startPrometheus(FileConfiguration cfg) {
+        prometheus = new PrometheusExporter(this, metrics);
+        prometheus.gauge("secvers_db_pool_size", "Connections available to the sync workers", null, () -> 1)
+                .gauge("secvers_db_pool_active", "Connections currently running a write", null, executors::ioActive)
+                .counterSeconds("secvers_main_thread_seconds_total", "Main-thread time spent in plugin tasks",
+                        "task=\"apply\"", applyQueue::busyNanos)
+                .counter("secvers_flushes_total", "Periodic flushes written", "worker=\"homes\"", homeDataWorker::getFlushes)
+                .counter("secvers_flushes_total", "Periodic flushes written", "worker=\"essx\"", essentialsXDataWorker::getFlushes)
+                .counter("secvers_flush_failures_total", "Periodic flushes that failed and were re-marked dirty",
+                        "worker=\"homes\"", homeDataWorker::getFlushFailures)
+                .counter("secvers_flush_failures_total", "Periodic flushes that failed and were re-marked dirty",
+                        "worker=\"essx\"", essentialsXDataWorker::getFlushFailures);
+        if (playerDataWorker != null) {
+            PlayerDataWorker pd = playerDataWorker;
+            prometheus.counter("secvers_flushes_total", "Periodic flushes written", "worker=\"player\"", pd::getFlushes)
+                    .counter("secvers_flush_failures_total", "Periodic flushes that failed and were re-marked dirty",
+                            "worker=\"player\"", pd::getFlushFailures)
+                    .counterSeconds("secvers_main_thread_seconds_total", "Main-thread time spent in plugin tasks",
+                            "task=\"capture\"", pd::getCaptureNanos)
+                    .counterSeconds("secvers_main_thread_seconds_total", "Main-thread time spent in plugin tasks",
+                            "task=\"dupe_audit\"", pd::getAuditTotalNanos)
+                    .gauge("secvers_snapshot_backlog", "Player snapshots waiting for capture", null, pd::getPipelineBacklog)
+                    .counter("secvers_dupe_audits_total", "Dupe audits run", null, pd::getAuditsRun)
+                    .counter("secvers_dupe_audits_coalesced_total", "Audit requests folded into a pending audit", null,
+                            pd::getAuditsCoalesced)
+                    .counter("secvers_uid_conflicts_total", "Shulker UIDs seen in two places at once", null,
+                            pd::getUidConflicts);
+        }
+
+        String bind = cfg.getString("metrics.prometheus.bind", "127.0.0.1");
+        int port = cfg.getInt("metrics.prometheus.port", 9464);
+        try {
+            prometheus.start(bind, port);
+        } catch (IOException ex) {
+            getLogger().warning("[Metrics] Prometheus endpoint failed to start on " + bind + ":" + port + ": " + ex.getMessage());
+            prometheus = null;
+        }
+    }
+
+    /**
+     * Sync instrumentation (statement latencies, row counters, queue depths), or null if metrics are disabled.
+     */
+    public SyncMetrics getSyncMetrics() {
+        return metrics;
+    }
+
     private void safeStopWorkers() {
         try { if (playerDataWorker != null) playerDataWorker.stop(); } catch (Exception ignored) {}
         try { if (homeDataWorker != null) homeDataWorker.stop(); } catch (Exception ignored) {}
         try { if (essentialsXDataWorker != null) essentialsXDataWorker.stop(); } catch (Exception ignored) {}
+        try { if (ledger != null) ledger.stop(); } catch (Exception ignored) {}
+        try { if (changeFeed != null) changeFeed.stop(); } catch (Exception ignored) {}
+        try { if (presence != null) presence.stop(); } catch (Exception ignored) {}
+        try { if (handoff != null) handoff.stop(); } catch (Exception ignored) {}
+        try { if (invalidation != null) invalidation.stop(); } catch (Exception ignored) {}
+        try { if (applyQueue != null) applyQueue.stop(); } catch (Exception ignored) {}
+        try { if (sessions != null) sessions.stop(); } catch (Exception ignored) {}
     }
 
     @Override
     public boolean onCommand(CommandSender sender, Command cmd, String label, String[] args) {
+        if ("syncstats".equalsIgnoreCase(cmd.getName())) {
+            return syncStats(sender, args);
+        }
+        if ("syncwhere".equalsIgnoreCase(cmd.getName())) {
+            return syncWhere(sender, args);
+        }
+
         if (!(sender instanceof Player p)) return true;
 
         if (!p.hasPermission("essentials.sync")) {
@@ -183,17 +443,92 @@ public final class SecVersEssentialsXMySQLConnector extends JavaPlugin {
             });
             return true;
         } else if ("import".equalsIgnoreCase(mode)) {
-            Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
-                try {
-                    p.sendMessage("§aSync is automatic. Rejoin to trigger import decision, or wait for periodic reconciliation.");
-                } catch (Exception ex) {
-                    getLogger().warning("Manual import failed for " + p.getName() + ": " + ex.getMessage());
-                }
-            });
+            if (!changeFeed.isRunning()) {
+                p.sendMessage("§cThe change feed is disabled (feed.enabled).");
+                return true;
+            }
+            p.sendMessage("§7Re-importing your stored data...");
+            changeFeed.refresh(p, () -> p.sendMessage("§aImport queued; changes apply within a few ticks."));
             return true;
         } else {
             p.sendMessage("§cUnknown mode. Use <import|export>");
             return true;
         }
     }
+
+    private boolean syncWhere(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("essentials.sync.where")) {
+            sender.sendMessage("No permission.");
+            return true;
+        }
+        if (presence == null) {
+            sender.sendMessage("§cPresence tracking is disabled (presence.enabled).");
+            return true;
+        }
+        if (args.length == 0) {
+            sender.sendMessage("§7Usage: /syncwhere <player>");
+            return true;
+        }
+
+        final String name = args[0];
+        executors.io().execute(() -> {
+            try {
+                DBCommands.Presence pr = db.findPresence(name);
+                if (pr == null) {
+                    sender.sendMessage("§c" + name + " has never joined the network.");
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (pr.serverName == null) {
+                    sender.sendMessage("§7" + pr.name + " is offline"
+                            + (pr.lastServer != null ? ", last on §f" + pr.lastServer : "") + "§7.");
+                } else if (now - pr.heartbeat > presence.getHeartbeatSeconds() * 3000L) {
+                    sender.sendMessage("§7" + pr.name + " was on §f" + pr.serverName + "§7, no heartbeat for "
+                            + (now - pr.heartbeat) / 1000 + "s (server down?).");
+                } else {
+                    sender.sendMessage("§a" + pr.name + " is on §f" + pr.serverName + "§a, joined "
+                            + (now - pr.joinedAt) / 1000 + "s ago.");
+                }
+            } catch (Exception ex) {
+                getLogger().warning("Presence lookup failed for " + name + ": " + ex.getMessage());
+            }
+        });
+        return true;
+    }
+
+    private boolean syncStats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("essentials.sync.stats")) {
+            sender.sendMessage("No permission.");
+            return true;
+        }
+        if (metrics == null) {
+            sender.sendMessage("§cMetrics are disabled (metrics.enabled).");
+            return true;
+        }
+
+        boolean perWorker = args.length > 0 && "workers".equalsIgnoreCase(args[0]);
+        sender.sendMessage("§6Sync stats §7(latency over last " + metrics.windowSeconds() + "s in ms, counters since "
+                + metrics.uptimeSeconds() + "s ago)");
+
+        StringBuilder gauges = new StringBuilder("§7");
+        metrics.gauges().forEach((name, value) -> gauges.append(name).append('=').append(value).append("  "));
+        sender.sendMessage(gauges.toString().trim());
+
+        List<SyncMetrics.StatementSnapshot> rows = perWorker ? metrics.byWorker() : metrics.byStatement();
+        for (SyncMetrics.StatementSnapshot s : rows) {
+            if (s.calls == 0) continue;
+            String rowsPart = s.rowsWritten + s.rowsSkipped > 0
+                    ? " §7rows §f" + s.rowsWritten + "§7/skip §f" + s.rowsSkipped : "";
+            sender.sendMessage("§e" + (s.worker != null ? s.worker + "/" : "") + s.statement
+                    + " §7n=§f" + s.calls
+                    + " §7p50 §f" + ms(s.p50Micros) + " §7p95 §f" + ms(s.p95Micros) + " §7p99 §f" + ms(s.p99Micros)
+                    + rowsPart
+                    + (s.errors > 0 ? " §cerr " + s.errors : ""));
+        }
+        return true;
+    }
+
+    private static String ms(long micros) {
+        return String.format(Locale.ROOT, "%.2f", micros / 1000.0);
+    }
 }
@@ -0,0 +1,79 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size Bloom filter over 128-bit keys (two longs, e.g. a UUID).
+ *
+ * Not thread-safe. False positives are possible, false negatives are not. Once more keys
+ * than expected were inserted the false-positive rate climbs, so callers should clear()
+ * when {@link #isSaturated()} turns true.
+ */
+public final class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashes;
+    private final int expected;
+    private int inserted;
+
+    /**
+     * @param expectedInsertions keys the filter is sized for
+     * @param fpp                target false-positive probability at that size, e.g. 0.01
+     */
+    public BloomFilter(int expectedInsertions, double fpp) {
+        int n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, fpp));
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.bits = new long[(bitCount + 63) >>> 6];
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.expected = n;
+    }
+
+    public void put(long hi, long lo) {
+        long h1 = mix(hi ^ Long.rotateLeft(lo, 32));
+        long h2 = mix(lo + 0x9E3779B97F4A7C15L * hi) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            int idx = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[idx >>> 6] |= 1L << idx;
+        }
+        inserted++;
+    }
+
+    public boolean mightContain(long hi, long lo) {
+        long h1 = mix(hi ^ Long.rotateLeft(lo, 32));
+        long h2 = mix(lo + 0x9E3779B97F4A7C15L * hi) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            int idx = (int) Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[idx >>> 6] & (1L << idx)) == 0) return false;
+        }
+        return true;
+    }
+
+    public boolean isSaturated() {
+        return inserted >= expected;
+    }
+
+    public void clear() {
+        Arrays.fill(bits, 0L);
+        inserted = 0;
+    }
+
+    /**
+     * Heap used by the bit array, in bytes.
+     */
+    public long sizeInBytes() {
+        return (long) bits.length * Long.BYTES;
+    }
+
+    // murmur3 fmix64
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -6,19 +6,71 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
+/**
+ * Conflict checks use version columns rather than last_update: every write bumps the versions
+ * of what it writes in the same statement, and the *IfVersion methods only write while those
+ * are still at the versions the caller expects. A stale write is therefore caught by the write
+ * itself, independent of the clocks of the servers involved. An expected version below zero
+ * writes unconditionally, for callers that never read the row. last_update remains the
+ * wall-clock time of the last write, for the change feed and presence checks.
+ *
+ * essentials_users has one version for the row. The per-server tables have one per domain
+ * (homes_version, xp_version, ...), so writes to different columns of the same row never
+ * conflict; the whole-row writes check and bump all of them.
+ *
+ * Balances are DECIMAL(20,4) and BigDecimal throughout; see scaleBalance.
+ */
 public class DBCommands {
     private final Connection conn;
     public DBCommands(Connection conn) { this.conn = conn; }
 
+    // Domains a whole profile / player state row carries, as PlayerSession bits
+    private static final int PROFILE_DOMAINS = PlayerSession.HOMES | PlayerSession.LAST_LOCATION | PlayerSession.GROUP;
+    private static final int STATE_DOMAINS = PlayerSession.PLAYER_DATA | PlayerSession.INVENTORY;
+
+    /**
+     * Told about every row a write actually changed, once it is committed.
+     */
+    @FunctionalInterface
+    public interface ChangeListener {
+        /**
+         * @param serverName server of a per-server row, or null for the global user row
+         * @param domains    PlayerSession domain bits the row carries
+         * @param version    the row's new last_update
+         */
+        void changed(UUID uuid, String serverName, int domains, long version);
+    }
+
+    private volatile ChangeListener changeListener;
+    // Changes made inside inTransaction, reported after the commit; null outside a transaction
+    private volatile List<Change> txChanges;
+
+    private record Change(UUID uuid, String serverName, int domains, long version) { }
+
+    public void setChangeListener(ChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    /** Decimal places of essentials_users.balance and ledger deltas, DECIMAL(20,4). */
+    public static final int BALANCE_SCALE = 4;
+
     public static final class GlobalUser {
         public UUID uuid;
         public String name;
-        public double balance;
+        public BigDecimal balance;   // scale BALANCE_SCALE
         public long lastUpdate;
+        public long version;
+        public long ledgerId;        // highest balance ledger entry included in balance
     }
     public static final class ServerProfile {
         public UUID uuid;
@@ -27,6 +79,36 @@ public class DBCommands {
         public String lastLocation;  // serialized location, nullable
         public String homes;         // serialized homes, nullable
         public long lastUpdate;
+        public long homesVersion;
+        public long groupVersion;
+        public long locationVersion;
+    }
+
+    public static final class ItemUidSighting {
+        public UUID uid;
+        public UUID holder;
+        public String serverName;
+        public long lastSeen;
+    }
+
+    public static final class Presence {
+        public UUID uuid;
+        public String name;
+        public String serverName;   // server the player is on, null while offline
+        public String lastServer;   // server of the last finished session, nullable
+        public long joinedAt;
+        public long quitAt;         // 0 unless the last session ended after its final flush
+        public long heartbeat;
+    }
+
+    public static final class LedgerEntry {
+        public long id;              // set by appendBalanceDeltas
+        public UUID uuid;
+        public String name;          // player name, required to create a missing user row; not stored
+        public String serverName;
+        public BigDecimal delta;
+        public String cause;         // nullable
+        public long createdAt;
     }
 
     public static final class UserState {
@@ -56,6 +138,10 @@ public class DBCommands {
         public String bedSpawnLoc;     // serialized location, nullable
 
         public long lastUpdate;
+        public long inventoryVersion;
+        public long xpVersion;
+        public long vitalsVersion;
+        public long metaVersion;
     }
 
     public void ensureGlobalUser(UUID uuid, String name, long newTimestamp) throws SQLException {
@@ -71,46 +157,70 @@ public class DBCommands {
         }
     }
 
-    public boolean upsertGlobalUserIfNewer(UUID uuid, String name, double balance, long newTimestamp) throws SQLException {
-        final String sql = """
-            INSERT INTO essentials_users (uuid, name, balance, last_update)
-            VALUES (?, ?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-              name = VALUES(name),
-              balance = IF(VALUES(last_update) > last_update, VALUES(balance), balance),
-              last_update = GREATEST(last_update, VALUES(last_update))
+    /**
+     * Writes name and balance if the row is at expectedVersion, or inserts it if it does not
+     * exist and expectedVersion is 0 or unconditional. Returns false if the row moved on.
+     */
+    public boolean upsertGlobalUserIfVersion(UUID uuid, String name, BigDecimal balance, long expectedVersion, long now) throws SQLException {
+        final String update = """
+            UPDATE essentials_users
+            SET name=?, balance=?, version=version+1, last_update=?
+            WHERE uuid=? AND (? < 0 OR version = ?)
             """;
-        // The ON DUPLICATE branch always runs for existing rows, but balance only changes if timestamp advanced.
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            ps.setString(1, name);
+            ps.setBigDecimal(2, scaleBalance(balance));
+            ps.setLong(3, now);
+            ps.setString(4, uuid.toString());
+            guard(ps, 5, expectedVersion);
+            if (ps.executeUpdate() > 0) return changed(true, uuid, null, PlayerSession.BALANCE, now);
+        }
+        if (expectedVersion > 0) return false;
+        final String insert = """
+            INSERT IGNORE INTO essentials_users (uuid, name, balance, version, last_update)
+            VALUES (?, ?, ?, 1, ?)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
             ps.setString(1, uuid.toString());
             ps.setString(2, name);
-            ps.setBigDecimal(3, new BigDecimal(balance).setScale(2, RoundingMode.HALF_UP));
-            ps.setLong(4, newTimestamp);
-            int affected = ps.executeUpdate();
-            if (affected == 1) return true;       // inserted
-            // For existing row, we must check whether last_update advanced.
-            GlobalUser gu = getGlobalUser(uuid);
-            return gu != null && gu.lastUpdate == newTimestamp;
+            ps.setBigDecimal(3, scaleBalance(balance));
+            ps.setLong(4, now);
+            return changed(ps.executeUpdate() > 0, uuid, null, PlayerSession.BALANCE, now);
         }
     }
 
-    public boolean updateBalanceIfNewer(UUID uuid, double balance, long newTimestamp) throws SQLException {
+    public boolean updateBalanceIfVersion(UUID uuid, BigDecimal balance, long expectedVersion, long now) throws SQLException {
         final String sql = """
             UPDATE essentials_users
-            SET balance=?, last_update=?
-            WHERE uuid=? AND (? > last_update)
+            SET balance=?, version=version+1, last_update=?
+            WHERE uuid=? AND (? < 0 OR version = ?)
             """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setBigDecimal(1, new BigDecimal(balance).setScale(2, RoundingMode.HALF_UP));
-            ps.setLong(2, newTimestamp);
+            ps.setBigDecimal(1, scaleBalance(balance));
+            ps.setLong(2, now);
             ps.setString(3, uuid.toString());
-            ps.setLong(4, newTimestamp);
+            guard(ps, 4, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, null, PlayerSession.BALANCE, now);
+        }
+    }
+
+    /**
+     * Refreshes the stored name only. Leaves version alone, so it never conflicts with balance
+     * writes (used when balances go through the ledger).
+     */
+    public boolean updateGlobalUserName(UUID uuid, String name, long now) throws SQLException {
+        final String sql = "UPDATE essentials_users SET name=?, last_update=? WHERE uuid=? AND name<>?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, name);
+            ps.setLong(2, now);
+            ps.setString(3, uuid.toString());
+            ps.setString(4, name);
             return ps.executeUpdate() > 0;
         }
     }
 
     public GlobalUser getGlobalUser(UUID uuid) throws SQLException {
-        final String sql = "SELECT uuid, name, balance, last_update FROM essentials_users WHERE uuid = ?";
+        final String sql = "SELECT uuid, name, balance, last_update, version, ledger_id FROM essentials_users WHERE uuid = ?";
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, uuid.toString());
             try (ResultSet rs = ps.executeQuery()) {
@@ -118,13 +228,50 @@ public class DBCommands {
                 GlobalUser gu = new GlobalUser();
                 gu.uuid = uuid;
                 gu.name = rs.getString("name");
-                gu.balance = rs.getDouble("balance");
+                gu.balance = scaleBalance(rs.getBigDecimal("balance"));
                 gu.lastUpdate = rs.getLong("last_update");
+                gu.version = rs.getLong("version");
+                gu.ledgerId = rs.getLong("ledger_id");
                 return gu;
             }
         }
     }
 
+    /**
+     * Users changed after the (afterUpdate, afterUuid) cursor and no later than upTo, in cursor order.
+     * Range scan on idx_users_last_update, so the cost follows the number of changed rows.
+     */
+    public List<GlobalUser> listGlobalUsersChangedSince(long afterUpdate, String afterUuid, long upTo, int limit) throws SQLException {
+        final String sql = """
+            SELECT uuid, name, balance, last_update, version, ledger_id
+            FROM essentials_users
+            WHERE last_update >= ? AND last_update <= ? AND (last_update > ? OR uuid > ?)
+            ORDER BY last_update, uuid
+            LIMIT ?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterUpdate);
+            ps.setLong(2, upTo);
+            ps.setLong(3, afterUpdate);
+            ps.setString(4, afterUuid);
+            ps.setInt(5, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<GlobalUser> out = new ArrayList<>();
+                while (rs.next()) {
+                    GlobalUser gu = new GlobalUser();
+                    gu.uuid = UUID.fromString(rs.getString("uuid"));
+                    gu.name = rs.getString("name");
+                    gu.balance = scaleBalance(rs.getBigDecimal("balance"));
+                    gu.lastUpdate = rs.getLong("last_update");
+                    gu.version = rs.getLong("version");
+                    gu.ledgerId = rs.getLong("ledger_id");
+                    out.add(gu);
+                }
+                return out;
+            }
+        }
+    }
+
     public void ensureServerProfile(UUID uuid, String serverName, long newTimestamp) throws SQLException {
         final String sql = """
             INSERT IGNORE INTO essentials_user_profiles (uuid, server_name, groupname, last_location, homes, last_update)
@@ -138,86 +285,100 @@ public class DBCommands {
         }
     }
 
-    public boolean upsertServerProfileIfNewer(UUID uuid,
-                                              String serverName,
-                                              String groupName,
-                                              String lastLocation,
-                                              String homes,
-                                              long newTimestamp) throws SQLException {
-        final String sql = """
-            INSERT INTO essentials_user_profiles (uuid, server_name, groupname, last_location, homes, last_update)
-            VALUES (?, ?, ?, ?, ?, ?)
-            ON DUPLICATE KEY UPDATE
-              groupname     = IF(VALUES(last_update) > last_update, VALUES(groupname), groupname),
-              last_location = IF(VALUES(last_update) > last_update, VALUES(last_location), last_location),
-              homes         = IF(VALUES(last_update) > last_update, VALUES(homes), homes),
-              last_update   = GREATEST(last_update, VALUES(last_update))
+    /**
+     * Writes the whole profile if every domain is at the version in sp, or inserts it if it does
+     * not exist and none of those versions is above 0. Returns false if the row moved on.
+     */
+    public boolean upsertServerProfileIfVersion(ServerProfile sp, long now) throws SQLException {
+        final String update = """
+            UPDATE essentials_user_profiles
+            SET groupname=?, last_location=?, homes=?,
+                homes_version=homes_version+1, group_version=group_version+1, location_version=location_version+1,
+                last_update=?
+            WHERE uuid=? AND server_name=?
+              AND (? < 0 OR homes_version = ?) AND (? < 0 OR group_version = ?) AND (? < 0 OR location_version = ?)
             """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, uuid.toString());
-            ps.setString(2, serverName);
-            ps.setString(3, groupName);
-            ps.setString(4, lastLocation);
-            ps.setString(5, homes);
-            ps.setLong(6, newTimestamp);
-            int affected = ps.executeUpdate();
-            if (affected == 1) return true; // inserted
-            ServerProfile sp = getServerProfile(uuid, serverName);
-            return sp != null && sp.lastUpdate == newTimestamp;
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            ps.setString(1, sp.groupName);
+            ps.setString(2, sp.lastLocation);
+            ps.setString(3, sp.homes);
+            ps.setLong(4, now);
+            ps.setString(5, sp.uuid.toString());
+            ps.setString(6, sp.serverName);
+            guard(ps, 7, sp.homesVersion);
+            guard(ps, 9, sp.groupVersion);
+            guard(ps, 11, sp.locationVersion);
+            if (ps.executeUpdate() > 0) return changed(true, sp.uuid, sp.serverName, PROFILE_DOMAINS, now);
+        }
+        if (sp.homesVersion > 0 || sp.groupVersion > 0 || sp.locationVersion > 0) return false;
+        final String insert = """
+            INSERT IGNORE INTO essentials_user_profiles
+              (uuid, server_name, groupname, last_location, homes, homes_version, group_version, location_version, last_update)
+            VALUES (?, ?, ?, ?, ?, 1, 1, 1, ?)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
+            ps.setString(1, sp.uuid.toString());
+            ps.setString(2, sp.serverName);
+            ps.setString(3, sp.groupName);
+            ps.setString(4, sp.lastLocation);
+            ps.setString(5, sp.homes);
+            ps.setLong(6, now);
+            return changed(ps.executeUpdate() > 0, sp.uuid, sp.serverName, PROFILE_DOMAINS, now);
         }
     }
 
-    public boolean updateHomesIfNewer(UUID uuid, String serverName, String homes, long newTimestamp) throws SQLException {
+    public boolean updateHomesIfVersion(UUID uuid, String serverName, String homes, long expectedVersion, long now) throws SQLException {
         final String sql = """
             UPDATE essentials_user_profiles
-            SET homes=?, last_update=?
-            WHERE uuid=? AND server_name=? AND (? > last_update)
+            SET homes=?, homes_version=homes_version+1, last_update=?
+            WHERE uuid=? AND server_name=? AND (? < 0 OR homes_version = ?)
             """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, homes);
-            ps.setLong(2, newTimestamp);
+            ps.setLong(2, now);
             ps.setString(3, uuid.toString());
             ps.setString(4, serverName);
-            ps.setLong(5, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 5, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.HOMES, now);
         }
     }
 
-    public boolean updateGroupIfNewer(UUID uuid, String serverName, String groupName, long newTimestamp) throws SQLException {
+    public boolean updateGroupIfVersion(UUID uuid, String serverName, String groupName, long expectedVersion, long now) throws SQLException {
         final String sql = """
             UPDATE essentials_user_profiles
-            SET groupname=?, last_update=?
-            WHERE uuid=? AND server_name=? AND (? > last_update)
+            SET groupname=?, group_version=group_version+1, last_update=?
+            WHERE uuid=? AND server_name=? AND (? < 0 OR group_version = ?)
             """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, groupName);
-            ps.setLong(2, newTimestamp);
+            ps.setLong(2, now);
             ps.setString(3, uuid.toString());
             ps.setString(4, serverName);
-            ps.setLong(5, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 5, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.GROUP, now);
         }
     }
 
-    public boolean updateLastLocationIfNewer(UUID uuid, String serverName, String lastLocation, long newTimestamp) throws SQLException {
+    public boolean updateLastLocationIfVersion(UUID uuid, String serverName, String lastLocation, long expectedVersion, long now) throws SQLException {
         final String sql = """
             UPDATE essentials_user_profiles
-            SET last_location=?, last_update=?
-            WHERE uuid=? AND server_name=? AND (? > last_update)
+            SET last_location=?, location_version=location_version+1, last_update=?
+            WHERE uuid=? AND server_name=? AND (? < 0 OR location_version = ?)
             """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, lastLocation);
-            ps.setLong(2, newTimestamp);
+            ps.setLong(2, now);
             ps.setString(3, uuid.toString());
             ps.setString(4, serverName);
-            ps.setLong(5, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 5, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.LAST_LOCATION, now);
         }
     }
 
     public ServerProfile getServerProfile(UUID uuid, String serverName) throws SQLException {
         final String sql = """
-            SELECT uuid, server_name, groupname, last_location, homes, last_update
+            SELECT uuid, server_name, groupname, last_location, homes, last_update,
+                   homes_version, group_version, location_version
             FROM essentials_user_profiles
             WHERE uuid = ? AND server_name = ?
             """;
@@ -233,13 +394,15 @@ public class DBCommands {
                 sp.lastLocation = rs.getString("last_location");
                 sp.homes = rs.getString("homes");
                 sp.lastUpdate = rs.getLong("last_update");
+                readProfileVersions(rs, sp);
                 return sp;
             }
         }
     }
     public List<ServerProfile> listServerProfiles(UUID uuid) throws SQLException {
         final String sql = """
-            SELECT server_name, groupname, last_location, homes, last_update
+            SELECT server_name, groupname, last_location, homes, last_update,
+                   homes_version, group_version, location_version
             FROM essentials_user_profiles
             WHERE uuid = ?
             ORDER BY server_name
@@ -256,6 +419,52 @@ public class DBCommands {
                     sp.lastLocation = rs.getString("last_location");
                     sp.homes = rs.getString("homes");
                     sp.lastUpdate = rs.getLong("last_update");
+                    readProfileVersions(rs, sp);
+                    out.add(sp);
+                }
+                return out;
+            }
+        }
+    }
+
+    private static void readProfileVersions(ResultSet rs, ServerProfile sp) throws SQLException {
+        sp.homesVersion = rs.getLong("homes_version");
+        sp.groupVersion = rs.getLong("group_version");
+        sp.locationVersion = rs.getLong("location_version");
+    }
+
+    /**
+     * Profiles of one server changed after the (afterUpdate, afterUuid) cursor and no later than upTo,
+     * in cursor order. Range scan on idx_profiles_last_update; the server filter is checked on the index.
+     */
+    public List<ServerProfile> listServerProfilesChangedSince(String serverName, long afterUpdate, String afterUuid,
+                                                              long upTo, int limit) throws SQLException {
+        final String sql = """
+            SELECT uuid, groupname, last_location, homes, last_update,
+                   homes_version, group_version, location_version
+            FROM essentials_user_profiles
+            WHERE last_update >= ? AND last_update <= ? AND (last_update > ? OR uuid > ?) AND server_name = ?
+            ORDER BY last_update, uuid
+            LIMIT ?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterUpdate);
+            ps.setLong(2, upTo);
+            ps.setLong(3, afterUpdate);
+            ps.setString(4, afterUuid);
+            ps.setString(5, serverName);
+            ps.setInt(6, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                List<ServerProfile> out = new ArrayList<>();
+                while (rs.next()) {
+                    ServerProfile sp = new ServerProfile();
+                    sp.uuid = UUID.fromString(rs.getString("uuid"));
+                    sp.serverName = serverName;
+                    sp.groupName = rs.getString("groupname");
+                    sp.lastLocation = rs.getString("last_location");
+                    sp.homes = rs.getString("homes");
+                    sp.lastUpdate = rs.getLong("last_update");
+                    readProfileVersions(rs, sp);
                     out.add(sp);
                 }
                 return out;
@@ -271,7 +480,7 @@ public class DBCommands {
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, uuid.toString());
             ps.setString(2, serverName);
-            return ps.executeUpdate() > 0;
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PROFILE_DOMAINS, System.currentTimeMillis());
         }
     }
 
@@ -306,130 +515,145 @@ public class DBCommands {
 
 
     /**
-     * Upserts the entire player state for (uuid, serverName) if and only if newTimestamp is strictly newer.
-     * Returns true if the row was inserted or updated, false if skipped due to stale timestamp.
+     * Writes the entire player state for (uuid, serverName) if every domain is at the version in s, or
+     * inserts it if it does not exist and none of those versions is above 0. Returns false if the row moved on.
      */
-    public boolean upsertUserStateIfNewer(UserState s, long newTimestamp) throws SQLException {
-        final String sql = """
-        INSERT INTO essentials_user_state (
+    public boolean upsertUserStateIfVersion(UserState s, long now) throws SQLException {
+        final String update = """
+        UPDATE essentials_user_state
+        SET inv_main=?, inv_offhand=?, inv_armor=?, ender_chest=?,
+            xp_level=?, xp_total=?, xp_progress=?,
+            health=?, max_health=?, food_level=?, saturation=?, exhaustion=?,
+            game_mode=?, potion_effects=?, stats_json=?, last_death_loc=?, bed_spawn_loc=?,
+            inv_version=inv_version+1, xp_version=xp_version+1,
+            vitals_version=vitals_version+1, meta_version=meta_version+1,
+            last_update=?
+        WHERE uuid=? AND server_name=?
+          AND (? < 0 OR inv_version = ?) AND (? < 0 OR xp_version = ?)
+          AND (? < 0 OR vitals_version = ?) AND (? < 0 OR meta_version = ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            int i = setStateColumns(ps, 1, s);
+            ps.setLong(i++, now);
+            ps.setString(i++, s.uuid.toString());
+            ps.setString(i++, s.serverName);
+            guardState(ps, i, s);
+            if (ps.executeUpdate() > 0) return changed(true, s.uuid, s.serverName, STATE_DOMAINS, now);
+        }
+        if (s.inventoryVersion > 0 || s.xpVersion > 0 || s.vitalsVersion > 0 || s.metaVersion > 0) return false;
+        final String insert = """
+        INSERT IGNORE INTO essentials_user_state (
           uuid, server_name,
           inv_main, inv_offhand, inv_armor, ender_chest,
           xp_level, xp_total, xp_progress,
           health, max_health,
           food_level, saturation, exhaustion,
           game_mode, potion_effects, stats_json, last_death_loc, bed_spawn_loc,
-          last_update
-        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-        ON DUPLICATE KEY UPDATE
-          inv_main       = IF(VALUES(last_update) > last_update, VALUES(inv_main),       inv_main),
-          inv_offhand    = IF(VALUES(last_update) > last_update, VALUES(inv_offhand),    inv_offhand),
-          inv_armor      = IF(VALUES(last_update) > last_update, VALUES(inv_armor),      inv_armor),
-          ender_chest    = IF(VALUES(last_update) > last_update, VALUES(ender_chest),    ender_chest),
-          xp_level       = IF(VALUES(last_update) > last_update, VALUES(xp_level),       xp_level),
-          xp_total       = IF(VALUES(last_update) > last_update, VALUES(xp_total),       xp_total),
-          xp_progress    = IF(VALUES(last_update) > last_update, VALUES(xp_progress),    xp_progress),
-          health         = IF(VALUES(last_update) > last_update, VALUES(health),         health),
-          max_health     = IF(VALUES(last_update) > last_update, VALUES(max_health),     max_health),
-          food_level     = IF(VALUES(last_update) > last_update, VALUES(food_level),     food_level),
-          saturation     = IF(VALUES(last_update) > last_update, VALUES(saturation),     saturation),
-          exhaustion     = IF(VALUES(last_update) > last_update, VALUES(exhaustion),     exhaustion),
-          game_mode      = IF(VALUES(last_update) > last_update, VALUES(game_mode),      game_mode),
-          potion_effects = IF(VALUES(last_update) > last_update, VALUES(potion_effects), potion_effects),
-          stats_json     = IF(VALUES(last_update) > last_update, VALUES(stats_json),     stats_json),
-          last_death_loc = IF(VALUES(last_update) > last_update, VALUES(last_death_loc), last_death_loc),
-          bed_spawn_loc  = IF(VALUES(last_update) > last_update, VALUES(bed_spawn_loc),  bed_spawn_loc),
-          last_update    = GREATEST(last_update, VALUES(last_update))
+          inv_version, xp_version, vitals_version, meta_version, last_update
+        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1, 1, 1, 1, ?)
         """;
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            int i = 1;
-            ps.setString(i++, s.uuid.toString());
-            ps.setString(i++, s.serverName);
-            ps.setBytes(i++, s.invMain);
-            ps.setBytes(i++, s.invOffhand);
-            ps.setBytes(i++, s.invArmor);
-            ps.setBytes(i++, s.enderChest);
-            ps.setInt(i++, s.xpLevel);
-            ps.setInt(i++, s.xpTotal);
-            ps.setFloat(i++, s.xpProgress);
-            ps.setDouble(i++, s.health);
-            ps.setDouble(i++, s.maxHealth);
-            ps.setInt(i++, s.foodLevel);
-            ps.setFloat(i++, s.saturation);
-            ps.setFloat(i++, s.exhaustion);
-            ps.setString(i++, s.gameMode);
-            ps.setString(i++, s.potionEffects);
-            ps.setString(i++, s.statsJson);
-            ps.setString(i++, s.lastDeathLoc);
-            ps.setString(i++, s.bedSpawnLoc);
-            ps.setLong(i++, newTimestamp);
-
-            int affected = ps.executeUpdate();
-            if (affected == 1) return true; // insert
-            UserState loaded = getUserState(s.uuid, s.serverName);
-            return loaded != null && loaded.lastUpdate >= newTimestamp;
-        }
-    }
-
-    public boolean updateInventoryIfNewer(UUID uuid,
-                                          String serverName,
-                                          byte[] invMain,
-                                          byte[] invOffhand,
-                                          byte[] invArmor,
-                                          byte[] enderChest,
-                                          long newTimestamp) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
+            ps.setString(1, s.uuid.toString());
+            ps.setString(2, s.serverName);
+            int i = setStateColumns(ps, 3, s);
+            ps.setLong(i, now);
+            return changed(ps.executeUpdate() > 0, s.uuid, s.serverName, STATE_DOMAINS, now);
+        }
+    }
+
+    // Binds the four domain guards of a whole-state write at index i
+    private static void guardState(PreparedStatement ps, int i, UserState s) throws SQLException {
+        guard(ps, i, s.inventoryVersion);
+        guard(ps, i + 2, s.xpVersion);
+        guard(ps, i + 4, s.vitalsVersion);
+        guard(ps, i + 6, s.metaVersion);
+    }
+
+    // The 17 data columns of a user_state row, in DDL order; returns the next parameter index
+    private static int setStateColumns(PreparedStatement ps, int i, UserState s) throws SQLException {
+        ps.setBytes(i++, s.invMain);
+        ps.setBytes(i++, s.invOffhand);
+        ps.setBytes(i++, s.invArmor);
+        ps.setBytes(i++, s.enderChest);
+        ps.setInt(i++, s.xpLevel);
+        ps.setInt(i++, s.xpTotal);
+        ps.setFloat(i++, s.xpProgress);
+        ps.setDouble(i++, s.health);
+        ps.setDouble(i++, s.maxHealth);
+        ps.setInt(i++, s.foodLevel);
+        ps.setFloat(i++, s.saturation);
+        ps.setFloat(i++, s.exhaustion);
+        ps.setString(i++, s.gameMode);
+        ps.setString(i++, s.potionEffects);
+        ps.setString(i++, s.statsJson);
+        ps.setString(i++, s.lastDeathLoc);
+        ps.setString(i++, s.bedSpawnLoc);
+        return i;
+    }
+
+    public boolean updateInventoryIfVersion(UUID uuid,
+                                            String serverName,
+                                            byte[] invMain,
+                                            byte[] invOffhand,
+                                            byte[] invArmor,
+                                            byte[] enderChest,
+                                            long expectedVersion,
+                                            long now) throws SQLException {
         final String sql = """
         UPDATE essentials_user_state
-        SET inv_main=?, inv_offhand=?, inv_armor=?, ender_chest=?, last_update=?
-        WHERE uuid=? AND server_name=? AND (? > last_update)
+        SET inv_main=?, inv_offhand=?, inv_armor=?, ender_chest=?, inv_version=inv_version+1, last_update=?
+        WHERE uuid=? AND server_name=? AND (? < 0 OR inv_version = ?)
         """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setBytes(1, invMain);
             ps.setBytes(2, invOffhand);
             ps.setBytes(3, invArmor);
             ps.setBytes(4, enderChest);
-            ps.setLong(5, newTimestamp);
+            ps.setLong(5, now);
             ps.setString(6, uuid.toString());
             ps.setString(7, serverName);
-            ps.setLong(8, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 8, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.INVENTORY, now);
         }
     }
 
-    public boolean updateXpIfNewer(UUID uuid,
-                                   String serverName,
-                                   int xpLevel,
-                                   int xpTotal,
-                                   float xpProgress,
-                                   long newTimestamp) throws SQLException {
+    public boolean updateXpIfVersion(UUID uuid,
+                                     String serverName,
+                                     int xpLevel,
+                                     int xpTotal,
+                                     float xpProgress,
+                                     long expectedVersion,
+                                     long now) throws SQLException {
         final String sql = """
         UPDATE essentials_user_state
-        SET xp_level=?, xp_total=?, xp_progress=?, last_update=?
-        WHERE uuid=? AND server_name=? AND (? > last_update)
+        SET xp_level=?, xp_total=?, xp_progress=?, xp_version=xp_version+1, last_update=?
+        WHERE uuid=? AND server_name=? AND (? < 0 OR xp_version = ?)
         """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, xpLevel);
             ps.setInt(2, xpTotal);
             ps.setFloat(3, xpProgress);
-            ps.setLong(4, newTimestamp);
+            ps.setLong(4, now);
             ps.setString(5, uuid.toString());
             ps.setString(6, serverName);
-            ps.setLong(7, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 7, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.XP, now);
         }
     }
 
-    public boolean updateVitalsIfNewer(UUID uuid,
-                                       String serverName,
-                                       double health,
-                                       double maxHealth,
-                                       int foodLevel,
-                                       float saturation,
-                                       float exhaustion,
-                                       long newTimestamp) throws SQLException {
+    public boolean updateVitalsIfVersion(UUID uuid,
+                                         String serverName,
+                                         double health,
+                                         double maxHealth,
+                                         int foodLevel,
+                                         float saturation,
+                                         float exhaustion,
+                                         long expectedVersion,
+                                         long now) throws SQLException {
         final String sql = """
         UPDATE essentials_user_state
-        SET health=?, max_health=?, food_level=?, saturation=?, exhaustion=?, last_update=?
-        WHERE uuid=? AND server_name=? AND (? > last_update)
+        SET health=?, max_health=?, food_level=?, saturation=?, exhaustion=?, vitals_version=vitals_version+1, last_update=?
+        WHERE uuid=? AND server_name=? AND (? < 0 OR vitals_version = ?)
         """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setDouble(1, health);
@@ -437,26 +661,27 @@ public class DBCommands {
             ps.setInt(3, foodLevel);
             ps.setFloat(4, saturation);
             ps.setFloat(5, exhaustion);
-            ps.setLong(6, newTimestamp);
+            ps.setLong(6, now);
             ps.setString(7, uuid.toString());
             ps.setString(8, serverName);
-            ps.setLong(9, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 9, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.VITALS, now);
         }
     }
 
-    public boolean updateMetadataIfNewer(UUID uuid,
-                                         String serverName,
-                                         String gameMode,
-                                         String potionEffectsJson,
-                                         String statsJson,
-                                         String lastDeathLoc,
-                                         String bedSpawnLoc,
-                                         long newTimestamp) throws SQLException {
+    public boolean updateMetadataIfVersion(UUID uuid,
+                                           String serverName,
+                                           String gameMode,
+                                           String potionEffectsJson,
+                                           String statsJson,
+                                           String lastDeathLoc,
+                                           String bedSpawnLoc,
+                                           long expectedVersion,
+                                           long now) throws SQLException {
         final String sql = """
         UPDATE essentials_user_state
-        SET game_mode=?, potion_effects=?, stats_json=?, last_death_loc=?, bed_spawn_loc=?, last_update=?
-        WHERE uuid=? AND server_name=? AND (? > last_update)
+        SET game_mode=?, potion_effects=?, stats_json=?, last_death_loc=?, bed_spawn_loc=?, meta_version=meta_version+1, last_update=?
+        WHERE uuid=? AND server_name=? AND (? < 0 OR meta_version = ?)
         """;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, gameMode);
@@ -464,15 +689,74 @@ public class DBCommands {
             ps.setString(3, statsJson);
             ps.setString(4, lastDeathLoc);
             ps.setString(5, bedSpawnLoc);
-            ps.setLong(6, newTimestamp);
+            ps.setLong(6, now);
             ps.setString(7, uuid.toString());
             ps.setString(8, serverName);
-            ps.setLong(9, newTimestamp);
-            return ps.executeUpdate() > 0;
+            guard(ps, 9, expectedVersion);
+            return changed(ps.executeUpdate() > 0, uuid, serverName, PlayerSession.META, now);
         }
     }
 
 
+    /**
+     * Batched full-state update for many players, one statement execution per batch.
+     * Writes inventory, xp, vitals, game mode, effects and bed spawn; stats and death
+     * location are left untouched. Each row is guarded by its own domain version fields (below
+     * zero: unconditional). Call inside inTransaction to commit the batch at once.
+     *
+     * @return number of rows that were still at their version and got updated
+     */
+    public int updateUserStatesIfVersion(List<UserState> states, long now) throws SQLException {
+        if (states.isEmpty()) return 0;
+        final String sql = """
+        UPDATE essentials_user_state
+        SET inv_main=?, inv_offhand=?, inv_armor=?, ender_chest=?,
+            xp_level=?, xp_total=?, xp_progress=?,
+            health=?, max_health=?, food_level=?, saturation=?, exhaustion=?,
+            game_mode=?, potion_effects=?, bed_spawn_loc=?,
+            inv_version=inv_version+1, xp_version=xp_version+1,
+            vitals_version=vitals_version+1, meta_version=meta_version+1,
+            last_update=?
+        WHERE uuid=? AND server_name=?
+          AND (? < 0 OR inv_version = ?) AND (? < 0 OR xp_version = ?)
+          AND (? < 0 OR vitals_version = ?) AND (? < 0 OR meta_version = ?)
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (UserState s : states) {
+                ps.setBytes(1, s.invMain);
+                ps.setBytes(2, s.invOffhand);
+                ps.setBytes(3, s.invArmor);
+                ps.setBytes(4, s.enderChest);
+                ps.setInt(5, s.xpLevel);
+                ps.setInt(6, s.xpTotal);
+                ps.setFloat(7, s.xpProgress);
+                ps.setDouble(8, s.health);
+                ps.setDouble(9, s.maxHealth);
+                ps.setInt(10, s.foodLevel);
+                ps.setFloat(11, s.saturation);
+                ps.setFloat(12, s.exhaustion);
+                ps.setString(13, s.gameMode);
+                ps.setString(14, s.potionEffects);
+                ps.setString(15, s.bedSpawnLoc);
+                ps.setLong(16, now);
+                ps.setString(17, s.uuid.toString());
+                ps.setString(18, s.serverName);
+                guardState(ps, 19, s);
+                ps.addBatch();
+            }
+            int updated = 0;
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                    updated++;
+                    UserState s = states.get(i);
+                    changed(true, s.uuid, s.serverName, STATE_DOMAINS, now);
+                }
+            }
+            return updated;
+        }
+    }
+
     /**
      * Reads a complete player state row or null if not found.
      */
@@ -485,7 +769,7 @@ public class DBCommands {
           food_level, saturation, exhaustion,
           game_mode, potion_effects, stats_json,
           last_death_loc, bed_spawn_loc,
-          last_update
+          last_update, inv_version, xp_version, vitals_version, meta_version
         FROM essentials_user_state
         WHERE uuid = ? AND server_name = ?
         """;
@@ -521,11 +805,19 @@ public class DBCommands {
                 s.bedSpawnLoc = rs.getString("bed_spawn_loc");
 
                 s.lastUpdate = rs.getLong("last_update");
+                readStateVersions(rs, s);
                 return s;
             }
         }
     }
 
+    private static void readStateVersions(ResultSet rs, UserState s) throws SQLException {
+        s.inventoryVersion = rs.getLong("inv_version");
+        s.xpVersion = rs.getLong("xp_version");
+        s.vitalsVersion = rs.getLong("vitals_version");
+        s.metaVersion = rs.getLong("meta_version");
+    }
+
     /**
      * Lists available server names for which a state exists for this player.
      */
@@ -555,7 +847,7 @@ public class DBCommands {
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, uuid.toString());
             ps.setString(2, serverName);
-            return ps.executeUpdate() > 0;
+            return changed(ps.executeUpdate() > 0, uuid, serverName, STATE_DOMAINS, System.currentTimeMillis());
         }
     }
 
@@ -594,9 +886,511 @@ public class DBCommands {
         }
     }
 
-    // ─────────────────────────────────────────────────────────────────────────────
-    // Transaction helpers
-    // ─────────────────────────────────────────────────────────────────────────────
+    // ─────────────────────────── Item UID registry ───────────────────────────
+
+    /**
+     * Loads the registry rows for the given item UIDs. UIDs without a row are absent from the result.
+     */
+    public Map<UUID, ItemUidSighting> getItemUids(Collection<UUID> uids) throws SQLException {
+        Map<UUID, ItemUidSighting> out = new HashMap<>();
+        if (uids.isEmpty()) return out;
+        StringBuilder sql = new StringBuilder("SELECT uid, holder_uuid, server_name, last_seen FROM essentials_item_uids WHERE uid IN (");
+        for (int i = 0; i < uids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            for (UUID uid : uids) ps.setString(i++, uid.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ItemUidSighting s = new ItemUidSighting();
+                    s.uid = UUID.fromString(rs.getString(1));
+                    s.holder = UUID.fromString(rs.getString(2));
+                    s.serverName = rs.getString(3);
+                    s.lastSeen = rs.getLong(4);
+                    out.put(s.uid, s);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Batched upsert of item UID sightings. An existing row only moves to a sighting that is newer.
+     */
+    public void upsertItemUids(List<ItemUidSighting> sightings) throws SQLException {
+        if (sightings.isEmpty()) return;
+        final String sql = """
+        INSERT INTO essentials_item_uids (uid, holder_uuid, server_name, last_seen)
+        VALUES (?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+          holder_uuid = IF(VALUES(last_seen) >= last_seen, VALUES(holder_uuid), holder_uuid),
+          server_name = IF(VALUES(last_seen) >= last_seen, VALUES(server_name), server_name),
+          last_seen   = GREATEST(last_seen, VALUES(last_seen))
+        """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (ItemUidSighting s : sightings) {
+                ps.setString(1, s.uid.toString());
+                ps.setString(2, s.holder.toString());
+                ps.setString(3, s.serverName);
+                ps.setLong(4, s.lastSeen);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // ─────────────────────────── Handoff lease ───────────────────────────
+
+    /**
+     * Takes the player's handoff lease if it is free or already ours. Returns false while another server holds it.
+     */
+    public boolean tryAcquireLease(UUID uuid, String serverName, long now) throws SQLException {
+        final String update = """
+            UPDATE essentials_handoff
+            SET holder=?, version=version+1, last_update=?
+            WHERE uuid=? AND (holder IS NULL OR holder=?)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(update)) {
+            ps.setString(1, serverName);
+            ps.setLong(2, now);
+            ps.setString(3, uuid.toString());
+            ps.setString(4, serverName);
+            if (ps.executeUpdate() > 0) return true;
+        }
+        final String insert = """
+            INSERT IGNORE INTO essentials_handoff (uuid, holder, version, last_update)
+            VALUES (?, ?, 1, ?)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(insert)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, serverName);
+            ps.setLong(3, now);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Takes the lease whoever holds it. For holders that never released (crash, lost connection).
+     */
+    public void forceAcquireLease(UUID uuid, String serverName, long now) throws SQLException {
+        final String sql = """
+            INSERT INTO essentials_handoff (uuid, holder, version, last_update)
+            VALUES (?, ?, 1, ?)
+            ON DUPLICATE KEY UPDATE
+              version = version + 1,
+              last_update = VALUES(last_update),
+              holder = VALUES(holder)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, serverName);
+            ps.setLong(3, now);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Releases the lease if this server holds it. Returns true if it did.
+     */
+    public boolean releaseLease(UUID uuid, String serverName, long now) throws SQLException {
+        final String sql = """
+            UPDATE essentials_handoff
+            SET holder=NULL, version=version+1, last_update=?
+            WHERE uuid=? AND holder=?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, now);
+            ps.setString(2, uuid.toString());
+            ps.setString(3, serverName);
+            return changed(ps.executeUpdate() > 0, uuid, null, PlayerSession.HANDOFF, now);
+        }
+    }
+
+    /**
+     * Releases every lease this server holds, e.g. left over from a crash. Returns the number released.
+     */
+    public int releaseAllLeases(String serverName, long now) throws SQLException {
+        final String sql = """
+            UPDATE essentials_handoff
+            SET holder=NULL, version=version+1, last_update=?
+            WHERE holder=?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, now);
+            ps.setString(2, serverName);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Server currently holding the player's lease, or null.
+     */
+    public String getLeaseHolder(UUID uuid) throws SQLException {
+        final String sql = "SELECT holder FROM essentials_handoff WHERE uuid = ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("holder") : null;
+            }
+        }
+    }
+
+    // ─────────────────────────── Presence ───────────────────────────
+
+    /**
+     * Records that the player is on serverName now. Leaves last_server / quit_at of the previous session intact.
+     */
+    public void markPresent(UUID uuid, String name, String serverName, long now) throws SQLException {
+        final String sql = """
+            INSERT INTO essentials_presence (uuid, name, server_name, joined_at, heartbeat)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+              name = VALUES(name),
+              server_name = VALUES(server_name),
+              joined_at = VALUES(joined_at),
+              heartbeat = VALUES(heartbeat)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, name);
+            ps.setString(3, serverName);
+            ps.setLong(4, now);
+            ps.setLong(5, now);
+            ps.executeUpdate();
+        }
+    }
+
+    // Every write bumps at least one domain version, so an unchanged sum means an unwritten row.
+    // Binds serverName twice; assigned before server_name so nothing depends on SET order
+    private static final String QUIT_VERSIONS = """
+              quit_state_version = COALESCE((SELECT s.inv_version + s.xp_version + s.vitals_version + s.meta_version
+                  FROM essentials_user_state s WHERE s.uuid = essentials_presence.uuid AND s.server_name = ?), -1),
+              quit_profile_version = COALESCE((SELECT s.homes_version + s.group_version + s.location_version
+                  FROM essentials_user_profiles s WHERE s.uuid = essentials_presence.uuid AND s.server_name = ?), -1),
+            """;
+
+    /**
+     * Ends the player's session on serverName, unless another server has taken them since.
+     * quitAt is the time the session's final flush had committed, or 0 if that is not known.
+     * The version sums of the player's rows on serverName are recorded with it, so a later join
+     * can tell whether those rows were written since without comparing two servers' clocks.
+     */
+    public boolean markAbsent(UUID uuid, String serverName, long quitAt) throws SQLException {
+        final String sql = """
+            UPDATE essentials_presence
+            SET
+            """ + QUIT_VERSIONS + """
+              server_name=NULL, last_server=?, quit_at=?
+            WHERE uuid=? AND server_name=?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, serverName);
+            ps.setString(2, serverName);
+            ps.setString(3, serverName);
+            ps.setLong(4, quitAt);
+            ps.setString(5, uuid.toString());
+            ps.setString(6, serverName);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Ends every session on serverName (shutdown, or leftovers of a crash). Returns the number ended.
+     */
+    public int markAllAbsent(String serverName, long quitAt) throws SQLException {
+        final String sql = """
+            UPDATE essentials_presence
+            SET
+            """ + QUIT_VERSIONS + """
+              server_name=NULL, last_server=?, quit_at=?
+            WHERE server_name=?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, serverName);
+            ps.setString(2, serverName);
+            ps.setString(3, serverName);
+            ps.setLong(4, quitAt);
+            ps.setString(5, serverName);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Bumps the heartbeat of the given players on serverName in one statement. Returns rows touched.
+     */
+    public int heartbeatPresence(String serverName, Collection<UUID> online, long now) throws SQLException {
+        if (online.isEmpty()) return 0;
+        StringBuilder sql = new StringBuilder("UPDATE essentials_presence SET heartbeat=? WHERE server_name=? AND uuid IN (");
+        for (int i = 0; i < online.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int i = 1;
+            ps.setLong(i++, now);
+            ps.setString(i++, serverName);
+            for (UUID uuid : online) ps.setString(i++, uuid.toString());
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Presence row of a player by last known name (case-insensitive), or null.
+     */
+    public Presence findPresence(String name) throws SQLException {
+        final String sql = """
+            SELECT uuid, name, server_name, last_server, joined_at, quit_at, heartbeat
+            FROM essentials_presence
+            WHERE name = ?
+            ORDER BY joined_at DESC
+            LIMIT 1
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Presence pr = new Presence();
+                pr.uuid = UUID.fromString(rs.getString("uuid"));
+                pr.name = rs.getString("name");
+                pr.serverName = rs.getString("server_name");
+                pr.lastServer = rs.getString("last_server");
+                pr.joinedAt = rs.getLong("joined_at");
+                pr.quitAt = rs.getLong("quit_at");
+                pr.heartbeat = rs.getLong("heartbeat");
+                return pr;
+            }
+        }
+    }
+
+    /**
+     * Domain versions of the player's user_state row on serverName if their last session ended cleanly
+     * there and the row has not been written since, else null. Only the version fields are set; reads no blobs.
+     * "Not written since" compares the row's versions with the ones recorded at quit, never timestamps.
+     */
+    public UserState getUnchangedUserStateVersions(UUID uuid, String serverName) throws SQLException {
+        final String sql = """
+            SELECT s.inv_version, s.xp_version, s.vitals_version, s.meta_version
+            FROM essentials_presence p
+            JOIN essentials_user_state s ON s.uuid = p.uuid AND s.server_name = p.last_server
+            WHERE p.uuid = ? AND p.last_server = ? AND p.quit_at > 0
+              AND s.inv_version + s.xp_version + s.vitals_version + s.meta_version = p.quit_state_version
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, serverName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                UserState s = new UserState();
+                s.uuid = uuid;
+                s.serverName = serverName;
+                readStateVersions(rs, s);
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Same as getUnchangedUserStateVersions for the player's essentials_user_profiles row.
+     */
+    public ServerProfile getUnchangedServerProfileVersions(UUID uuid, String serverName) throws SQLException {
+        final String sql = """
+            SELECT s.homes_version, s.group_version, s.location_version
+            FROM essentials_presence p
+            JOIN essentials_user_profiles s ON s.uuid = p.uuid AND s.server_name = p.last_server
+            WHERE p.uuid = ? AND p.last_server = ? AND p.quit_at > 0
+              AND s.homes_version + s.group_version + s.location_version = p.quit_profile_version
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            ps.setString(2, serverName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                ServerProfile sp = new ServerProfile();
+                sp.uuid = uuid;
+                sp.serverName = serverName;
+                readProfileVersions(rs, sp);
+                return sp;
+            }
+        }
+    }
+
+    // ─────────────────────────── Balance ledger ───────────────────────────
+
+    /**
+     * Appends balance deltas to essentials_balance_ledger and adds each player's sum to their
+     * balance as one increment, creating missing user rows under the entries' player name;
+     * ledger_id records the newest entry the balance includes. Sets each entry's id. Call
+     * inside inTransaction so entries and balances commit together.
+     *
+     * Balances are incremented first: the row locks make a player's entry ids follow commit
+     * order, so ledger_id never covers an entry whose delta is not in the balance yet.
+     *
+     * @return number of players whose balance changed
+     */
+    public int appendBalanceDeltas(List<LedgerEntry> entries, long now) throws SQLException {
+        if (entries.isEmpty()) return 0;
+
+        // One increment per player, in uuid order so concurrent batches lock rows alike
+        Map<UUID, LedgerEntry> sums = new TreeMap<>();
+        for (LedgerEntry e : entries) {
+            LedgerEntry sum = sums.computeIfAbsent(e.uuid, id -> {
+                LedgerEntry s = new LedgerEntry();
+                s.uuid = id;
+                s.delta = BigDecimal.ZERO;
+                return s;
+            });
+            if (sum.name == null) sum.name = e.name;
+            sum.delta = sum.delta.add(e.delta);
+        }
+        final String apply = """
+            INSERT INTO essentials_users (uuid, name, balance, version, last_update)
+            VALUES (?, ?, ?, 1, ?)
+            ON DUPLICATE KEY UPDATE
+              balance = balance + VALUES(balance),
+              version = version + 1,
+              last_update = VALUES(last_update)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(apply)) {
+            for (LedgerEntry sum : sums.values()) {
+                ps.setString(1, sum.uuid.toString());
+                ps.setString(2, sum.name);
+                ps.setBigDecimal(3, scaleBalance(sum.delta));
+                ps.setLong(4, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        final String insert = """
+            INSERT INTO essentials_balance_ledger (uuid, server_name, delta, cause, created_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+            for (LedgerEntry e : entries) {
+                ps.setString(1, e.uuid.toString());
+                ps.setString(2, e.serverName);
+                ps.setBigDecimal(3, scaleBalance(e.delta));
+                ps.setString(4, e.cause);
+                ps.setLong(5, e.createdAt);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                for (int i = 0; i < entries.size() && keys.next(); i++) entries.get(i).id = keys.getLong(1);
+            }
+        }
+        for (LedgerEntry e : entries) {
+            LedgerEntry sum = sums.get(e.uuid);
+            sum.id = Math.max(sum.id, e.id);
+        }
+
+        final String mark = "UPDATE essentials_users SET ledger_id = GREATEST(ledger_id, ?) WHERE uuid = ?";
+        try (PreparedStatement ps = conn.prepareStatement(mark)) {
+            for (LedgerEntry sum : sums.values()) {
+                ps.setLong(1, sum.id);
+                ps.setString(2, sum.uuid.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        for (UUID uuid : sums.keySet()) changed(true, uuid, null, PlayerSession.BALANCE, now);
+        return sums.size();
+    }
+
+    /**
+     * Ledger entries after afterId in id order, a primary-key range scan. Ids are allocated
+     * before commit, so a missing id may still appear; a reader must not move past it early.
+     */
+    public List<LedgerEntry> listLedgerSince(long afterId, int limit) throws SQLException {
+        final String sql = """
+            SELECT id, uuid, server_name, delta, cause, created_at
+            FROM essentials_balance_ledger
+            WHERE id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, limit);
+            return readLedger(ps);
+        }
+    }
+
+    /**
+     * One player's ledger entries after afterId in id order, via idx_ledger_uuid. Unlike the
+     * network-wide read this need not wait on missing ids: a player's ids follow commit order.
+     */
+    public List<LedgerEntry> listUserLedgerSince(UUID uuid, long afterId, int limit) throws SQLException {
+        final String sql = """
+            SELECT id, uuid, server_name, delta, cause, created_at
+            FROM essentials_balance_ledger
+            WHERE uuid = ? AND id > ?
+            ORDER BY id
+            LIMIT ?
+            """;
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, uuid.toString());
+            ps.setLong(2, afterId);
+            ps.setInt(3, limit);
+            return readLedger(ps);
+        }
+    }
+
+    /**
+     * Id of the newest ledger entry, or 0 if the ledger is empty.
+     */
+    public long getLedgerHead() throws SQLException {
+        final String sql = "SELECT COALESCE(MAX(id), 0) FROM essentials_balance_ledger";
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    /**
+     * Deletes up to limit ledger entries created before olderThan. Their deltas are already in
+     * the balances of essentials_users, so this only shortens the history. Returns rows removed.
+     */
+    public int compactLedger(long olderThan, int limit) throws SQLException {
+        final String sql = "DELETE FROM essentials_balance_ledger WHERE created_at < ? ORDER BY id LIMIT ?";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, olderThan);
+            ps.setInt(2, limit);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * A balance as stored: BALANCE_SCALE decimals, half-up. Compare balances after this so
+     * values differing only past the stored precision count as equal. null reads as zero.
+     */
+    public static BigDecimal scaleBalance(BigDecimal balance) {
+        if (balance == null) return BigDecimal.ZERO.setScale(BALANCE_SCALE);
+        return balance.setScale(BALANCE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private static List<LedgerEntry> readLedger(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            List<LedgerEntry> out = new ArrayList<>();
+            while (rs.next()) {
+                LedgerEntry e = new LedgerEntry();
+                e.id = rs.getLong("id");
+                e.uuid = UUID.fromString(rs.getString("uuid"));
+                e.serverName = rs.getString("server_name");
+                e.delta = rs.getBigDecimal("delta");
+                e.cause = rs.getString("cause");
+                e.createdAt = rs.getLong("created_at");
+                out.add(e);
+            }
+            return out;
+        }
+    }
+
+    // ─────────────────────────── Versions ───────────────────────────
+
+    // Binds a "(? < 0 OR <version column> = ?)" guard at index i
+    private static void guard(PreparedStatement ps, int i, long expectedVersion) throws SQLException {
+        ps.setLong(i, expectedVersion);
+        ps.setLong(i + 1, expectedVersion);
+    }
 
     /**
      * Runs the given work inside a transaction with auto-commit restore.
@@ -604,15 +1398,43 @@ public class DBCommands {
     public <T> T inTransaction(SqlWork<T> work) throws SQLException {
         boolean prev = conn.getAutoCommit();
         conn.setAutoCommit(false);
+        List<Change> changes = changeListener != null ? Collections.synchronizedList(new ArrayList<>()) : null;
+        txChanges = changes;
+        boolean committed = false;
         try {
             T result = work.run();
             conn.commit();
+            committed = true;
             return result;
         } catch (SQLException e) {
             conn.rollback();
             throw e;
         } finally {
+            txChanges = null;
             conn.setAutoCommit(prev);
+            if (committed && changes != null) {
+                synchronized (changes) {
+                    for (Change c : changes) report(c.uuid, c.serverName, c.domains, c.version);
+                }
+            }
+        }
+    }
+
+    private boolean changed(boolean written, UUID uuid, String serverName, int domains, long version) {
+        if (!written || changeListener == null) return written;
+        List<Change> pending = txChanges;
+        if (pending != null) pending.add(new Change(uuid, serverName, domains, version));
+        else report(uuid, serverName, domains, version);
+        return true;
+    }
+
+    private void report(UUID uuid, String serverName, int domains, long version) {
+        ChangeListener l = changeListener;
+        if (l == null) return;
+        try {
+            l.changed(uuid, serverName, domains, version);
+        } catch (RuntimeException ignored) {
+            // A listener must never fail the write that triggered it
         }
     }
 
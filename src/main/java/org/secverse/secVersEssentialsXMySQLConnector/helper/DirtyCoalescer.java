@@ -0,0 +1,80 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces high-frequency dirty marks (damage, regen, food, exp) into at most one
+ * recorded mark per player and domain until the next flush drains it.
+ *
+ * Sessions are cached in a small direct-mapped table indexed by entity id, so once a
+ * domain is dirty a repeat event costs one array read and one volatile read, with no
+ * map lookups and no allocation. Entity ids are never reused within a server run,
+ * which makes the id a safe cache tag.
+ *
+ * Main thread only: the cache arrays are not synchronized. The counters may be read from
+ * any thread.
+ */
+public final class DirtyCoalescer {
+
+    private static final int SLOTS = 1024;
+    private static final int MASK = SLOTS - 1;
+
+    private final PlayerSessions sessions;
+    private final PlayerSession[] cache = new PlayerSession[SLOTS];
+    private final int[] cacheIds = new int[SLOTS];
+
+    // Written on the main thread, read by /syncstats and the metrics exporter
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    public DirtyCoalescer(PlayerSessions sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * Marks the given domain bits dirty for a player unless they already are.
+     */
+    public void mark(Player p, int bits) {
+        PlayerSession s = session(p);
+        if ((s.dirtyBits() & bits) == bits || !s.mark(bits)) {
+            suppressed.increment();
+            return;
+        }
+        recorded.increment();
+    }
+
+    /**
+     * Drops the cached session of a player, e.g. on quit.
+     */
+    public void forget(Player p) {
+        int idx = p.getEntityId() & MASK;
+        if (cache[idx] != null && cacheIds[idx] == p.getEntityId()) cache[idx] = null;
+    }
+
+    public void clear() {
+        Arrays.fill(cache, null);
+    }
+
+    public long getRecordedMarks() {
+        return recorded.sum();
+    }
+
+    public long getSuppressedMarks() {
+        return suppressed.sum();
+    }
+
+    private PlayerSession session(Player p) {
+        int eid = p.getEntityId();
+        int idx = eid & MASK;
+        PlayerSession s = cache[idx];
+        if (s == null || cacheIds[idx] != eid) {
+            s = sessions.get(p.getUniqueId());
+            cache[idx] = s;
+            cacheIds[idx] = eid;
+        }
+        return s;
+    }
+}
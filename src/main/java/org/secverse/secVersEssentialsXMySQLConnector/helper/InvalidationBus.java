@@ -0,0 +1,122 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Push path for cross-server changes: every committed DBCommands write becomes a small
+ * invalidation message (uuid, domain bits, version) broadcast to the other servers, which
+ * refetch just that player's affected domains instead of waiting for the change feed poll.
+ *
+ * Messages are best effort; a lost one only means the change arrives with the next poll.
+ * Wire format, big endian, 35 bytes:
+ *   format(1) origin(4) uuid(16) scope(4) domains(2) version(8)
+ * origin is the sender's server, scope the server of a per-server row (0 for network-wide
+ * rows: the global user and the handoff lease). Receivers drop their own messages and
+ * per-server domains of other servers.
+ */
+public final class InvalidationBus implements DBCommands.ChangeListener {
+
+    /**
+     * Carries encoded messages between servers.
+     */
+    public interface Transport {
+        /** Starts delivering messages from other servers to receiver. */
+        void start(Consumer<byte[]> receiver);
+
+        /** Broadcasts a message; may drop it. Called from any thread. */
+        void send(byte[] message);
+
+        void stop();
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        /** A player's domains changed elsewhere; version is the row's new last_update. */
+        void invalidate(UUID uuid, int domains, long version);
+    }
+
+    static final int SIZE = 35;
+    private static final byte FORMAT = 1;
+
+    // Domains stored in network-wide rows; everything else lives in per-server rows
+    private static final int GLOBAL_DOMAINS = PlayerSession.BALANCE | PlayerSession.HANDOFF;
+
+    private final Transport transport;
+    private final int self;
+    private volatile Handler handler;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong malformed = new AtomicLong();
+
+    public InvalidationBus(Transport transport, String serverName) {
+        this.transport = transport;
+        this.self = scope(serverName);
+    }
+
+    public void start(Handler handler) {
+        this.handler = handler;
+        transport.start(this::receive);
+    }
+
+    public void stop() {
+        transport.stop();
+        handler = null;
+    }
+
+    public long getSent() { return sent.get(); }
+
+    public long getReceived() { return received.get(); }
+
+    public long getMalformed() { return malformed.get(); }
+
+    // ─────────────────────────── Sending ───────────────────────────
+
+    @Override
+    public void changed(UUID uuid, String serverName, int domains, long version) {
+        ByteBuffer b = ByteBuffer.allocate(SIZE);
+        b.put(FORMAT)
+                .putInt(self)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .putInt(scope(serverName))
+                .putShort((short) domains)
+                .putLong(version);
+        transport.send(b.array());
+        sent.incrementAndGet();
+    }
+
+    // ─────────────────────────── Receiving ───────────────────────────
+
+    private void receive(byte[] message) {
+        if (message.length != SIZE || message[0] != FORMAT) {
+            malformed.incrementAndGet();
+            return;
+        }
+        ByteBuffer b = ByteBuffer.wrap(message, 1, SIZE - 1);
+        int origin = b.getInt();
+        if (origin == self) return;
+        UUID uuid = new UUID(b.getLong(), b.getLong());
+        int scope = b.getInt();
+        int domains = b.getShort() & 0xFFFF;
+        long version = b.getLong();
+
+        if (scope != 0 && scope != self) domains &= GLOBAL_DOMAINS;
+        Handler h = handler;
+        if (domains == 0 || h == null) return;
+        received.incrementAndGet();
+        h.invalidate(uuid, domains, version);
+    }
+
+    /**
+     * Compact server id; 0 is reserved for network-wide rows.
+     */
+    private static int scope(String serverName) {
+        if (serverName == null) return 0;
+        int h = serverName.hashCode();
+        return h != 0 ? h : 1;
+    }
+}
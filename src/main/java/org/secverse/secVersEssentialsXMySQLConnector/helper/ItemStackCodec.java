@@ -0,0 +1,144 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Inventory blobs: an item count followed by the stacks, as a Bukkit object stream.
+ *
+ * Blobs are either the plain stream (the original format) or the same stream gzipped, told
+ * apart by the gzip magic bytes. Compression is opt-in (sync.compress_inventories) because
+ * older versions only read the plain format. Two blobs with the same stream count as equal
+ * whichever format they are in; see sameContents.
+ */
+public final class ItemStackCodec {
+
+    private ItemStackCodec() { }
+
+    /**
+     * Serializes an item array to a plain Bukkit object stream, readable by every version.
+     */
+    public static byte[] encode(ItemStack[] items) {
+        return encode(items, false);
+    }
+
+    /**
+     * Serializes an item array to a Bukkit object stream, gzipped if compress is set.
+     * Safe to call off the main thread as long as the stacks are private copies.
+     *
+     * @param items stacks to encode, may contain nulls
+     * @return blob or null if items is null or encoding failed
+     */
+    public static byte[] encode(ItemStack[] items, boolean compress) {
+        if (items == null) return null;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+        try (OutputStream out = compress ? new FastGZIPOutputStream(baos) : baos;
+             BukkitObjectOutputStream oos = new BukkitObjectOutputStream(out)) {
+            oos.writeInt(items.length);
+            for (ItemStack it : items) {
+                oos.writeObject(it);
+            }
+            oos.flush();
+        } catch (IOException ex) {
+            return null;
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Deserializes a blob written by {@link #encode(ItemStack[], boolean)}, in either format.
+     *
+     * @param blob           encoded blob, may be null
+     * @param expectedLength length of the returned array
+     * @return array of exactly expectedLength entries, never null
+     */
+    public static ItemStack[] decode(byte[] blob, int expectedLength) {
+        if (blob == null || blob.length == 0) return new ItemStack[expectedLength];
+        try (InputStream raw = open(blob);
+             BukkitObjectInputStream ois = new BukkitObjectInputStream(raw)) {
+            int len = ois.readInt();
+            ItemStack[] arr = new ItemStack[len];
+            for (int i = 0; i < len; i++) {
+                try {
+                    Object o = ois.readObject();
+                    arr[i] = (o instanceof ItemStack) ? (ItemStack) o : null;
+                } catch (ClassNotFoundException ignored) {
+                    arr[i] = null;
+                }
+            }
+            if (len == expectedLength) return arr;
+            ItemStack[] out = new ItemStack[expectedLength];
+            System.arraycopy(arr, 0, out, 0, Math.min(len, expectedLength));
+            return out;
+        } catch (IOException ex) {
+            return new ItemStack[expectedLength];
+        }
+    }
+
+    /**
+     * True if both blobs hold the same object stream, compressed or not. Null and empty
+     * blobs are equal to each other only.
+     */
+    public static boolean sameContents(byte[] a, byte[] b) {
+        boolean aEmpty = a == null || a.length == 0;
+        boolean bEmpty = b == null || b.length == 0;
+        if (aEmpty || bEmpty) return aEmpty == bEmpty;
+        if (Arrays.equals(a, b)) return true;
+        if (isGzip(a) == isGzip(b)) return false;
+        try {
+            return Arrays.equals(payload(a), payload(b));
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Deep-copies an item array so it can be encoded off the main thread.
+     */
+    public static ItemStack[] copyOf(ItemStack[] items) {
+        if (items == null) return null;
+        ItemStack[] out = new ItemStack[items.length];
+        for (int i = 0; i < items.length; i++) {
+            ItemStack it = items[i];
+            out[i] = (it == null || it.getType().isAir()) ? null : it.clone();
+        }
+        return out;
+    }
+
+    private static InputStream open(byte[] blob) throws IOException {
+        InputStream in = new ByteArrayInputStream(blob);
+        return isGzip(blob) ? new GZIPInputStream(in, 4096) : in;
+    }
+
+    private static boolean isGzip(byte[] blob) {
+        return blob.length > 1 && (blob[0] & 0xFF) == 0x1F && (blob[1] & 0xFF) == 0x8B;
+    }
+
+    private static byte[] payload(byte[] blob) throws IOException {
+        if (!isGzip(blob)) return blob;
+        try (InputStream in = open(blob)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * GZIP stream using the fastest deflate level; inventories are small and written often.
+     */
+    private static final class FastGZIPOutputStream extends GZIPOutputStream {
+        FastGZIPOutputStream(ByteArrayOutputStream out) throws IOException {
+            super(out, 4096);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free latency histogram in microseconds.
+ *
+ * Values below 16 µs get one bucket each; above that every power of two is split into
+ * 8 sub-buckets, so a reported percentile is at most 12.5% above the true value.
+ * Values are capped at ~67 s. record() is one array increment and never allocates.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR = 16;
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_MSB = 25;
+    private static final long MAX_MICROS = (1L << (MAX_MSB + 1)) - 1;
+    static final int BUCKETS = LINEAR + (MAX_MSB - 3) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    public void recordMicros(long micros) {
+        counts.incrementAndGet(index(Math.min(Math.max(micros, 0), MAX_MICROS)));
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+    }
+
+    /**
+     * Adds this histogram's counts into the given array (length BUCKETS).
+     */
+    void addTo(long[] into) {
+        for (int i = 0; i < BUCKETS; i++) into[i] += counts.get(i);
+    }
+
+    /**
+     * Percentile in µs over everything recorded so far (bucket upper bound), 0 when empty.
+     */
+    public long percentileMicros(double pct) {
+        long[] buckets = new long[BUCKETS];
+        addTo(buckets);
+        return percentile(buckets, pct);
+    }
+
+    /**
+     * Fills out[j] with the number of values at or below le[j] µs (le ascending) and returns
+     * the total count. Reads the live counters, no copy; for cumulative export.
+     */
+    public long cumulative(long[] le, long[] out) {
+        long running = 0;
+        int j = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long upper = upperBound(i);
+            while (j < le.length && upper > le[j]) out[j++] = running;
+            running += counts.get(i);
+        }
+        while (j < le.length) out[j++] = running;
+        return running;
+    }
+
+    static long total(long[] buckets) {
+        long n = 0;
+        for (long c : buckets) n += c;
+        return n;
+    }
+
+    /**
+     * Value at the given percentile (0..100) of merged bucket counts, as the bucket's upper bound in µs.
+     */
+    static long percentile(long[] buckets, double pct) {
+        long total = total(buckets);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * pct / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    static long max(long[] buckets) {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (buckets[i] != 0) return upperBound(i);
+        }
+        return 0;
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR) return (int) micros;
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (msb - SUB_BITS)) & (SUB - 1);
+        return LINEAR + (msb - 4) * SUB + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int msb = (index - LINEAR) / SUB + 4;
+        int sub = (index - LINEAR) % SUB;
+        return ((long) (SUB + sub + 1) << (msb - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,128 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * FIFO of main-thread apply work (imported inventories, homes, profiles) that runs
+ * within a per-tick time budget.
+ *
+ * Each task is a sequence of steps. The budget is checked between steps, so a large
+ * import is spread across ticks instead of landing in one. Tasks run strictly in
+ * submission order, which keeps the order of applies for one player intact. At least
+ * one step runs per tick so the queue always makes progress.
+ *
+ * submit() is thread-safe; steps always run on the main thread.
+ */
+public final class MainThreadApplyQueue {
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final long budgetNanos;
+    private final SlowOpLog slowLog;
+    private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+
+    private BukkitRunnable tickTask;
+
+    // Ticks in which work was left over for the next tick
+    private volatile long spilledTicks;
+    // Main-thread time spent applying, summed over all ticks
+    private volatile long busyNanos;
+
+    private static final class Task {
+        final String what;
+        final Runnable[] steps;
+        int next;
+
+        Task(String what, Runnable[] steps) {
+            this.what = what;
+            this.steps = steps;
+        }
+    }
+
+    public MainThreadApplyQueue(Plugin plugin, long budgetMs) {
+        this(plugin, budgetMs, null);
+    }
+
+    /**
+     * @param slowLog receives steps that ran longer than its apply threshold; may be null
+     */
+    public MainThreadApplyQueue(Plugin plugin, long budgetMs, SlowOpLog slowLog) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMs));
+        this.slowLog = slowLog;
+    }
+
+    public void start() {
+        tickTask = new BukkitRunnable() {
+            @Override public void run() { drain(); }
+        };
+        tickTask.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    /**
+     * Stops the tick task. Queued work is dropped; callers re-import on next join.
+     */
+    public void stop() {
+        if (tickTask != null) try { tickTask.cancel(); } catch (Exception ignored) {}
+        queue.clear();
+    }
+
+    /**
+     * Queues a task made of one or more steps. Steps of one task run in order,
+     * possibly across several ticks.
+     */
+    public void submit(String what, Runnable... steps) {
+        if (steps.length == 0) return;
+        queue.add(new Task(what, steps));
+    }
+
+    public int backlog() {
+        return queue.size();
+    }
+
+    public long spilledTicks() {
+        return spilledTicks;
+    }
+
+    public long busyNanos() {
+        return busyNanos;
+    }
+
+    private void drain() {
+        if (queue.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            drainFrom(start);
+        } finally {
+            busyNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void drainFrom(long start) {
+        Task t;
+        while ((t = queue.peek()) != null) {
+            Runnable step = t.steps[t.next++];
+            long stepStart = System.nanoTime();
+            try {
+                step.run();
+            } catch (Exception ex) {
+                logger.warning("[ApplyQueue] " + t.what + " step " + t.next + " failed: " + ex.getMessage());
+            }
+            long now = System.nanoTime();
+            if (slowLog != null) slowLog.apply(t.what, t.next, t.steps.length, now - stepStart);
+            if (t.next >= t.steps.length) queue.poll();
+
+            if (now - start >= budgetNanos) {
+                if (!queue.isEmpty()) spilledTicks++;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-player sync session shared by all workers.
+ *
+ * Holds one atomic dirty bitmask. Marking a domain is a single CAS and never allocates,
+ * so it is safe to call from high-frequency event handlers. Each worker drains only its
+ * own domain bits at flush time; marks that arrive while a flush is running stay set
+ * and are picked up by the next flush.
+ *
+ * It also carries the per-player flush single-flight bits, the import guard and the
+ * versions last seen of each domain's stored columns (and the stored balance), so that state lives and dies with
+ * the session instead of in per-worker maps.
+ */
+public final class PlayerSession {
+
+    // ─────────────────────────── Dirty domains ───────────────────────────
+
+    public static final int XP            = 1;
+    public static final int VITALS        = 1 << 1;
+    public static final int META          = 1 << 2;
+    public static final int HOMES         = 1 << 3;
+    public static final int LAST_LOCATION = 1 << 4;
+    public static final int GROUP         = 1 << 5;
+    public static final int BALANCE       = 1 << 6;
+    /** Never marked dirty (inventories are captured whole); labels inventory writes in invalidations. */
+    public static final int INVENTORY     = 1 << 7;
+    /** Never marked dirty; labels handoff lease releases in invalidations. */
+    public static final int HANDOFF       = 1 << 8;
+
+    /** Domains owned by PlayerDataWorker. */
+    public static final int PLAYER_DATA = XP | VITALS | META;
+    /** Domains owned by HomeDataWorker. */
+    public static final int HOME_DATA = HOMES;
+    /** Domains owned by EssentialsXDataWorker. */
+    public static final int ESSENTIALS_DATA = LAST_LOCATION | GROUP | BALANCE;
+
+    /** Import state of the player's inventory data, see PlayerDataWorker. */
+    public enum ImportPhase { IDLE, IMPORTING, APPLYING }
+
+    private final UUID uuid;
+    private final AtomicInteger dirty = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Indexed by domain bit position
+    private final AtomicLongArray versions = new AtomicLongArray(Integer.numberOfTrailingZeros(HANDOFF) + 1);
+
+    private volatile ImportPhase importPhase = ImportPhase.IDLE;
+    private volatile long lastAppliedAt;
+    private volatile BigDecimal storedBalance;
+
+    public PlayerSession(UUID uuid) {
+        this.uuid = uuid;
+        for (int i = 0; i < versions.length(); i++) versions.set(i, -1L);
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Sets the given domain bits. Returns true if at least one bit was newly set.
+     */
+    public boolean mark(int bits) {
+        int cur = dirty.get();
+        if ((cur & bits) == bits) return false;
+        while (!dirty.compareAndSet(cur, cur | bits)) {
+            cur = dirty.get();
+            if ((cur & bits) == bits) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Atomically clears the given domain bits and returns those that were set.
+     * Bits outside the mask belong to other workers and are left untouched.
+     */
+    public int drain(int mask) {
+        int cur = dirty.get();
+        while ((cur & mask) != 0 && !dirty.compareAndSet(cur, cur & ~mask)) {
+            cur = dirty.get();
+        }
+        return cur & mask;
+    }
+
+    /**
+     * Returns true if any of the given domain bits is set.
+     */
+    public boolean isDirty(int mask) {
+        return (dirty.get() & mask) != 0;
+    }
+
+    public int dirtyBits() {
+        return dirty.get();
+    }
+
+    // ─────────────────────────── Flush single-flight ───────────────────────────
+
+    /**
+     * Claims the flush of the given domains. Returns false if a flush of any of them is still running.
+     */
+    public boolean tryBeginFlush(int mask) {
+        int cur = inFlight.get();
+        while ((cur & mask) == 0) {
+            if (inFlight.compareAndSet(cur, cur | mask)) return true;
+            cur = inFlight.get();
+        }
+        return false;
+    }
+
+    public void endFlush(int mask) {
+        int cur = inFlight.get();
+        while (!inFlight.compareAndSet(cur, cur & ~mask)) {
+            cur = inFlight.get();
+        }
+    }
+
+    public boolean isFlushing() {
+        return inFlight.get() != 0;
+    }
+
+    // ─────────────────────────── Import guard ───────────────────────────
+
+    public ImportPhase getImportPhase() {
+        return importPhase;
+    }
+
+    public void setImportPhase(ImportPhase phase) {
+        this.importPhase = phase;
+    }
+
+    public void markApplied() {
+        this.lastAppliedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * True within windowMs after the last DB -> player apply; exports are suppressed then.
+     */
+    public boolean appliedWithin(long windowMs) {
+        return System.currentTimeMillis() - lastAppliedAt < windowMs;
+    }
+
+    // ─────────────────────────── Stored versions ───────────────────────────
+
+    /**
+     * Version of one domain's stored columns as last read or written by this server, or -1 if
+     * not known yet. domain is a single bit; BALANCE stands for the global user row.
+     */
+    public long version(int domain) {
+        return versions.get(Integer.numberOfTrailingZeros(domain));
+    }
+
+    /**
+     * Records a version read from the DB. Versions only grow, so an older read never wins.
+     */
+    public void observed(int domain, long version) {
+        versions.accumulateAndGet(Integer.numberOfTrailingZeros(domain), version, Math::max);
+    }
+
+    /**
+     * Records a successful write guarded by expected, which moved the domain to expected + 1.
+     */
+    public void advanced(int domain, long expected) {
+        versions.compareAndSet(Integer.numberOfTrailingZeros(domain), expected, expected + 1);
+    }
+
+    // ─────────────────────────── Stored balance ───────────────────────────
+
+    /**
+     * Balance as last read from or written to essentials_users (DBCommands.scaleBalance), or
+     * null if not known yet. A local balance equal to it needs no write.
+     */
+    public BigDecimal getStoredBalance() {
+        return storedBalance;
+    }
+
+    public void setStoredBalance(BigDecimal balance) {
+        this.storedBalance = balance;
+    }
+}
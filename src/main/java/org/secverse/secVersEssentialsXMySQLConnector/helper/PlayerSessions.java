@@ -0,0 +1,89 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of per-player sync sessions shared by all workers.
+ *
+ * Sessions are created lazily on first access and dropped one tick after quit,
+ * so every worker's quit handler still sees the session of the leaving player.
+ * A periodic sweep drops sessions of offline players that were recreated by late
+ * async work, so the registry stays bounded by the online player count.
+ */
+public final class PlayerSessions implements Listener {
+
+    private final Plugin plugin;
+    private final ConcurrentHashMap<UUID, PlayerSession> sessions = new ConcurrentHashMap<>();
+    private BukkitRunnable sweepTask;
+
+    // Sweep cadence in ticks
+    private static final long SWEEP_TICKS = 20L * 60;
+
+    public PlayerSessions(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+        sweepTask = new BukkitRunnable() {
+            @Override public void run() { sweep(); }
+        };
+        sweepTask.runTaskTimer(plugin, SWEEP_TICKS, SWEEP_TICKS);
+    }
+
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        if (sweepTask != null) try { sweepTask.cancel(); } catch (Exception ignored) {}
+        sessions.clear();
+    }
+
+    /**
+     * Drops sessions of offline players with no flush in flight. Main thread.
+     */
+    private void sweep() {
+        sessions.values().removeIf(s -> !s.isFlushing() && Bukkit.getPlayer(s.getUuid()) == null);
+    }
+
+    /**
+     * Returns the session for a player, creating it if needed.
+     */
+    public PlayerSession get(UUID uuid) {
+        PlayerSession s = sessions.get(uuid);
+        return s != null ? s : sessions.computeIfAbsent(uuid, PlayerSession::new);
+    }
+
+    /**
+     * Returns the session for a player or null if none exists.
+     */
+    public PlayerSession peek(UUID uuid) {
+        return sessions.get(uuid);
+    }
+
+    public Collection<PlayerSession> all() {
+        return sessions.values();
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        // Drop on the next tick, after all workers' quit handlers drained their bits
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (Bukkit.getPlayer(id) == null) sessions.remove(id);
+        });
+    }
+}
@@ -0,0 +1,38 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.potion.PotionEffect;
+
+import java.util.Collection;
+
+
+public class PotionEffectsCodec {
+
+    private PotionEffectsCodec() { }
+
+    /**
+     * Serializes active potion effects to a JSON array.
+     *
+     * @param effects effects to serialize, may be null
+     * @return JSON string (never null, "[]" if empty)
+     */
+    public static String serialize(Collection<PotionEffect> effects) {
+        if (effects == null || effects.isEmpty()) return "[]";
+        StringBuilder sb = new StringBuilder(64 * effects.size() + 2);
+        sb.append('[');
+        boolean first = true;
+        for (PotionEffect eff : effects) {
+            if (!first) sb.append(',');
+            first = false;
+            String key = eff.getType().getKey().toString();
+            sb.append('{')
+                    .append("\"type\":\"").append(key).append("\",")
+                    .append("\"duration\":").append(eff.getDuration()).append(',')
+                    .append("\"amplifier\":").append(eff.getAmplifier()).append(',')
+                    .append("\"ambient\":").append(eff.isAmbient()).append(',')
+                    .append("\"particles\":").append(eff.hasParticles())
+                    .append('}');
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,212 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.Plugin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Slow-operation log: DB statements, main-thread apply steps and dupe audits above a
+ * threshold, plus failed statements, written to plugins/&lt;plugin&gt;/slow-ops.log.
+ *
+ * Callers only pay for a threshold compare on the fast path. Slow entries are rate-limited
+ * per second (the excess is counted and reported with the next entry) and handed to a
+ * daemon writer thread through a bounded queue, which drops when full rather than block.
+ * The file rolls to slow-ops.log.1 .. .N once it reaches the configured size.
+ */
+public final class SlowOpLog {
+
+    private static final DateTimeFormatter TS =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.ROOT).withZone(ZoneId.systemDefault());
+
+    private final Logger logger;
+    private final File file;
+    private final long dbThresholdNanos;
+    private final long applyThresholdNanos;
+    private final long auditThresholdNanos;
+    private final int maxPerSecond;
+    private final long maxFileBytes;
+    private final int keepFiles;
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(1024);
+    private final AtomicLong windowSecond = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Thread writer;
+    private volatile boolean running;
+
+    private record Entry(long at, String text) { }
+
+    public SlowOpLog(Plugin plugin) {
+        FileConfiguration cfg = plugin.getConfig();
+        this.logger = plugin.getLogger();
+        this.file = new File(plugin.getDataFolder(), "slow-ops.log");
+        this.dbThresholdNanos = TimeUnit.MILLISECONDS.toNanos(cfg.getLong("slowlog.db_threshold_ms", 50));
+        this.applyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(cfg.getLong("slowlog.apply_threshold_ms", 5));
+        this.auditThresholdNanos = TimeUnit.MILLISECONDS.toNanos(cfg.getLong("slowlog.audit_threshold_ms", 5));
+        this.maxPerSecond = Math.max(1, cfg.getInt("slowlog.max_per_second", 20));
+        this.maxFileBytes = Math.max(64L * 1024, cfg.getLong("slowlog.max_file_mb", 10) * 1024 * 1024);
+        this.keepFiles = Math.max(1, cfg.getInt("slowlog.keep_files", 3));
+    }
+
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "SecVers-SlowLog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes what is queued and stops the writer thread.
+     */
+    public void stop() {
+        running = false;
+        if (writer == null) return;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    // ─────────────────────────── Recording ───────────────────────────
+
+    public boolean isDbSlow(long nanos) {
+        return nanos >= dbThresholdNanos;
+    }
+
+    /**
+     * A DB statement that was slow or failed. waitNanos is the time its task waited in the
+     * write queue, or -1 if it did not run on the write executor.
+     */
+    public void db(String worker, String statement, UUID player, long bytes,
+                   long waitNanos, long execNanos, Throwable error) {
+        if (error == null && execNanos < dbThresholdNanos) return;
+        if (!admit()) return;
+        StringBuilder sb = new StringBuilder(160);
+        sb.append(error != null ? "DB-FAIL " : "DB ").append(worker).append(' ').append(statement)
+                .append(" player=").append(player != null ? player : "-")
+                .append(" bytes=").append(bytes)
+                .append(" wait=").append(waitNanos >= 0 ? ms(waitNanos) : "-")
+                .append(" exec=").append(ms(execNanos));
+        if (error != null) {
+            sb.append(" error=").append(error.getClass().getSimpleName());
+            if (error instanceof SQLException sql) {
+                sb.append(" sqlState=").append(sql.getSQLState()).append(" code=").append(sql.getErrorCode());
+            }
+            sb.append(" msg=\"").append(error.getMessage()).append('"');
+        }
+        enqueue(sb);
+    }
+
+    /**
+     * One main-thread apply step. what names the worker and player, e.g. "[HomeDataWorker] import for Steve".
+     */
+    public void apply(String what, int step, int steps, long nanos) {
+        if (nanos < applyThresholdNanos || !admit()) return;
+        enqueue(new StringBuilder(120).append("APPLY ").append(what)
+                .append(" step=").append(step).append('/').append(steps)
+                .append(" main=").append(ms(nanos)));
+    }
+
+    public void audit(String player, String reason, int slots, long nanos) {
+        if (nanos < auditThresholdNanos || !admit()) return;
+        enqueue(new StringBuilder(120).append("AUDIT player=").append(player)
+                .append(" reason=").append(reason)
+                .append(" slots=").append(slots)
+                .append(" main=").append(ms(nanos)));
+    }
+
+    /**
+     * Entries lost because the writer fell behind and the queue was full.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private boolean admit() {
+        long sec = System.currentTimeMillis() / 1000;
+        long cur = windowSecond.get();
+        if (cur != sec && windowSecond.compareAndSet(cur, sec)) windowCount.set(0);
+        if (windowCount.incrementAndGet() <= maxPerSecond) return true;
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    private void enqueue(StringBuilder sb) {
+        long skipped = suppressed.getAndSet(0);
+        if (skipped > 0) sb.append(" (+").append(skipped).append(" suppressed)");
+        if (!queue.offer(new Entry(System.currentTimeMillis(), sb.toString()))) dropped.incrementAndGet();
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
+
+    // ─────────────────────────── Writer ───────────────────────────
+
+    private void writeLoop() {
+        BufferedWriter out = null;
+        long size = 0;
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry e;
+                try {
+                    e = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    e = queue.poll();
+                    if (e == null) break;
+                }
+                if (e == null) continue;
+
+                if (out == null || size >= maxFileBytes) {
+                    if (out != null) out.close();
+                    if (out != null || file.length() >= maxFileBytes) roll();
+                    file.getParentFile().mkdirs();
+                    out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+                    size = file.length();
+                }
+
+                String line = TS.format(Instant.ofEpochMilli(e.at())) + " " + e.text() + "\n";
+                out.write(line);
+                size += line.length();
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (IOException ex) {
+            logger.warning("[SlowLog] writing " + file.getName() + " failed: " + ex.getMessage());
+        } finally {
+            if (out != null) try { out.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private void roll() {
+        File oldest = new File(file.getPath() + "." + keepFiles);
+        if (oldest.exists() && !oldest.delete()) return;
+        for (int i = keepFiles - 1; i >= 1; i--) {
+            File f = new File(file.getPath() + "." + i);
+            if (f.exists()) f.renameTo(new File(file.getPath() + "." + (i + 1)));
+        }
+        file.renameTo(new File(file.getPath() + ".1"));
+    }
+}
@@ -0,0 +1,80 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR events of the sync workers, shown under "SecVers / EssentialsX Sync" in Mission Control.
+ *
+ * Usage is begin() before the work and commit() after it. When no recording has the event
+ * enabled, commit() is a single flag check and the event object is usually scalar-replaced,
+ * so the calls can stay in hot paths. Fields are only filled behind shouldCommit().
+ */
+public final class SyncEvents {
+
+    private SyncEvents() { }
+
+    @Name("secvers.essx.JoinDecision")
+    @Label("Join Sync Decision")
+    @Description("Outcome of comparing local and stored player state on join")
+    @Category({"SecVers", "EssentialsX Sync"})
+    @StackTrace(false)
+    public static final class JoinDecision extends Event {
+        @Label("Player") public String player;
+        /** import, export, equal or unchanged (skipped, see PresenceTracker) */
+        @Label("Outcome") public String outcome;
+        @Label("Local State Empty") public boolean localEmpty;
+        @Label("Stored State Useful") public boolean dbUseful;
+    }
+
+    @Name("secvers.essx.Flush")
+    @Label("Sync Flush")
+    @Description("One player's dirty domains written by a worker")
+    @Category({"SecVers", "EssentialsX Sync"})
+    @StackTrace(false)
+    public static final class Flush extends Event {
+        @Label("Worker") public String worker;
+        @Label("Player") public String player;
+        @Label("Rows Written") public int rows;
+        @Label("Payload") @DataAmount public long bytes;
+    }
+
+    @Name("secvers.essx.ImportApply")
+    @Label("Apply Stored State")
+    @Description("Stored player state applied to the player, from the first main-thread step to the last")
+    @Category({"SecVers", "EssentialsX Sync"})
+    @StackTrace(false)
+    public static final class ImportApply extends Event {
+        @Label("Player") public String player;
+        @Label("Reason") public String reason;
+        @Label("Aborted") public boolean aborted;
+    }
+
+    @Name("secvers.essx.DupeAudit")
+    @Label("Dupe Audit")
+    @Description("Inventory and ender chest audit of one player")
+    @Category({"SecVers", "EssentialsX Sync"})
+    @StackTrace(false)
+    public static final class DupeAudit extends Event {
+        @Label("Player") public String player;
+        @Label("Reason") public String reason;
+        @Label("Slots") public int slots;
+        @Label("Duplicate Groups") public int duplicateGroups;
+    }
+
+    @Name("secvers.essx.Statement")
+    @Label("DB Statement")
+    @Description("One DBCommands call")
+    @Category({"SecVers", "EssentialsX Sync"})
+    @StackTrace(false)
+    public static final class Statement extends Event {
+        @Label("Worker") public String worker;
+        @Label("SQL Id") public String statement;
+        @Label("Failed") public boolean failed;
+    }
+}
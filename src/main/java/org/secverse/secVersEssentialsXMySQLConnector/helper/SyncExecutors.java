@@ -0,0 +1,137 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Executors shared by all sync workers.
+ *
+ * - cpu: serialisation and compression of captured snapshots.
+ * - io:  every database statement, reads included. Single-threaded because all DBCommands
+ *        share one JDBC connection, so workers never touch the DB from Bukkit async tasks:
+ *        a statement from another thread would land inside, or commit, a running transaction.
+ *
+ * Queue bounds are enforced by the callers (see SnapshotPipeline), so a full stage
+ * pushes back on the stage before it instead of rejecting work.
+ */
+public final class SyncExecutors {
+
+    // Time the running write task spent queued; only set on the io thread
+    private static final ThreadLocal<long[]> QUEUE_WAIT = ThreadLocal.withInitial(() -> new long[] { -1 });
+
+    // How long an interrupted io thread gets to leave its statement after an abandoned drain
+    private static final long STOP_GRACE_MS = 1000L;
+
+    private final ThreadPoolExecutor cpu;
+    private final ThreadPoolExecutor io;
+
+    private record Queued(Runnable task, long queuedAt) implements Runnable {
+        @Override public void run() { task.run(); }
+    }
+
+    public SyncExecutors(int encodeThreads) {
+        int n = Math.max(1, encodeThreads);
+        this.cpu = new ThreadPoolExecutor(n, n, 30L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), named("SecVers-Encode"));
+        this.cpu.allowCoreThreadTimeOut(true);
+        this.io = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), named("SecVers-DB")) {
+            @Override public void execute(Runnable command) {
+                super.execute(new Queued(command, System.nanoTime()));
+            }
+
+            @Override protected void beforeExecute(Thread t, Runnable r) {
+                if (r instanceof Queued q) QUEUE_WAIT.get()[0] = System.nanoTime() - q.queuedAt;
+            }
+
+            @Override protected void afterExecute(Runnable r, Throwable t) {
+                QUEUE_WAIT.get()[0] = -1;
+            }
+        };
+    }
+
+    public ExecutorService cpu() {
+        return cpu;
+    }
+
+    public ExecutorService io() {
+        return io;
+    }
+
+    public int cpuBacklog() {
+        return cpu.getQueue().size();
+    }
+
+    public int ioBacklog() {
+        return io.getQueue().size();
+    }
+
+    /**
+     * Writes running right now; 0 or 1, since the connection is used by one thread at a time.
+     */
+    public int ioActive() {
+        return io.getActiveCount();
+    }
+
+    /**
+     * How long the write task running on the calling thread waited in the io queue before
+     * it started, or -1 when the caller is not running an io task. With one connection this
+     * queue wait stands in for pool wait.
+     */
+    public static long currentQueueWaitNanos() {
+        return QUEUE_WAIT.get()[0];
+    }
+
+    /**
+     * Stops accepting work and waits for queued encodes and writes to finish.
+     * Returns true if both executors drained before the timeout. Otherwise the executors are
+     * interrupted and given a short grace to stop; see isIoTerminated().
+     */
+    public boolean shutdown(Logger logger, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        cpu.shutdown();
+        boolean drained = false;
+        try {
+            if (cpu.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                io.shutdown();
+                drained = io.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!drained) {
+            logger.warning("[SyncExecutors] pending work abandoned at shutdown: encode="
+                    + cpu.getQueue().size() + " write=" + io.getQueue().size());
+            cpu.shutdownNow();
+            io.shutdownNow();
+            try {
+                io.awaitTermination(STOP_GRACE_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Whether the io thread has stopped. Until it has, it may still be inside a statement on the
+     * shared connection, so nothing else may use it.
+     */
+    public boolean isIoTerminated() {
+        return io.isTerminated();
+    }
+
+    private static ThreadFactory named(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
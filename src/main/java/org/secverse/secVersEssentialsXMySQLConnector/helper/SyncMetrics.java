@@ -0,0 +1,224 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Sync instrumentation: per-statement latency, row counters and queue depth gauges.
+ *
+ * Every statement is tracked per worker. Latencies go into a ring of histogram slices so
+ * percentiles cover the last window only; counters are totals since start. Recording is a
+ * couple of atomic increments and never takes a lock except when a slice rolls over.
+ * Read by /syncstats and the plugin API.
+ */
+public final class SyncMetrics {
+
+    private static final int SLICES = 6;
+
+    private final long sliceMillis;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Stat>> workers = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    public SyncMetrics(int windowSeconds) {
+        this.sliceMillis = Math.max(1_000L, TimeUnit.SECONDS.toMillis(Math.max(SLICES, windowSeconds)) / SLICES);
+    }
+
+    /**
+     * Latency and counters of one statement issued by one worker.
+     */
+    public final class Stat {
+        private final LatencyHistogram[] slices = new LatencyHistogram[SLICES];
+        private final AtomicLongArray sliceStamp = new AtomicLongArray(SLICES);
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LongAdder sumMicros = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rowsWritten = new LongAdder();
+        final LongAdder rowsSkipped = new LongAdder();
+
+        private Stat() {
+            for (int i = 0; i < SLICES; i++) slices[i] = new LatencyHistogram();
+        }
+
+        public void record(long nanos) {
+            long slot = System.currentTimeMillis() / sliceMillis;
+            int i = (int) (slot % SLICES);
+            if (sliceStamp.get(i) != slot) roll(i, slot);
+            slices[i].recordNanos(nanos);
+            total.recordNanos(nanos);
+            sumMicros.add(nanos / 1_000);
+            calls.increment();
+        }
+
+        public void error() {
+            errors.increment();
+        }
+
+        public void written(long rows) {
+            rowsWritten.add(rows);
+        }
+
+        /** Rows a (? &gt; last_update) guard left untouched because the stored row was newer. */
+        public void skipped(long rows) {
+            rowsSkipped.add(rows);
+        }
+
+        public long calls() { return calls.sum(); }
+        public long errors() { return errors.sum(); }
+        public long rowsWritten() { return rowsWritten.sum(); }
+        public long rowsSkipped() { return rowsSkipped.sum(); }
+        public long sumMicros() { return sumMicros.sum(); }
+
+        /**
+         * Latencies since start, cumulative per upper bound; see LatencyHistogram.cumulative.
+         */
+        public long cumulative(long[] leMicros, long[] out) {
+            return total.cumulative(leMicros, out);
+        }
+
+        private void roll(int i, long slot) {
+            synchronized (slices[i]) {
+                if (sliceStamp.get(i) == slot) return;
+                slices[i].reset();
+                sliceStamp.set(i, slot);
+            }
+        }
+
+        private void addWindow(long[] into, long nowSlot) {
+            for (int i = 0; i < SLICES; i++) {
+                if (nowSlot - sliceStamp.get(i) < SLICES) slices[i].addTo(into);
+            }
+        }
+    }
+
+    /**
+     * Returns the stat for a statement of a worker, creating it on first use.
+     */
+    public Stat stat(String worker, String statement) {
+        return workers.computeIfAbsent(worker, w -> new ConcurrentHashMap<>())
+                .computeIfAbsent(statement, s -> new Stat());
+    }
+
+    /**
+     * Registers a sampled value such as a queue depth. Replaces a gauge of the same name.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public long windowSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(sliceMillis * SLICES);
+    }
+
+    public long uptimeSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startedAt);
+    }
+
+    // ─────────────────────────── Snapshots ───────────────────────────
+
+    /**
+     * Point-in-time view of one statement. Latencies cover the rolling window, counters are totals.
+     */
+    public static final class StatementSnapshot {
+        public String worker;       // null when aggregated over all workers
+        public String statement;
+        public long calls;
+        public long errors;
+        public long rowsWritten;
+        public long rowsSkipped;
+        public long windowCount;
+        public long p50Micros;
+        public long p95Micros;
+        public long p99Micros;
+        public long maxMicros;
+    }
+
+    /**
+     * Per-statement view, aggregated over all workers. Sorted by statement name.
+     */
+    public List<StatementSnapshot> byStatement() {
+        Map<String, List<Stat>> grouped = new TreeMap<>();
+        for (ConcurrentHashMap<String, Stat> stats : workers.values()) {
+            stats.forEach((name, st) -> grouped.computeIfAbsent(name, k -> new ArrayList<>()).add(st));
+        }
+        List<StatementSnapshot> out = new ArrayList<>(grouped.size());
+        grouped.forEach((name, list) -> out.add(snapshot(null, name, list)));
+        return out;
+    }
+
+    /**
+     * Per-worker, per-statement view. Sorted by worker, then statement.
+     */
+    public List<StatementSnapshot> byWorker() {
+        List<StatementSnapshot> out = new ArrayList<>();
+        new TreeMap<>(workers).forEach((worker, stats) ->
+                new TreeMap<>(stats).forEach((name, st) -> out.add(snapshot(worker, name, List.of(st)))));
+        return out;
+    }
+
+    /**
+     * Current gauge values sorted by name. A gauge that throws reads as -1.
+     */
+    public Map<String, Long> gauges() {
+        Map<String, Long> out = new TreeMap<>();
+        forEachGauge(out::put);
+        return out;
+    }
+
+    @FunctionalInterface
+    public interface StatVisitor {
+        void visit(String worker, String statement, Stat stat);
+    }
+
+    /**
+     * Visits every stat without copying; order is unspecified.
+     */
+    public void forEachStat(StatVisitor visitor) {
+        workers.forEach((worker, stats) -> stats.forEach((name, st) -> visitor.visit(worker, name, st)));
+    }
+
+    /**
+     * Visits every gauge with its current value without building a map; order is unspecified.
+     */
+    public void forEachGauge(ObjLongConsumer<String> visitor) {
+        gauges.forEach((name, value) -> {
+            long v;
+            try {
+                v = value.getAsLong();
+            } catch (RuntimeException ex) {
+                v = -1;
+            }
+            visitor.accept(name, v);
+        });
+    }
+
+    private StatementSnapshot snapshot(String worker, String statement, List<Stat> stats) {
+        long nowSlot = System.currentTimeMillis() / sliceMillis;
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        StatementSnapshot s = new StatementSnapshot();
+        s.worker = worker;
+        s.statement = statement;
+        for (Stat st : stats) {
+            st.addWindow(buckets, nowSlot);
+            s.calls += st.calls.sum();
+            s.errors += st.errors.sum();
+            s.rowsWritten += st.rowsWritten.sum();
+            s.rowsSkipped += st.rowsSkipped.sum();
+        }
+        s.windowCount = LatencyHistogram.total(buckets);
+        s.p50Micros = LatencyHistogram.percentile(buckets, 50);
+        s.p95Micros = LatencyHistogram.percentile(buckets, 95);
+        s.p99Micros = LatencyHistogram.percentile(buckets, 99);
+        s.maxMicros = LatencyHistogram.max(buckets);
+        return s;
+    }
+}
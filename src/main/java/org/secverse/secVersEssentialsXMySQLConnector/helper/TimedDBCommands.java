@@ -0,0 +1,411 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DBCommands that records every call into SyncMetrics under one worker name.
+ *
+ * Each worker gets its own instance over the shared connection, so statements are
+ * attributed to the worker that issued them. The *IfVersion calls count a true result as a
+ * written row and a false one as a row skipped by the version guard (a stale write).
+ * Every call is also a SyncEvents.Statement JFR event, and calls that are slow or fail go
+ * to the SlowOpLog (if one is set) with the player, payload size and write-queue wait.
+ */
+public final class TimedDBCommands extends DBCommands {
+
+    private final SyncMetrics metrics;
+    private final SlowOpLog slowLog;
+    private final String worker;
+    private final ConcurrentHashMap<String, SyncMetrics.Stat> stats = new ConcurrentHashMap<>();
+
+    public TimedDBCommands(Connection conn, SyncMetrics metrics, String worker) {
+        this(conn, metrics, null, worker);
+    }
+
+    /**
+     * @param slowLog may be null
+     */
+    public TimedDBCommands(Connection conn, SyncMetrics metrics, SlowOpLog slowLog, String worker) {
+        super(conn);
+        this.metrics = metrics;
+        this.slowLog = slowLog;
+        this.worker = worker;
+    }
+
+    // ─────────────────────────── Global users ───────────────────────────
+
+    @Override
+    public void ensureGlobalUser(UUID uuid, String name, long newTimestamp) throws SQLException {
+        timed("ensureGlobalUser", uuid, 0, () -> { super.ensureGlobalUser(uuid, name, newTimestamp); return null; });
+    }
+
+    @Override
+    public boolean upsertGlobalUserIfVersion(UUID uuid, String name, BigDecimal balance, long expectedVersion, long now) throws SQLException {
+        return guarded("upsertGlobalUserIfVersion", uuid, len(name),
+                () -> super.upsertGlobalUserIfVersion(uuid, name, balance, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateBalanceIfVersion(UUID uuid, BigDecimal balance, long expectedVersion, long now) throws SQLException {
+        return guarded("updateBalanceIfVersion", uuid, 0, () -> super.updateBalanceIfVersion(uuid, balance, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateGlobalUserName(UUID uuid, String name, long now) throws SQLException {
+        return timed("updateGlobalUserName", uuid, len(name), () -> super.updateGlobalUserName(uuid, name, now));
+    }
+
+    @Override
+    public GlobalUser getGlobalUser(UUID uuid) throws SQLException {
+        return timed("getGlobalUser", uuid, 0, () -> super.getGlobalUser(uuid));
+    }
+
+    @Override
+    public List<GlobalUser> listGlobalUsersChangedSince(long afterUpdate, String afterUuid, long upTo, int limit) throws SQLException {
+        return timed("listGlobalUsersChangedSince", null, 0,
+                () -> super.listGlobalUsersChangedSince(afterUpdate, afterUuid, upTo, limit));
+    }
+
+    // ─────────────────────────── Server profiles ───────────────────────────
+
+    @Override
+    public void ensureServerProfile(UUID uuid, String serverName, long newTimestamp) throws SQLException {
+        timed("ensureServerProfile", uuid, 0, () -> { super.ensureServerProfile(uuid, serverName, newTimestamp); return null; });
+    }
+
+    @Override
+    public boolean upsertServerProfileIfVersion(ServerProfile sp, long now) throws SQLException {
+        return guarded("upsertServerProfileIfVersion", sp.uuid, len(sp.groupName) + len(sp.lastLocation) + len(sp.homes),
+                () -> super.upsertServerProfileIfVersion(sp, now));
+    }
+
+    @Override
+    public boolean updateHomesIfVersion(UUID uuid, String serverName, String homes, long expectedVersion, long now) throws SQLException {
+        return guarded("updateHomesIfVersion", uuid, len(homes),
+                () -> super.updateHomesIfVersion(uuid, serverName, homes, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateGroupIfVersion(UUID uuid, String serverName, String groupName, long expectedVersion, long now) throws SQLException {
+        return guarded("updateGroupIfVersion", uuid, len(groupName),
+                () -> super.updateGroupIfVersion(uuid, serverName, groupName, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateLastLocationIfVersion(UUID uuid, String serverName, String lastLocation, long expectedVersion, long now) throws SQLException {
+        return guarded("updateLastLocationIfVersion", uuid, len(lastLocation),
+                () -> super.updateLastLocationIfVersion(uuid, serverName, lastLocation, expectedVersion, now));
+    }
+
+    @Override
+    public ServerProfile getServerProfile(UUID uuid, String serverName) throws SQLException {
+        return timed("getServerProfile", uuid, 0, () -> super.getServerProfile(uuid, serverName));
+    }
+
+    @Override
+    public List<ServerProfile> listServerProfiles(UUID uuid) throws SQLException {
+        return timed("listServerProfiles", uuid, 0, () -> super.listServerProfiles(uuid));
+    }
+
+    @Override
+    public List<ServerProfile> listServerProfilesChangedSince(String serverName, long afterUpdate, String afterUuid,
+                                                              long upTo, int limit) throws SQLException {
+        return timed("listServerProfilesChangedSince", null, 0,
+                () -> super.listServerProfilesChangedSince(serverName, afterUpdate, afterUuid, upTo, limit));
+    }
+
+    @Override
+    public boolean deleteServerProfile(UUID uuid, String serverName) throws SQLException {
+        return deleted("deleteServerProfile", uuid, () -> super.deleteServerProfile(uuid, serverName));
+    }
+
+    // ─────────────────────────── Player state ───────────────────────────
+
+    @Override
+    public void ensureUserState(UUID uuid, String serverName, long newTimestamp) throws SQLException {
+        timed("ensureUserState", uuid, 0, () -> { super.ensureUserState(uuid, serverName, newTimestamp); return null; });
+    }
+
+    @Override
+    public boolean upsertUserStateIfVersion(UserState s, long now) throws SQLException {
+        return guarded("upsertUserStateIfVersion", s.uuid, bytes(s), () -> super.upsertUserStateIfVersion(s, now));
+    }
+
+    @Override
+    public boolean updateInventoryIfVersion(UUID uuid, String serverName, byte[] invMain, byte[] invOffhand,
+                                            byte[] invArmor, byte[] enderChest, long expectedVersion, long now) throws SQLException {
+        return guarded("updateInventoryIfVersion", uuid,
+                len(invMain) + len(invOffhand) + len(invArmor) + len(enderChest),
+                () -> super.updateInventoryIfVersion(uuid, serverName, invMain, invOffhand, invArmor, enderChest, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateXpIfVersion(UUID uuid, String serverName, int xpLevel, int xpTotal, float xpProgress,
+                                     long expectedVersion, long now) throws SQLException {
+        return guarded("updateXpIfVersion", uuid, 0,
+                () -> super.updateXpIfVersion(uuid, serverName, xpLevel, xpTotal, xpProgress, expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateVitalsIfVersion(UUID uuid, String serverName, double health, double maxHealth, int foodLevel,
+                                         float saturation, float exhaustion, long expectedVersion, long now) throws SQLException {
+        return guarded("updateVitalsIfVersion", uuid, 0,
+                () -> super.updateVitalsIfVersion(uuid, serverName, health, maxHealth, foodLevel, saturation, exhaustion,
+                        expectedVersion, now));
+    }
+
+    @Override
+    public boolean updateMetadataIfVersion(UUID uuid, String serverName, String gameMode, String potionEffectsJson,
+                                           String statsJson, String lastDeathLoc, String bedSpawnLoc,
+                                           long expectedVersion, long now) throws SQLException {
+        return guarded("updateMetadataIfVersion", uuid,
+                len(gameMode) + len(potionEffectsJson) + len(statsJson) + len(lastDeathLoc) + len(bedSpawnLoc),
+                () -> super.updateMetadataIfVersion(uuid, serverName, gameMode, potionEffectsJson, statsJson,
+                        lastDeathLoc, bedSpawnLoc, expectedVersion, now));
+    }
+
+    @Override
+    public int updateUserStatesIfVersion(List<UserState> states, long now) throws SQLException {
+        SyncMetrics.Stat st = stat("updateUserStatesIfVersion");
+        int updated = timed("updateUserStatesIfVersion", st, null, bytes(states), () -> super.updateUserStatesIfVersion(states, now));
+        st.written(updated);
+        st.skipped(states.size() - updated);
+        return updated;
+    }
+
+    @Override
+    public UserState getUserState(UUID uuid, String serverName) throws SQLException {
+        return timed("getUserState", uuid, 0, () -> super.getUserState(uuid, serverName));
+    }
+
+    @Override
+    public List<String> listUserStateServers(UUID uuid) throws SQLException {
+        return timed("listUserStateServers", uuid, 0, () -> super.listUserStateServers(uuid));
+    }
+
+    @Override
+    public boolean deleteUserState(UUID uuid, String serverName) throws SQLException {
+        return deleted("deleteUserState", uuid, () -> super.deleteUserState(uuid, serverName));
+    }
+
+    // ─────────────────────────── Item UIDs / servers ───────────────────────────
+
+    @Override
+    public Map<UUID, ItemUidSighting> getItemUids(Collection<UUID> uids) throws SQLException {
+        return timed("getItemUids", null, 0, () -> super.getItemUids(uids));
+    }
+
+    @Override
+    public void upsertItemUids(List<ItemUidSighting> sightings) throws SQLException {
+        SyncMetrics.Stat st = stat("upsertItemUids");
+        timed("upsertItemUids", st, null, 0, () -> { super.upsertItemUids(sightings); return null; });
+        st.written(sightings.size());
+    }
+
+    @Override
+    public void upsertServerRegistry(String serverName, boolean isMaster) throws SQLException {
+        timed("upsertServerRegistry", null, 0, () -> { super.upsertServerRegistry(serverName, isMaster); return null; });
+    }
+
+    @Override
+    public boolean isMasterServer(String serverName) throws SQLException {
+        return timed("isMasterServer", null, 0, () -> super.isMasterServer(serverName));
+    }
+
+    // ─────────────────────────── Handoff lease ───────────────────────────
+
+    @Override
+    public boolean tryAcquireLease(UUID uuid, String serverName, long now) throws SQLException {
+        return timed("tryAcquireLease", uuid, 0, () -> super.tryAcquireLease(uuid, serverName, now));
+    }
+
+    @Override
+    public void forceAcquireLease(UUID uuid, String serverName, long now) throws SQLException {
+        timed("forceAcquireLease", uuid, 0, () -> { super.forceAcquireLease(uuid, serverName, now); return null; });
+    }
+
+    @Override
+    public boolean releaseLease(UUID uuid, String serverName, long now) throws SQLException {
+        return deleted("releaseLease", uuid, () -> super.releaseLease(uuid, serverName, now));
+    }
+
+    @Override
+    public int releaseAllLeases(String serverName, long now) throws SQLException {
+        SyncMetrics.Stat st = stat("releaseAllLeases");
+        int released = timed("releaseAllLeases", st, null, 0, () -> super.releaseAllLeases(serverName, now));
+        st.written(released);
+        return released;
+    }
+
+    @Override
+    public String getLeaseHolder(UUID uuid) throws SQLException {
+        return timed("getLeaseHolder", uuid, 0, () -> super.getLeaseHolder(uuid));
+    }
+
+    @Override
+    public void markPresent(UUID uuid, String name, String serverName, long now) throws SQLException {
+        timed("markPresent", uuid, len(name), () -> { super.markPresent(uuid, name, serverName, now); return null; });
+    }
+
+    @Override
+    public boolean markAbsent(UUID uuid, String serverName, long quitAt) throws SQLException {
+        return timed("markAbsent", uuid, 0, () -> super.markAbsent(uuid, serverName, quitAt));
+    }
+
+    @Override
+    public int markAllAbsent(String serverName, long quitAt) throws SQLException {
+        SyncMetrics.Stat st = stat("markAllAbsent");
+        int ended = timed("markAllAbsent", st, null, 0, () -> super.markAllAbsent(serverName, quitAt));
+        st.written(ended);
+        return ended;
+    }
+
+    @Override
+    public int heartbeatPresence(String serverName, Collection<UUID> online, long now) throws SQLException {
+        SyncMetrics.Stat st = stat("heartbeatPresence");
+        int touched = timed("heartbeatPresence", st, null, 0, () -> super.heartbeatPresence(serverName, online, now));
+        st.written(touched);
+        return touched;
+    }
+
+    @Override
+    public Presence findPresence(String name) throws SQLException {
+        return timed("findPresence", null, len(name), () -> super.findPresence(name));
+    }
+
+    // ─────────────────────────── Balance ledger ───────────────────────────
+
+    @Override
+    public int appendBalanceDeltas(List<LedgerEntry> entries, long now) throws SQLException {
+        SyncMetrics.Stat st = stat("appendBalanceDeltas");
+        int players = timed("appendBalanceDeltas", st, null, 0, () -> super.appendBalanceDeltas(entries, now));
+        st.written(entries.size());
+        return players;
+    }
+
+    @Override
+    public List<LedgerEntry> listLedgerSince(long afterId, int limit) throws SQLException {
+        return timed("listLedgerSince", null, 0, () -> super.listLedgerSince(afterId, limit));
+    }
+
+    @Override
+    public List<LedgerEntry> listUserLedgerSince(UUID uuid, long afterId, int limit) throws SQLException {
+        return timed("listUserLedgerSince", uuid, 0, () -> super.listUserLedgerSince(uuid, afterId, limit));
+    }
+
+    @Override
+    public long getLedgerHead() throws SQLException {
+        return timed("getLedgerHead", null, 0, () -> super.getLedgerHead());
+    }
+
+    @Override
+    public int compactLedger(long olderThan, int limit) throws SQLException {
+        SyncMetrics.Stat st = stat("compactLedger");
+        int removed = timed("compactLedger", st, null, 0, () -> super.compactLedger(olderThan, limit));
+        st.written(removed);
+        return removed;
+    }
+
+    @Override
+    public UserState getUnchangedUserStateVersions(UUID uuid, String serverName) throws SQLException {
+        return timed("getUnchangedUserStateVersions", uuid, 0, () -> super.getUnchangedUserStateVersions(uuid, serverName));
+    }
+
+    @Override
+    public ServerProfile getUnchangedServerProfileVersions(UUID uuid, String serverName) throws SQLException {
+        return timed("getUnchangedServerProfileVersions", uuid, 0, () -> super.getUnchangedServerProfileVersions(uuid, serverName));
+    }
+
+    /**
+     * Times the whole transaction including commit; the statements inside are recorded on their own.
+     */
+    @Override
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return timed("transaction", null, 0, () -> super.inTransaction(work));
+    }
+
+    // ─────────────────────────── Recording ───────────────────────────
+
+    private SyncMetrics.Stat stat(String statement) {
+        SyncMetrics.Stat st = stats.get(statement);
+        return st != null ? st : stats.computeIfAbsent(statement, s -> metrics.stat(worker, s));
+    }
+
+    private <T> T timed(String statement, UUID player, long bytes, SqlWork<T> work) throws SQLException {
+        return timed(statement, stat(statement), player, bytes, work);
+    }
+
+    private <T> T timed(String statement, SyncMetrics.Stat st, UUID player, long bytes,
+                        SqlWork<T> work) throws SQLException {
+        SyncEvents.Statement ev = new SyncEvents.Statement();
+        ev.begin();
+        long start = System.nanoTime();
+        Throwable error = null;
+        boolean failed = true;
+        try {
+            T result = work.run();
+            failed = false;
+            return result;
+        } catch (SQLException | RuntimeException ex) {
+            st.error();
+            error = ex;
+            throw ex;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            st.record(elapsed);
+            if (slowLog != null && (failed || slowLog.isDbSlow(elapsed))) {
+                slowLog.db(worker, statement, player, bytes, SyncExecutors.currentQueueWaitNanos(), elapsed, error);
+            }
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.worker = worker;
+                ev.statement = statement;
+                ev.failed = failed;
+                ev.commit();
+            }
+        }
+    }
+
+    private boolean guarded(String statement, UUID player, long bytes, SqlWork<Boolean> work) throws SQLException {
+        SyncMetrics.Stat st = stat(statement);
+        boolean written = timed(statement, st, player, bytes, work);
+        if (written) st.written(1);
+        else st.skipped(1);
+        return written;
+    }
+
+    private boolean deleted(String statement, UUID player, SqlWork<Boolean> work) throws SQLException {
+        SyncMetrics.Stat st = stat(statement);
+        boolean deleted = timed(statement, st, player, 0, work);
+        if (deleted) st.written(1);
+        return deleted;
+    }
+
+    // Payload sizes for the slow log; strings count chars, which is close enough for sizing
+
+    private static long len(byte[] b) {
+        return b != null ? b.length : 0;
+    }
+
+    private static long len(String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    private static long bytes(UserState s) {
+        return len(s.invMain) + len(s.invOffhand) + len(s.invArmor) + len(s.enderChest)
+                + len(s.potionEffects) + len(s.statsJson);
+    }
+
+    private static long bytes(List<UserState> states) {
+        long n = 0;
+        for (UserState s : states) n += bytes(s);
+        return n;
+    }
+}
@@ -0,0 +1,148 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity map of item UID -> (holder UUID, written-at) with LRU and TTL eviction.
+ *
+ * Keys and holders are stored as two longs each in parallel primitive arrays, so an entry
+ * costs 48 bytes and no objects. The table is 8-way set associative: a key can only live
+ * in the 8 slots of its set, the least recently used of them is replaced on insert, and
+ * entries older than the TTL are treated as absent. Memory is fixed at construction.
+ *
+ * Not thread-safe.
+ */
+public final class UidHolderCache {
+
+    private static final int WAYS = 8;
+
+    private final long[] keyHi;
+    private final long[] keyLo;
+    private final long[] holderHi;
+    private final long[] holderLo;
+    private final long[] writtenAt;
+    private final long[] usedAt;   // access clock, 0 = empty slot
+    private final int setMask;
+    private final long ttlMs;
+
+    private long clock;
+    private int size;
+
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param capacity minimum number of entries; rounded up to a power of two
+     * @param ttlMs    entries older than this (by written-at) are dropped on access
+     */
+    public UidHolderCache(int capacity, long ttlMs) {
+        int sets = Integer.highestOneBit(Math.max(WAYS, capacity - 1) / WAYS) << 1;
+        int slots = sets * WAYS;
+        this.keyHi = new long[slots];
+        this.keyLo = new long[slots];
+        this.holderHi = new long[slots];
+        this.holderLo = new long[slots];
+        this.writtenAt = new long[slots];
+        this.usedAt = new long[slots];
+        this.setMask = sets - 1;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Returns the slot of a live entry for the key, or -1. Marks the entry as recently used.
+     */
+    public int find(long hi, long lo, long nowMs) {
+        int base = setOf(hi, lo) * WAYS;
+        for (int i = base; i < base + WAYS; i++) {
+            if (usedAt[i] == 0 || keyHi[i] != hi || keyLo[i] != lo) continue;
+            if (nowMs - writtenAt[i] >= ttlMs) {
+                usedAt[i] = 0;
+                size--;
+                expirations++;
+                return -1;
+            }
+            usedAt[i] = ++clock;
+            return i;
+        }
+        return -1;
+    }
+
+    public long holderHi(int slot) { return holderHi[slot]; }
+    public long holderLo(int slot) { return holderLo[slot]; }
+    public long writtenAt(int slot) { return writtenAt[slot]; }
+
+    /**
+     * Updates the holder and write time of an entry returned by find().
+     */
+    public void update(int slot, long holderHi, long holderLo, long writtenAtMs) {
+        this.holderHi[slot] = holderHi;
+        this.holderLo[slot] = holderLo;
+        this.writtenAt[slot] = writtenAtMs;
+    }
+
+    /**
+     * Inserts or replaces the entry for the key. Evicts the least recently used entry of the
+     * set if it is full; expired or empty slots are reused first.
+     */
+    public void put(long hi, long lo, long holderHi, long holderLo, long writtenAtMs, long nowMs) {
+        int base = setOf(hi, lo) * WAYS;
+        int victim = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int i = base; i < base + WAYS; i++) {
+            if (usedAt[i] != 0 && keyHi[i] == hi && keyLo[i] == lo) {
+                victim = i;
+                break;
+            }
+            if (usedAt[i] == 0) {
+                if (oldest != 0) { victim = i; oldest = 0; }
+                continue;
+            }
+            if (nowMs - writtenAt[i] >= ttlMs) {
+                usedAt[i] = 0;
+                size--;
+                expirations++;
+                if (oldest != 0) { victim = i; oldest = 0; }
+                continue;
+            }
+            if (usedAt[i] < oldest) {
+                oldest = usedAt[i];
+                victim = i;
+            }
+        }
+
+        if (usedAt[victim] == 0) size++;
+        else if (keyHi[victim] != hi || keyLo[victim] != lo) evictions++;
+
+        keyHi[victim] = hi;
+        keyLo[victim] = lo;
+        this.holderHi[victim] = holderHi;
+        this.holderLo[victim] = holderLo;
+        this.writtenAt[victim] = writtenAtMs;
+        usedAt[victim] = ++clock;
+    }
+
+    public void clear() {
+        Arrays.fill(usedAt, 0L);
+        size = 0;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return usedAt.length; }
+    public long evictions() { return evictions; }
+    public long expirations() { return expirations; }
+
+    /**
+     * Heap used by the backing arrays, in bytes. Constant for the lifetime of the cache.
+     */
+    public long sizeInBytes() {
+        return (long) usedAt.length * 6 * Long.BYTES;
+    }
+
+    private int setOf(long hi, long lo) {
+        long h = hi ^ Long.rotateLeft(lo, 29);
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & setMask;
+    }
+}
@@ -0,0 +1,64 @@
+package org.secverse.secVersEssentialsXMySQLConnector.helper;
+
+import java.sql.SQLException;
+
+/**
+ * Version-guarded writes of one domain of a player, chained through the versions the player's
+ * PlayerSession has seen (see DBCommands for the version columns).
+ *
+ * Writes from this server that race on the same domain retry with the version the other one
+ * left behind. A write that finds the domain at a version nobody here wrote is stale: someone
+ * else changed it since this server last saw it. Stale writes are never forced through; the
+ * caller reads the row again and reconciles the same way a join does.
+ */
+public final class VersionGuard {
+
+    /**
+     * One *IfVersion call with the expected version filled in.
+     */
+    @FunctionalInterface
+    public interface Write {
+        boolean run(long expectedVersion) throws SQLException;
+    }
+
+    private static final int RETRIES = 3;
+
+    private VersionGuard() { }
+
+    /**
+     * Runs write against the session's version of domain. Returns false if it is stale; the
+     * session keeps its version then, so further writes stay stale until it is read again.
+     * While no version is known the write is unconditional.
+     */
+    public static boolean write(PlayerSession session, int domain, Write write) throws SQLException {
+        for (int attempt = 0; attempt < RETRIES; attempt++) {
+            long expected = session.version(domain);
+            if (write.run(expected)) {
+                if (expected >= 0) session.advanced(domain, expected);
+                return true;
+            }
+            // Unchanged here means it moved elsewhere; otherwise another writer of ours got in first
+            if (expected < 0 || session.version(domain) == expected) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Records the domain versions of a profile row read from the DB.
+     */
+    public static void observed(PlayerSession session, DBCommands.ServerProfile sp) {
+        session.observed(PlayerSession.HOMES, sp.homesVersion);
+        session.observed(PlayerSession.GROUP, sp.groupVersion);
+        session.observed(PlayerSession.LAST_LOCATION, sp.locationVersion);
+    }
+
+    /**
+     * Records the domain versions of a player state row read from the DB.
+     */
+    public static void observed(PlayerSession session, DBCommands.UserState s) {
+        session.observed(PlayerSession.INVENTORY, s.inventoryVersion);
+        session.observed(PlayerSession.XP, s.xpVersion);
+        session.observed(PlayerSession.VITALS, s.vitalsVersion);
+        session.observed(PlayerSession.META, s.metaVersion);
+    }
+}
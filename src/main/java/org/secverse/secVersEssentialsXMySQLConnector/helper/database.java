@@ -4,6 +4,7 @@ import org.bukkit.configuration.file.FileConfiguration;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -12,7 +13,7 @@ public class database {
     private final String host, database, user, password;
     private final int port;
     private Connection connection;
-    private final boolean enableSSL, autoCommit;
+    private final boolean enableSSL;
 
     public database(FileConfiguration config) {
         this.host = config.getString("mysql.host", "localhost");
@@ -21,7 +22,6 @@ public class database {
         this.user = config.getString("mysql.user", "root");
         this.password = config.getString("mysql.password", "");
         this.enableSSL = config.getBoolean("mysql.enableSSL", false);
-        this.autoCommit = config.getBoolean("mysql.autoCommit", false);
     }
 
 
@@ -33,7 +33,9 @@ public class database {
                 prefix, host, port, database, enableSSL);
 
         connection = DriverManager.getConnection(url, user, password);
-        connection.setAutoCommit(autoCommit);
+        // Always on: leases, heartbeats and feed reads are single statements that other servers
+        // must see at once; multi-statement work goes through DBCommands.inTransaction
+        connection.setAutoCommit(true);
     }
 
     /**
@@ -47,7 +49,9 @@ public class database {
             CREATE TABLE IF NOT EXISTS essentials_users (
               uuid         CHAR(36)  NOT NULL PRIMARY KEY,
               name         VARCHAR(32) NOT NULL,
-              balance      DOUBLE NOT NULL DEFAULT 0,
+              balance      DECIMAL(20,4) NOT NULL DEFAULT 0,
+              version      BIGINT NOT NULL DEFAULT 0,
+              ledger_id    BIGINT NOT NULL DEFAULT 0,
               last_update  BIGINT NOT NULL,
               INDEX idx_users_last_update (last_update)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
@@ -61,6 +65,9 @@ public class database {
               groupname     VARCHAR(64) NULL,
               last_location TEXT        NULL,
               homes         MEDIUMTEXT  NULL,
+              homes_version    BIGINT   NOT NULL DEFAULT 0,
+              group_version    BIGINT   NOT NULL DEFAULT 0,
+              location_version BIGINT   NOT NULL DEFAULT 0,
               last_update   BIGINT      NOT NULL,
               PRIMARY KEY (uuid, server_name),
               CONSTRAINT fk_profiles_users
@@ -100,6 +107,12 @@ public class database {
           last_death_loc TEXT        NULL,                -- serialized Location
           bed_spawn_loc  TEXT        NULL,                -- serialized Location
 
+          -- Per-domain versions, bumped by every write of the domain's columns, see DBCommands
+          inv_version    BIGINT      NOT NULL DEFAULT 0,
+          xp_version     BIGINT      NOT NULL DEFAULT 0,
+          vitals_version BIGINT      NOT NULL DEFAULT 0,
+          meta_version   BIGINT      NOT NULL DEFAULT 0,
+
           last_update    BIGINT      NOT NULL,
 
           PRIMARY KEY (uuid, server_name),
@@ -121,11 +134,102 @@ public class database {
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
             """;
 
+        // Network-wide registry of shulker UIDs: last known holder per item
+        String ddlItemUids = """
+            CREATE TABLE IF NOT EXISTS essentials_item_uids (
+              uid          CHAR(36)    NOT NULL PRIMARY KEY,
+              holder_uuid  CHAR(36)    NOT NULL,
+              server_name  VARCHAR(64) NOT NULL,
+              last_seen    BIGINT      NOT NULL,
+              INDEX idx_item_uids_holder (holder_uuid),
+              INDEX idx_item_uids_last_seen (last_seen)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        // Server-switch handoff lease: the server holding a player's state; NULL once released
+        String ddlHandoff = """
+            CREATE TABLE IF NOT EXISTS essentials_handoff (
+              uuid         CHAR(36)    NOT NULL PRIMARY KEY,
+              holder       VARCHAR(64) NULL,
+              version      BIGINT      NOT NULL DEFAULT 0,
+              last_update  BIGINT      NOT NULL,
+              INDEX idx_handoff_holder (holder)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        // Which server each player is on (server_name, NULL while offline) and how their last session ended
+        String ddlPresence = """
+            CREATE TABLE IF NOT EXISTS essentials_presence (
+              uuid         CHAR(36)    NOT NULL PRIMARY KEY,
+              name         VARCHAR(16) NOT NULL,
+              server_name  VARCHAR(64) NULL,
+              last_server  VARCHAR(64) NULL,
+              joined_at    BIGINT      NOT NULL,
+              quit_at      BIGINT      NOT NULL DEFAULT 0,
+              quit_state_version   BIGINT NOT NULL DEFAULT -1,
+              quit_profile_version BIGINT NOT NULL DEFAULT -1,
+              heartbeat    BIGINT      NOT NULL,
+              INDEX idx_presence_name (name),
+              INDEX idx_presence_server (server_name)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
+        // Append-only balance deltas; already added to essentials_users.balance, pruned after the retention window
+        String ddlLedger = """
+            CREATE TABLE IF NOT EXISTS essentials_balance_ledger (
+              id           BIGINT         NOT NULL AUTO_INCREMENT PRIMARY KEY,
+              uuid         CHAR(36)       NOT NULL,
+              server_name  VARCHAR(64)    NOT NULL,
+              delta        DECIMAL(20,4)  NOT NULL,
+              cause        VARCHAR(16)    NULL,
+              created_at   BIGINT         NOT NULL,
+              INDEX idx_ledger_uuid (uuid, id),
+              INDEX idx_ledger_created (created_at)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+            """;
+
         try (Statement st = connection.createStatement()) {
             st.executeUpdate(ddlUsers);
             st.executeUpdate(ddlProfiles);
             st.executeUpdate(ddlState);
             st.executeUpdate(ddlServers);
+            st.executeUpdate(ddlItemUids);
+            st.executeUpdate(ddlHandoff);
+            st.executeUpdate(ddlPresence);
+            st.executeUpdate(ddlLedger);
+        }
+
+        // Tables created before row and domain versions and the balance ledger existed
+        // Balances used to be DOUBLE; existing values are rounded to four decimals once
+        modifyColumnIfType("essentials_users", "balance", "DOUBLE", "DECIMAL(20,4) NOT NULL DEFAULT 0");
+        addColumnIfMissing("essentials_users", "version", "BIGINT NOT NULL DEFAULT 0 AFTER balance");
+        addColumnIfMissing("essentials_users", "ledger_id", "BIGINT NOT NULL DEFAULT 0 AFTER version");
+        addColumnIfMissing("essentials_user_profiles", "homes_version", "BIGINT NOT NULL DEFAULT 0 AFTER homes");
+        addColumnIfMissing("essentials_user_profiles", "group_version", "BIGINT NOT NULL DEFAULT 0 AFTER homes_version");
+        addColumnIfMissing("essentials_user_profiles", "location_version", "BIGINT NOT NULL DEFAULT 0 AFTER group_version");
+        addColumnIfMissing("essentials_user_state", "inv_version", "BIGINT NOT NULL DEFAULT 0 AFTER bed_spawn_loc");
+        addColumnIfMissing("essentials_user_state", "xp_version", "BIGINT NOT NULL DEFAULT 0 AFTER inv_version");
+        addColumnIfMissing("essentials_user_state", "vitals_version", "BIGINT NOT NULL DEFAULT 0 AFTER xp_version");
+        addColumnIfMissing("essentials_user_state", "meta_version", "BIGINT NOT NULL DEFAULT 0 AFTER vitals_version");
+        addColumnIfMissing("essentials_presence", "quit_state_version", "BIGINT NOT NULL DEFAULT -1 AFTER quit_at");
+        addColumnIfMissing("essentials_presence", "quit_profile_version", "BIGINT NOT NULL DEFAULT -1 AFTER quit_state_version");
+    }
+
+    private void addColumnIfMissing(String table, String column, String definition) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+            if (rs.next()) return;
+        }
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private void modifyColumnIfType(String table, String column, String fromType, String definition) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column)) {
+            if (!rs.next() || !fromType.equalsIgnoreCase(rs.getString("TYPE_NAME"))) return;
+        }
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("ALTER TABLE " + table + " MODIFY COLUMN " + column + " " + definition);
         }
     }
 
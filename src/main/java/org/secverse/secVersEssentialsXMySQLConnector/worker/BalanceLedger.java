@@ -0,0 +1,408 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import com.earth2me.essentials.Essentials;
+import com.earth2me.essentials.User;
+import net.ess3.api.events.UserBalanceUpdateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Balance ledger: balances change through deltas instead of absolute writes, so servers
+ * changing the same player's balance at once add up instead of overwriting each other.
+ *
+ * Every UserBalanceUpdateEvent on this server becomes a ledger entry (new - old). Entries are
+ * appended in batches, and each batch adds every player's sum to essentials_users.balance in
+ * the same transaction, so the users row stays the current snapshot; entries older than the
+ * retention window are pruned. Other servers' entries for players online here are added to the
+ * local balance: a poll walks the ledger from an in-memory watermark by id, never past an id
+ * that may still commit, and pushed invalidations read just that player's entries.
+ *
+ * Per player, the baseline is the newest entry included in their local balance; it comes from
+ * the users row (ledger_id) imported on join. Reads, flushes and imports are serialised, so an
+ * entry is either in an imported balance or applied after it, never both. Every ledger statement
+ * runs on the shared I/O executor, the only thread using the connection; timers just queue work.
+ */
+public final class BalanceLedger implements Listener {
+
+    private static final int CAUSE_LENGTH = 16;
+
+    private final Plugin plugin;
+    private final Essentials essentials;
+    private final DBCommands db;
+    private final MainThreadApplyQueue applyQueue;
+    private final SyncExecutors executors;
+    private final HandoffCoordinator handoff; // may be null
+    private final String serverName;
+    private final Logger logger;
+
+    private final int flushTicks;
+    private final int pollTicks;
+    private final long settleMs;
+    private final int batchSize;
+    private final long retentionMs;
+    private final int compactMinutes;
+
+    private final ConcurrentLinkedQueue<DBCommands.LedgerEntry> pending = new ConcurrentLinkedQueue<>();
+    // Entries of a failed flush, written first next time; guarded by lock
+    private final List<DBCommands.LedgerEntry> retry = new ArrayList<>();
+    // Newest entry included in each online player's local balance
+    private final ConcurrentHashMap<UUID, Long> baseline = new ConcurrentHashMap<>();
+    // Players whose balance we are setting; their events are our own applies
+    private final Set<UUID> applying = ConcurrentHashMap.newKeySet();
+    private final Object lock = new Object();
+
+    // Everything up to this id has been read; only advanced under lock
+    private volatile long watermark;
+    // While the poll waits on a missing id: when the wait started and the newest id visible
+    // then; guarded by lock
+    private long gapSince = -1;
+    private long gapHead;
+
+    private final List<BukkitRunnable> tasks = new ArrayList<>();
+
+    // Entries written / other servers' entries applied here / entries pruned, since start
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong compacted = new AtomicLong();
+
+    public BalanceLedger(Plugin plugin,
+                         Essentials essentials,
+                         DBCommands db,
+                         MainThreadApplyQueue applyQueue,
+                         SyncExecutors executors,
+                         HandoffCoordinator handoff,
+                         String serverName) {
+        this.plugin = plugin;
+        this.essentials = essentials;
+        this.db = db;
+        this.applyQueue = applyQueue;
+        this.executors = executors;
+        this.handoff = handoff;
+        this.serverName = serverName;
+        this.logger = plugin.getLogger();
+
+        var cfg = plugin.getConfig();
+        this.flushTicks = Math.max(1, cfg.getInt("essx.ledger.flush_ticks", 20));
+        this.pollTicks = Math.max(10, cfg.getInt("essx.ledger.poll_ticks", 20));
+        this.settleMs = Math.max(0L, cfg.getLong("essx.ledger.settle_ms", 5000L));
+        this.batchSize = Math.max(16, cfg.getInt("essx.ledger.batch_size", 500));
+        this.retentionMs = Math.max(1L, cfg.getLong("essx.ledger.retention_hours", 24L)) * 3_600_000L;
+        this.compactMinutes = Math.max(1, cfg.getInt("essx.ledger.compact_interval_minutes", 10));
+    }
+
+    /**
+     * Starts reading the ledger from its current head; older entries are already in the
+     * balances players import on join.
+     */
+    public void start() {
+        io(() -> {
+            synchronized (lock) {
+                try {
+                    watermark = db.getLedgerHead();
+                } catch (SQLException ex) {
+                    logger.warning("[Ledger] reading ledger head failed: " + ex.getMessage());
+                }
+            }
+        });
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+
+        schedule(() -> io(this::flush), flushTicks);
+        schedule(() -> io(this::poll), pollTicks);
+        schedule(() -> io(this::compact), compactMinutes * 1200L);
+    }
+
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        for (BukkitRunnable t : tasks) {
+            try { t.cancel(); } catch (Exception ignored) {}
+        }
+        tasks.clear();
+    }
+
+    /**
+     * Queues a final flush of every pending entry on the shared I/O executor.
+     */
+    public void flushAllForShutdown() {
+        io(this::flush);
+    }
+
+    public long getAppended() { return appended.get(); }
+
+    public long getApplied() { return applied.get(); }
+
+    public long getCompacted() { return compacted.get(); }
+
+    public long getWatermark() { return watermark; }
+
+    public int getPending() { return pending.size(); }
+
+    // ─────────────────────────── Worker hooks ───────────────────────────
+
+    /**
+     * Join import: sets the local balance to the stored one plus this server's unwritten
+     * deltas and takes the row's ledger_id as baseline. A row nobody has written a balance to
+     * yet is seeded from the local balance instead. Called on the I/O executor once the handoff
+     * lease is held.
+     */
+    public void load(Player p) throws SQLException {
+        UUID id = p.getUniqueId();
+        User u = essentials.getUser(p);
+        synchronized (lock) {
+            DBCommands.GlobalUser gu = db.getGlobalUser(id);
+            if (gu == null) return;
+            BigDecimal local = money(u);
+            if (gu.version == 0 && gu.ledgerId == 0 && gu.balance.signum() == 0 && local.signum() != 0) {
+                baseline.put(id, 0L);
+                append(p, local, "SEED");
+                return;
+            }
+            BigDecimal bal = gu.balance.add(pendingFor(id));
+            baseline.put(id, gu.ledgerId);
+            applyQueue.submit("[Ledger] import balance for " + p.getName(), () -> setMoney(u, bal));
+        }
+    }
+
+    /**
+     * Change feed / invalidation path for an online player's users row. force (/syncforce
+     * import) re-imports the stored balance; otherwise the player's new entries are applied.
+     * Called on the I/O executor.
+     */
+    public void remoteUser(Player p, DBCommands.GlobalUser gu, boolean force) {
+        UUID id = p.getUniqueId();
+        try {
+            if (force) {
+                load(p);
+                return;
+            }
+            synchronized (lock) {
+                Long base = baseline.get(id);
+                if (base == null || gu.ledgerId <= base) return;
+                List<DBCommands.LedgerEntry> page;
+                long after = base;
+                do {
+                    page = db.listUserLedgerSince(id, after, batchSize);
+                    if (!page.isEmpty()) after = page.get(page.size() - 1).id;
+                    applyAll(page);
+                } while (page.size() == batchSize);
+            }
+        } catch (SQLException ex) {
+            logger.warning("[Ledger] catch-up failed for " + p.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    // ─────────────────────────── Events ───────────────────────────
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onBalanceChange(UserBalanceUpdateEvent e) {
+        Player p = e.getPlayer();
+        if (p == null || applying.contains(p.getUniqueId())) return;
+        BigDecimal oldBal = e.getOldBalance();
+        BigDecimal newBal = e.getNewBalance();
+        if (oldBal == null || newBal == null) return;
+        BigDecimal delta = newBal.subtract(oldBal);
+        if (delta.signum() == 0) return;
+        append(p, delta, e.getCause() != null ? e.getCause().name() : null);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        baseline.remove(id);
+        // The next server's join import reads the balance only after these deltas are in it
+        Runnable hold = handoff != null ? handoff.hold(id) : null;
+        try {
+            executors.io().execute(() -> {
+                try {
+                    flush();
+                } finally {
+                    if (hold != null) hold.run();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            if (hold != null) hold.run();
+        }
+    }
+
+    // ─────────────────────────── Writes ───────────────────────────
+
+    private void append(Player p, BigDecimal delta, String cause) {
+        DBCommands.LedgerEntry e = new DBCommands.LedgerEntry();
+        e.uuid = p.getUniqueId();
+        e.name = p.getName();
+        e.serverName = serverName;
+        e.delta = delta;
+        e.cause = cause != null && cause.length() > CAUSE_LENGTH ? cause.substring(0, CAUSE_LENGTH) : cause;
+        e.createdAt = System.currentTimeMillis();
+        pending.add(e);
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            List<DBCommands.LedgerEntry> batch = new ArrayList<>(retry);
+            retry.clear();
+            DBCommands.LedgerEntry e;
+            while ((e = pending.poll()) != null) batch.add(e);
+            if (batch.isEmpty()) return;
+            try {
+                db.inTransaction(() -> db.appendBalanceDeltas(batch, System.currentTimeMillis()));
+                appended.addAndGet(batch.size());
+            } catch (SQLException ex) {
+                // Nothing was committed; keep the entries in order for the next flush
+                retry.addAll(batch);
+                logger.warning("[Ledger] appending " + batch.size() + " entries failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void compact() {
+        long olderThan = System.currentTimeMillis() - retentionMs;
+        try {
+            int removed;
+            do {
+                removed = db.compactLedger(olderThan, batchSize);
+                compacted.addAndGet(removed);
+            } while (removed == batchSize);
+        } catch (SQLException ex) {
+            logger.warning("[Ledger] compaction failed: " + ex.getMessage());
+        }
+    }
+
+    // ─────────────────────────── Reads ───────────────────────────
+
+    private void poll() {
+        synchronized (lock) {
+            try {
+                long now = System.currentTimeMillis();
+                List<DBCommands.LedgerEntry> page;
+                boolean more;
+                do {
+                    page = db.listLedgerSince(watermark, batchSize);
+                    List<DBCommands.LedgerEntry> ready = new ArrayList<>(page.size());
+                    long next = watermark + 1;
+                    for (DBCommands.LedgerEntry e : page) {
+                        // A missing id is an insert not committed yet, or rolled back if it stays missing
+                        if (e.id > next && !gapSettled(next, page.get(page.size() - 1).id, now)) break;
+                        ready.add(e);
+                        next = e.id + 1;
+                    }
+                    if (!ready.isEmpty()) watermark = ready.get(ready.size() - 1).id;
+                    applyAll(ready);
+                    more = page.size() == batchSize && ready.size() == page.size();
+                } while (more);
+            } catch (SQLException ex) {
+                logger.warning("[Ledger] poll failed: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Whether the poll may read past the missing id. The wait starts when a gap above the last
+     * tracked head is seen; ids below the head visible then were handed out before it, so they
+     * have been in flight at least as long and share that wait. Call under lock.
+     */
+    private boolean gapSettled(long missing, long head, long now) {
+        if (gapSince < 0 || missing > gapHead) {
+            gapSince = now;
+            gapHead = head;
+        }
+        return now - gapSince >= settleMs;
+    }
+
+    /**
+     * Adds other servers' entries past each online player's baseline to their balance and
+     * moves the baseline. Call under lock.
+     */
+    private void applyAll(List<DBCommands.LedgerEntry> entries) {
+        Map<UUID, BigDecimal> sums = new HashMap<>();
+        for (DBCommands.LedgerEntry e : entries) {
+            Long base = baseline.get(e.uuid);
+            if (base == null || e.id <= base) continue;
+            baseline.put(e.uuid, e.id);
+            // Our own entries are in the local balance already
+            if (serverName.equals(e.serverName)) continue;
+            sums.merge(e.uuid, e.delta, BigDecimal::add);
+            applied.incrementAndGet();
+        }
+        sums.forEach((id, delta) -> {
+            Player p = Bukkit.getPlayer(id);
+            if (p == null || delta.signum() == 0) return;
+            User u = essentials.getUser(p);
+            applyQueue.submit("[Ledger] apply balance delta for " + p.getName(),
+                    () -> setMoney(u, money(u).add(delta)));
+        });
+    }
+
+    // ─────────────────────────── Utils ───────────────────────────
+
+    private BigDecimal pendingFor(UUID id) {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (DBCommands.LedgerEntry e : retry) if (e.uuid.equals(id)) sum = sum.add(e.delta);
+        for (DBCommands.LedgerEntry e : pending) if (e.uuid.equals(id)) sum = sum.add(e.delta);
+        return sum;
+    }
+
+    // No explicit save: setMoney already goes through Essentials' async config writer
+    private void setMoney(User u, BigDecimal amount) {
+        UUID id = u.getUUID();
+        applying.add(id);
+        try {
+            u.setMoney(amount);
+        } catch (Exception ex) {
+            logger.warning("[Ledger] setting balance failed for " + u.getName() + ": " + ex.getMessage());
+        } finally {
+            applying.remove(id);
+        }
+    }
+
+    private static BigDecimal money(User u) {
+        try {
+            BigDecimal m = u.getMoney();
+            return m != null ? m : BigDecimal.ZERO;
+        } catch (Exception e) {
+            return BigDecimal.ZERO;
+        }
+    }
+
+    private void schedule(Runnable r, long period) {
+        BukkitRunnable t = new BukkitRunnable() {
+            @Override
+            public void run() {
+                r.run();
+            }
+        };
+        t.runTaskTimerAsynchronously(plugin, period, period);
+        tasks.add(t);
+    }
+
+    private void io(Runnable r) {
+        try {
+            executors.io().execute(r);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the shutdown flush covers it
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Incremental change feed: picks up rows other servers (or admin tools) wrote while a
+ * player is online, so they do not have to rejoin to see them.
+ *
+ * Each poll walks essentials_users and this server's essentials_user_profiles rows in
+ * (last_update, uuid) order from a cursor, using the last_update indexes, so the cost
+ * follows the number of changed rows rather than the number of online players. Rows of
+ * offline players are skipped with a map lookup. Rows newer than now - settle_ms are left
+ * for the next poll, which gives writers with a slightly late clock or a slow commit time
+ * to land behind the cursor instead of being skipped.
+ *
+ * What a row means for the player is decided by the owning worker, with the same rules as
+ * its join reconciliation; applies go through the main-thread apply queue.
+ *
+ * invalidate() is the push path: InvalidationBus messages refetch one player's rows right
+ * away, and the poll stays as the backstop for lost messages.
+ */
+public final class ChangeFeedWorker {
+
+    private final Plugin plugin;
+    private final DBCommands db;
+    private final HomeDataWorker homes;
+    private final EssentialsXDataWorker essx;
+    private final SyncExecutors executors;
+    private final String serverName;
+    private final Logger logger;
+
+    private final int pollTicks;
+    private final long settleMs;
+    private final int batchSize;
+
+    // Cursors; only touched by the poll task, which never runs twice at once
+    private long usersAfter;
+    private String usersAfterUuid = "";
+    private long profilesAfter;
+    private String profilesAfterUuid = "";
+
+    // Everything up to this instant has been read
+    private volatile long readUpTo;
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private BukkitRunnable pollTask;
+
+    // Rows read / handed to a worker since start
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsDispatched = new AtomicLong();
+    // Refetches triggered by invalidation messages
+    private final AtomicLong pushed = new AtomicLong();
+
+    public ChangeFeedWorker(Plugin plugin,
+                            DBCommands db,
+                            HomeDataWorker homes,
+                            EssentialsXDataWorker essx,
+                            SyncExecutors executors,
+                            String serverName) {
+        this.plugin = plugin;
+        this.db = db;
+        this.homes = homes;
+        this.essx = essx;
+        this.executors = executors;
+        this.serverName = serverName;
+        this.logger = plugin.getLogger();
+
+        var cfg = plugin.getConfig();
+        this.pollTicks = Math.max(10, cfg.getInt("feed.poll_interval_ticks", 40));
+        this.settleMs = Math.max(0L, cfg.getLong("feed.settle_ms", 1000L));
+        this.batchSize = Math.max(16, cfg.getInt("feed.batch_size", 500));
+    }
+
+    /**
+     * Starts polling from now; older changes are the join reconciliation's job.
+     */
+    public void start() {
+        long start = System.currentTimeMillis() - settleMs;
+        usersAfter = start;
+        profilesAfter = start;
+        readUpTo = start;
+
+        pollTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                io(() -> poll());
+            }
+        };
+        pollTask.runTaskTimerAsynchronously(plugin, pollTicks, pollTicks);
+    }
+
+    public void stop() {
+        if (pollTask != null) {
+            try { pollTask.cancel(); } catch (Exception ignored) {}
+        }
+    }
+
+    /**
+     * Whether start() ran, i.e. the feed is enabled.
+     */
+    public boolean isRunning() { return pollTask != null; }
+
+    public long getRowsRead() { return rowsRead.get(); }
+
+    public long getRowsDispatched() { return rowsDispatched.get(); }
+
+    public long getPushed() { return pushed.get(); }
+
+    /**
+     * How far behind the feed is: milliseconds since the last instant it has fully read.
+     */
+    public long getLagMillis() {
+        return Math.max(0, System.currentTimeMillis() - readUpTo);
+    }
+
+    /**
+     * Re-reads one player's stored rows and applies them regardless of local dirty state.
+     * Used by /syncforce import. Runs on the I/O executor.
+     */
+    public void refresh(Player p, Runnable done) {
+        io(() -> {
+            try {
+                UUID id = p.getUniqueId();
+                DBCommands.GlobalUser gu = db.getGlobalUser(id);
+                if (gu != null) essx.applyRemoteUser(p, gu, true);
+                DBCommands.ServerProfile sp = db.getServerProfile(id, serverName);
+                if (sp != null) homes.applyRemoteProfile(p, sp, true);
+                if (done != null) done.run();
+            } catch (Exception ex) {
+                logger.warning("[ChangeFeed] refresh failed for " + p.getName() + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Refetches the rows behind the given PlayerSession domains of an online player.
+     * Domains that are not applied while online (player state) are ignored.
+     */
+    public void invalidate(UUID uuid, int domains, long version) {
+        boolean user = (domains & PlayerSession.BALANCE) != 0;
+        boolean profile = (domains & PlayerSession.HOMES) != 0;
+        if (!user && !profile) return;
+        Player p = Bukkit.getPlayer(uuid);
+        if (p == null) return;
+
+        io(() -> {
+            try {
+                if (user) {
+                    DBCommands.GlobalUser gu = db.getGlobalUser(uuid);
+                    if (gu != null) essx.applyRemoteUser(p, gu, false);
+                }
+                if (profile) {
+                    DBCommands.ServerProfile sp = db.getServerProfile(uuid, serverName);
+                    if (sp != null) homes.applyRemoteProfile(p, sp, false);
+                }
+                pushed.incrementAndGet();
+            } catch (Exception ex) {
+                logger.warning("[ChangeFeed] refetch failed for " + p.getName() + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    // ─────────────────────────── Polling ───────────────────────────
+
+    private void poll() {
+        if (!polling.compareAndSet(false, true)) return;
+        try {
+            long upTo = System.currentTimeMillis() - settleMs;
+            pollUsers(upTo);
+            pollProfiles(upTo);
+            readUpTo = upTo;
+        } catch (Exception ex) {
+            logger.warning("[ChangeFeed] poll failed: " + ex.getMessage());
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    private void pollUsers(long upTo) throws Exception {
+        List<DBCommands.GlobalUser> page;
+        do {
+            page = db.listGlobalUsersChangedSince(usersAfter, usersAfterUuid, upTo, batchSize);
+            for (DBCommands.GlobalUser gu : page) {
+                rowsRead.incrementAndGet();
+                usersAfter = gu.lastUpdate;
+                usersAfterUuid = gu.uuid.toString();
+                Player p = Bukkit.getPlayer(gu.uuid);
+                if (p == null) continue;
+                essx.applyRemoteUser(p, gu, false);
+                rowsDispatched.incrementAndGet();
+            }
+        } while (page.size() == batchSize);
+    }
+
+    private void pollProfiles(long upTo) throws Exception {
+        List<DBCommands.ServerProfile> page;
+        do {
+            page = db.listServerProfilesChangedSince(serverName, profilesAfter, profilesAfterUuid, upTo, batchSize);
+            for (DBCommands.ServerProfile sp : page) {
+                rowsRead.incrementAndGet();
+                profilesAfter = sp.lastUpdate;
+                profilesAfterUuid = sp.uuid.toString();
+                Player p = Bukkit.getPlayer(sp.uuid);
+                if (p == null) continue;
+                homes.applyRemoteProfile(p, sp, false);
+                rowsDispatched.incrementAndGet();
+            }
+        } while (page.size() == batchSize);
+    }
+
+    private void io(Runnable r) {
+        try {
+            executors.io().execute(r);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the shutdown flush covers it
+        }
+    }
+}
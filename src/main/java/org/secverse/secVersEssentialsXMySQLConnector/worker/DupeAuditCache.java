@@ -0,0 +1,170 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * Incremental state for the dupe audit. Main thread only.
+ *
+ * Per player, every slot of the inventory and the ender chest (ender slots follow the
+ * inventory slots) remembers a cheap stamp of its stack and the 64-bit content key
+ * computed for it. On audit only slots whose stamp changed are re-keyed, and the
+ * key -> slot-count table is updated in place, so the cost of an audit is one stamp per
+ * slot plus one key per changed slot instead of one key per slot.
+ *
+ * The stamp is the stack's hashCode (type, amount, durability, meta) which is far cheaper
+ * than serializing it. A stamp collision only means a stale key for that slot until the
+ * stack changes again.
+ */
+final class DupeAuditCache {
+
+    private final ToLongFunction<ItemStack> keyFn;
+    private final Map<UUID, Slots> players = new HashMap<>();
+
+    DupeAuditCache(ToLongFunction<ItemStack> keyFn) {
+        this.keyFn = keyFn;
+    }
+
+    /**
+     * Syncs the player's cached slots with the given contents and returns every group of
+     * two or more slots sharing a content key. Indexes are ascending within a group.
+     */
+    List<int[]> update(UUID uuid, ItemStack[] inventory, ItemStack[] ender) {
+        int size = inventory.length + ender.length;
+        Slots s = players.get(uuid);
+        if (s == null || s.stamps.length != size) {
+            s = new Slots(size);
+            players.put(uuid, s);
+        }
+
+        for (int i = 0; i < inventory.length; i++) s.sync(i, inventory[i]);
+        for (int i = 0; i < ender.length; i++) s.sync(inventory.length + i, ender[i]);
+
+        return s.duplicateGroups();
+    }
+
+    void forget(UUID uuid) {
+        players.remove(uuid);
+    }
+
+    void clear() {
+        players.clear();
+    }
+
+    int size() {
+        return players.size();
+    }
+
+    /**
+     * Slot stamps and keys plus an open-addressing key -> count table. Table entries are
+     * never removed individually; the table is rebuilt from live slots when it fills up.
+     */
+    private final class Slots {
+        final int[] stamps;
+        final long[] keys;
+        final boolean[] keyed;
+
+        long[] tableKeys;
+        int[] tableCounts;
+        boolean[] tableUsed;
+        int tableUsedCount;
+
+        // Number of table entries with count > 1
+        int duplicateKeys;
+
+        Slots(int size) {
+            this.stamps = new int[size];
+            this.keys = new long[size];
+            this.keyed = new boolean[size];
+            allocTable(Integer.highestOneBit(Math.max(8, size)) << 2);
+        }
+
+        void sync(int slot, ItemStack it) {
+            boolean empty = it == null || it.getType().isAir();
+            int stamp = empty ? 0 : it.hashCode();
+            if (empty ? !keyed[slot] : keyed[slot] && stamp == stamps[slot]) return;
+
+            if (keyed[slot]) {
+                adjust(keys[slot], -1);
+                keyed[slot] = false;
+            }
+            stamps[slot] = stamp;
+            if (!empty) {
+                long key = keyFn.applyAsLong(it);
+                adjust(key, 1);
+                keys[slot] = key;
+                keyed[slot] = true;
+            }
+        }
+
+        List<int[]> duplicateGroups() {
+            if (duplicateKeys == 0) return List.of();
+            List<int[]> out = new ArrayList<>(duplicateKeys);
+            for (int t = 0; t < tableKeys.length; t++) {
+                if (!tableUsed[t] || tableCounts[t] < 2) continue;
+                long key = tableKeys[t];
+                int[] group = new int[tableCounts[t]];
+                int n = 0;
+                for (int i = 0; i < keys.length && n < group.length; i++) {
+                    if (keyed[i] && keys[i] == key) group[n++] = i;
+                }
+                out.add(group);
+            }
+            return out;
+        }
+
+        private void adjust(long key, int delta) {
+            int t = find(key);
+            if (!tableUsed[t]) {
+                if (delta < 0) return;
+                if ((tableUsedCount + 1) * 4 > tableKeys.length * 3) {
+                    rebuild();
+                    t = find(key);
+                }
+                tableUsed[t] = true;
+                tableKeys[t] = key;
+                tableUsedCount++;
+            }
+            int before = tableCounts[t];
+            int after = before + delta;
+            tableCounts[t] = after;
+            if (before < 2 && after >= 2) duplicateKeys++;
+            else if (before >= 2 && after < 2) duplicateKeys--;
+        }
+
+        private int find(long key) {
+            int mask = tableKeys.length - 1;
+            int t = (int) (key ^ (key >>> 32)) & mask;
+            while (tableUsed[t] && tableKeys[t] != key) t = (t + 1) & mask;
+            return t;
+        }
+
+        /**
+         * Drops zero-count entries; grows if live keys still fill more than half the table.
+         */
+        private void rebuild() {
+            int live = 0;
+            for (int c : tableCounts) if (c > 0) live++;
+            int cap = tableKeys.length;
+            if (live * 2 > cap) cap <<= 1;
+            allocTable(cap);
+            for (int i = 0; i < keys.length; i++) {
+                if (keyed[i]) adjust(keys[i], 1);
+            }
+        }
+
+        private void allocTable(int capacity) {
+            tableKeys = new long[capacity];
+            tableCounts = new int[capacity];
+            tableUsed = new boolean[capacity];
+            tableUsedCount = 0;
+            duplicateKeys = 0;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs dupe audits once per tick. Main thread only.
+ *
+ * Event-driven audit requests are coalesced per player: however many clicks or pickups
+ * happen in a tick, the player is audited once on the next tick, with the first reason seen.
+ * The periodic scan does not audit everyone at once; every rescan interval all online players
+ * are queued and the queue is worked off round-robin with whatever remains of the per-tick
+ * budget after event audits (at least one player per tick).
+ */
+final class DupeAuditScheduler {
+
+    interface Auditor {
+        void audit(Player p, String reason);
+    }
+
+    private final Plugin plugin;
+    private final Auditor auditor;
+    private final long budgetNanos;
+    private final long rescanNanos;
+
+    // Requests for the next tick; swapped with 'auditing' at the start of each tick
+    private Map<UUID, String> pending = new LinkedHashMap<>();
+    private Map<UUID, String> auditing = new LinkedHashMap<>();
+    private final ArrayDeque<UUID> scanQueue = new ArrayDeque<>();
+    private long nextScanAt;
+
+    private BukkitRunnable tickTask;
+
+    // Metrics (written on the main thread, read from anywhere)
+    private volatile long auditsRun;
+    private volatile long auditsCoalesced;
+    private volatile long scanPasses;
+    private volatile long busyTicks;
+    private volatile long totalTickNanos;
+    private volatile long maxTickNanos;
+    private volatile long lastTickNanos;
+
+    DupeAuditScheduler(Plugin plugin, Auditor auditor, long scanBudgetMs, int rescanSeconds) {
+        this.plugin = plugin;
+        this.auditor = auditor;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, scanBudgetMs));
+        this.rescanNanos = TimeUnit.SECONDS.toNanos(rescanSeconds);
+    }
+
+    void start() {
+        nextScanAt = System.nanoTime() + rescanNanos;
+        tickTask = new BukkitRunnable() {
+            @Override public void run() { tick(); }
+        };
+        tickTask.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    void stop() {
+        if (tickTask != null) try { tickTask.cancel(); } catch (Exception ignored) {}
+        pending.clear();
+        auditing.clear();
+        scanQueue.clear();
+    }
+
+    /**
+     * Requests an audit of the player on the next tick.
+     */
+    void request(Player p, String reason) {
+        if (pending.putIfAbsent(p.getUniqueId(), reason) != null) auditsCoalesced++;
+    }
+
+    void forget(UUID uuid) {
+        pending.remove(uuid);
+        scanQueue.remove(uuid);
+    }
+
+    private void tick() {
+        if (pending.isEmpty() && scanQueue.isEmpty() && System.nanoTime() < nextScanAt) return;
+
+        long start = System.nanoTime();
+        int audited = 0;
+
+        Map<UUID, String> now = pending;
+        pending = auditing;
+        auditing = now;
+
+        for (Map.Entry<UUID, String> e : now.entrySet()) {
+            Player p = Bukkit.getPlayer(e.getKey());
+            if (p != null && audit(p, e.getValue())) audited++;
+        }
+
+        if (scanQueue.isEmpty() && start >= nextScanAt) {
+            for (Player p : Bukkit.getOnlinePlayers()) scanQueue.add(p.getUniqueId());
+            nextScanAt = start + rescanNanos;
+            scanPasses++;
+        }
+
+        boolean first = true;
+        while (!scanQueue.isEmpty() && (first || System.nanoTime() - start < budgetNanos)) {
+            UUID id = scanQueue.poll();
+            if (now.containsKey(id)) continue;
+            Player p = Bukkit.getPlayer(id);
+            if (p == null) continue;
+            if (audit(p, "periodic-scan")) audited++;
+            first = false;
+        }
+        now.clear();
+
+        if (audited == 0) return;
+        long took = System.nanoTime() - start;
+        auditsRun += audited;
+        busyTicks++;
+        totalTickNanos += took;
+        lastTickNanos = took;
+        if (took > maxTickNanos) maxTickNanos = took;
+    }
+
+    private boolean audit(Player p, String reason) {
+        try {
+            auditor.audit(p, reason);
+            return true;
+        } catch (Exception ex) {
+            plugin.getLogger().warning("[DupeGuard] audit failed for " + p.getName() + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    // ─────────────────────────── Metrics ───────────────────────────
+
+    long getAuditsRun() { return auditsRun; }
+    long getAuditsCoalesced() { return auditsCoalesced; }
+    long getScanPasses() { return scanPasses; }
+    long getBusyTicks() { return busyTicks; }
+    long getLastTickNanos() { return lastTickNanos; }
+    long getMaxTickNanos() { return maxTickNanos; }
+    long getTotalTickNanos() { return totalTickNanos; }
+
+    long getAvgTickNanos() {
+        long ticks = busyTicks;
+        return ticks == 0 ? 0 : totalTickNanos / ticks;
+    }
+}
@@ -16,11 +16,19 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.LocationCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSessions;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncEvents;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.VersionGuard;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.util.Objects;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 public final class EssentialsXDataWorker implements Listener {
@@ -28,27 +36,45 @@ public final class EssentialsXDataWorker implements Listener {
     private final Plugin plugin;
     private final Essentials essentials;
     private final DBCommands db;
+    private final PlayerSessions sessions;
+    private final MainThreadApplyQueue applyQueue;
+    private final SyncExecutors executors;
+    private final HandoffCoordinator handoff; // may be null
     private final String serverName;
     private final boolean balanceWriteEnabled;
     private final int flushIntervalSeconds;
+    private final BalanceLedger ledger; // null unless balances go through the ledger
 
     private final Logger logger;
 
-    private final ConcurrentHashMap<UUID, DirtyBits> dirty = new ConcurrentHashMap<>();
     private BukkitRunnable periodicFlush;
 
+    // Periodic flushes written / failed since start
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
     public EssentialsXDataWorker(Plugin plugin,
                                  Essentials essentials,
                                  DBCommands db,
+                                 PlayerSessions sessions,
+                                 MainThreadApplyQueue applyQueue,
+                                 SyncExecutors executors,
+                                 HandoffCoordinator handoff,
                                  String serverName,
                                  boolean balanceWriteEnabled,
-                                 int flushIntervalSeconds) {
+                                 int flushIntervalSeconds,
+                                 BalanceLedger ledger) {
         this.plugin = Objects.requireNonNull(plugin);
         this.essentials = Objects.requireNonNull(essentials);
         this.db = Objects.requireNonNull(db);
+        this.sessions = Objects.requireNonNull(sessions);
+        this.applyQueue = Objects.requireNonNull(applyQueue);
+        this.executors = Objects.requireNonNull(executors);
+        this.handoff = handoff;
         this.serverName = Objects.requireNonNull(serverName);
         this.balanceWriteEnabled = balanceWriteEnabled;
         this.flushIntervalSeconds = Math.max(5, flushIntervalSeconds);
+        this.ledger = balanceWriteEnabled ? ledger : null;
         this.logger = plugin.getLogger();
     }
 
@@ -77,18 +103,23 @@ public final class EssentialsXDataWorker implements Listener {
         if (periodicFlush != null) {
             try { periodicFlush.cancel(); } catch (Exception ignored) {}
         }
-        dirty.clear();
     }
 
+    public long getFlushes() { return flushes.get(); }
+
+    public long getFlushFailures() { return flushFailures.get(); }
+
     // ─────────────────────────── Events ───────────────────────────
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onJoin(PlayerJoinEvent e) {
         Player p = e.getPlayer();
         UUID id = p.getUniqueId();
-        dirty.put(id, new DirtyBits().markAll());
+        PlayerSession session = sessions.get(id);
+        session.mark(PlayerSession.ESSENTIALS_DATA);
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        // Reads wait until the server the player came from has released them
+        Runnable decide = () -> io(() -> {
             long now = System.currentTimeMillis();
             try {
                 db.ensureGlobalUser(id, p.getName(), now);
@@ -96,6 +127,8 @@ public final class EssentialsXDataWorker implements Listener {
 
                 DBCommands.GlobalUser gu = db.getGlobalUser(id);
                 DBCommands.ServerProfile sp = db.getServerProfile(id, serverName);
+                if (gu != null) stored(session, gu);
+                if (sp != null) VersionGuard.observed(session, sp);
 
                 // Local state
                 User u = essentials.getUser(p);
@@ -107,43 +140,73 @@ public final class EssentialsXDataWorker implements Listener {
                         sp != null ? sp.lastLocation : null);
 
                 // Balance handling
-                if (!balanceWriteEnabled && gu != null) {
+                if (ledger != null) {
+                    ledger.load(p);
+                } else if (!balanceWriteEnabled && gu != null) {
                     // Import DB balance into Essentials if this server is not allowed to write
-                    BigDecimal bal = BigDecimal.valueOf(gu.balance);
-                    Bukkit.getScheduler().runTask(plugin, () -> setEssentialsBalanceSafe(u, bal));
+                    applyQueue.submit("[EssentialsXDataWorker] import balance for " + p.getName(),
+                            () -> setEssentialsBalanceSafe(u, gu.balance));
                 }
 
                 // Profile reconciliation
                 if (localProfileEmpty && !dbProfileEmpty) {
                     // Import DB -> Player
-                    Bukkit.getScheduler().runTask(plugin, () -> applyProfileToPlayer(u, sp));
-                    dirty.put(id, new DirtyBits()); // clean
+                    applyQueue.submit("[EssentialsXDataWorker] apply profile for " + p.getName(),
+                            () -> applyProfileToPlayer(u, sp));
+                    session.drain(PlayerSession.ESSENTIALS_DATA); // clean
                 } else if (dbProfileEmpty && !localProfileEmpty) {
                     // Export Player -> DB
-                    exportProfileAsync(p, now);
+                    exportProfileAsync(p, session, now);
                 } else if (!dbProfileEmpty && !localProfileEmpty) {
                     // Both have data; if not equal, DB wins
                     if (!profileEquals(localGroup, localLastLoc, sp.groupName, sp.lastLocation)) {
-                        Bukkit.getScheduler().runTask(plugin, () -> applyProfileToPlayer(u, sp));
-                        dirty.put(id, new DirtyBits());
-                    } else {
-                        dirty.put(id, new DirtyBits());
+                        applyQueue.submit("[EssentialsXDataWorker] apply profile for " + p.getName(),
+                            () -> applyProfileToPlayer(u, sp));
                     }
+                    session.drain(PlayerSession.ESSENTIALS_DATA);
                 } else {
                     // Both empty; keep a minimal export soon to stamp timestamps and name
-                    exportProfileAsync(p, now);
+                    exportProfileAsync(p, session, now);
                 }
             } catch (Exception ex) {
                 logger.warning("[EssentialsXDataWorker] onJoin sync failed for " + p.getName() + ": " + ex.getMessage());
             }
         });
+        if (handoff != null) handoff.whenAcquired(id, decide);
+        else decide.run();
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onQuit(PlayerQuitEvent e) {
         Player p = e.getPlayer();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> flushNow(p));
-        dirty.remove(p.getUniqueId());
+        // Final flush always writes every domain
+        PlayerSession session = sessions.get(p.getUniqueId());
+        session.drain(PlayerSession.ESSENTIALS_DATA);
+        Runnable hold = handoff != null ? handoff.hold(p.getUniqueId()) : null;
+        // Shared I/O executor instead of a Bukkit async task: shutdown drains it before the DB closes
+        executors.io().execute(() -> {
+            try {
+                flushNow(p, session);
+            } finally {
+                if (hold != null) hold.run();
+            }
+        });
+    }
+
+    /**
+     * Queues a final flush for every online player. Writes run on the shared I/O executor.
+     *
+     * @return number of players queued
+     */
+    public int flushAllForShutdown() {
+        int queued = 0;
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            PlayerSession session = sessions.get(p.getUniqueId());
+            session.drain(PlayerSession.ESSENTIALS_DATA);
+            executors.io().execute(() -> flushNow(p, session));
+            queued++;
+        }
+        return queued;
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -163,16 +226,40 @@ public final class EssentialsXDataWorker implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBalanceChange(UserBalanceUpdateEvent e) {
-        if (!balanceWriteEnabled) return;
+        // The ledger records balance changes itself
+        if (!balanceWriteEnabled || ledger != null) return;
         Player p = e.getPlayer();
         if (p == null) return;
-        dirty.compute(p.getUniqueId(), (k, v) -> (v == null ? new DirtyBits() : v).balance(true));
+        sessions.get(p.getUniqueId()).mark(PlayerSession.BALANCE);
+    }
+
+    // ─────────────────────────── Change feed ───────────────────────────
+
+    /**
+     * Applies a global user row that changed while the player is online. Same rule as on join:
+     * only servers that do not write balances import them. A writing server leaves the row to
+     * its next flush, which finds it stale and adopts it. force (/syncforce import) applies it
+     * regardless. With the ledger, the player's new ledger entries are applied instead.
+     * Called on the I/O executor.
+     */
+    public void applyRemoteUser(Player p, DBCommands.GlobalUser gu, boolean force) {
+        if (ledger != null) {
+            ledger.remoteUser(p, gu, force);
+            return;
+        }
+        if (!force && balanceWriteEnabled) return;
+        stored(sessions.get(p.getUniqueId()), gu);
+        User u = essentials.getUser(p);
+        // Equal at the stored precision: our own write coming back
+        if (getEssentialsBalance(u).compareTo(gu.balance) == 0) return;
+        applyQueue.submit("[EssentialsXDataWorker] feed balance for " + p.getName(),
+                () -> setEssentialsBalanceSafe(u, gu.balance));
     }
 
     // ─────────────────────────── Dirty bits ───────────────────────────
 
     private void markLastLocationDirty(Player p) {
-        dirty.compute(p.getUniqueId(), (k, v) -> (v == null ? new DirtyBits() : v).lastLocation(true));
+        sessions.get(p.getUniqueId()).mark(PlayerSession.LAST_LOCATION);
     }
 
     // ─────────────────────────── Flush logic ───────────────────────────
@@ -180,84 +267,158 @@ public final class EssentialsXDataWorker implements Listener {
     private void flushIfDirtyAsync(UUID uuid) {
         Player p = Bukkit.getPlayer(uuid);
         if (p == null) return;
-        DirtyBits bits = dirty.get(uuid);
-        if (bits == null || bits.isClean()) return;
+        PlayerSession session = sessions.get(uuid);
+        if (!session.isDirty(PlayerSession.ESSENTIALS_DATA)) return;
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        io(() -> {
+            int bits = session.drain(PlayerSession.ESSENTIALS_DATA);
+            if (bits == 0) return;
             try {
-                flushBits(p, bits);
+                flushBits(p, session, bits);
+                flushes.incrementAndGet();
             } catch (Exception ex) {
+                flushFailures.incrementAndGet();
+                // Re-mark so the next cycle retries
+                session.mark(bits);
                 logger.warning("[EssentialsXDataWorker] flush failed for " + p.getName() + ": " + ex.getMessage());
             }
         });
     }
 
-    private void flushNow(Player p) {
-        DirtyBits bits = dirty.get(p.getUniqueId());
-        if (bits == null) bits = new DirtyBits().markAll();
+    private void flushNow(Player p, PlayerSession session) {
         try {
-            flushBits(p, bits);
+            flushBits(p, session, PlayerSession.ESSENTIALS_DATA);
         } catch (Exception ex) {
             logger.warning("[EssentialsXDataWorker] final flush failed for " + p.getName() + ": " + ex.getMessage());
         }
     }
 
-    private void flushBits(Player p, DirtyBits bits) throws Exception {
+    private void flushBits(Player p, PlayerSession session, int bits) throws Exception {
+        SyncEvents.Flush ev = new SyncEvents.Flush();
+        ev.begin();
         long now = System.currentTimeMillis();
         UUID id = p.getUniqueId();
         User u = essentials.getUser(p);
+        int rows = 0;
+        long bytes = 0;
 
-        // Name is global; always keep it fresh
-        db.upsertGlobalUserIfNewer(id, p.getName(), getEssentialsBalanceDouble(u), now);
-
-        // Balance if allowed
-        if (balanceWriteEnabled && bits.balance) {
-            db.updateBalanceIfNewer(id, getEssentialsBalanceDouble(u), now);
-        }
+        // Global user row: name always, balance only if it differs from the stored one
+        if (writeGlobalUser(p, u, session, now)) rows++;
 
         // Last location
-        if (bits.lastLocation) {
+        if ((bits & PlayerSession.LAST_LOCATION) != 0) {
             String serialized = LocationCodec.serialize(safeLastLocation(u, p));
-            db.updateLastLocationIfNewer(id, serverName, serialized, now);
+            if (writeProfile(p, u, session, PlayerSession.LAST_LOCATION, v -> db.updateLastLocationIfVersion(id, serverName, serialized, v, now))) rows++;
+            if (serialized != null) bytes += serialized.length();
         }
 
         // Group: poll current primary group and write if changed
-        if (bits.group) {
+        if ((bits & PlayerSession.GROUP) != 0) {
             String grp = safeGroup(u);
-            db.updateGroupIfNewer(id, serverName, grp, now);
+            if (writeProfile(p, u, session, PlayerSession.GROUP, v -> db.updateGroupIfVersion(id, serverName, grp, v, now))) rows++;
+            if (grp != null) bytes += grp.length();
         }
 
-        // Clean flags after attempts
-        dirty.put(id, new DirtyBits());
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.worker = "essx";
+            ev.player = p.getName();
+            ev.rows = rows;
+            ev.bytes = bytes;
+            ev.commit();
+        }
+    }
+
+    /**
+     * Keeps the global user row current. The balance is written only by a server allowed to,
+     * without the ledger, and only when it differs from the one last read or written; otherwise
+     * just the name is refreshed, which does not bump the row version.
+     */
+    private boolean writeGlobalUser(Player p, User u, PlayerSession session, long now) throws SQLException {
+        UUID id = p.getUniqueId();
+        String name = p.getName();
+        BigDecimal balance = getEssentialsBalance(u);
+        if (ledger != null || !balanceWriteEnabled || balance.equals(session.getStoredBalance())) {
+            return db.updateGlobalUserName(id, name, now);
+        }
+        if (!writeUser(p, u, session, v -> db.upsertGlobalUserIfVersion(id, name, balance, v, now))) return false;
+        session.setStoredBalance(balance);
+        return true;
+    }
+
+    /**
+     * Writes the global user row against the session's version. The balance is shared by every
+     * server, so a row changed elsewhere is not overwritten. Its change since the balance this
+     * server last read or wrote is added to the local balance instead, which keeps the local
+     * changes, and the merged balance is written by the next flush.
+     */
+    private boolean writeUser(Player p, User u, PlayerSession session, VersionGuard.Write write) throws SQLException {
+        if (VersionGuard.write(session, PlayerSession.BALANCE, write)) return true;
+        BigDecimal base = session.getStoredBalance();
+        DBCommands.GlobalUser gu = db.getGlobalUser(p.getUniqueId());
+        if (gu == null) return false;
+        stored(session, gu);
+        if (base == null) {
+            // Nothing to merge against: the stored balance wins, as on join
+            logger.warning("[EssentialsXDataWorker] balance of " + p.getName() + " changed elsewhere; local balance "
+                    + getEssentialsBalance(u) + " replaced by stored " + gu.balance);
+            applyQueue.submit("[EssentialsXDataWorker] adopt stored balance for " + p.getName(),
+                    () -> setEssentialsBalanceSafe(u, gu.balance));
+            return false;
+        }
+        BigDecimal remote = gu.balance.subtract(base);
+        // Dirty only once applied, so no flush writes the unmerged balance against the new version
+        applyQueue.submit("[EssentialsXDataWorker] merge stored balance for " + p.getName(), () -> {
+            setEssentialsBalanceSafe(u, getEssentialsBalance(u).add(remote));
+            session.mark(PlayerSession.BALANCE);
+        });
+        return false;
+    }
+
+    /**
+     * Writes part of this server's profile row against the session's version. A row changed
+     * elsewhere is not overwritten; as on join the stored profile wins and is applied, unless
+     * it is empty, in which case the domain is written again on the next flush.
+     */
+    private boolean writeProfile(Player p, User u, PlayerSession session, int domain, VersionGuard.Write write) throws SQLException {
+        if (VersionGuard.write(session, domain, write)) return true;
+        DBCommands.ServerProfile sp = db.getServerProfile(p.getUniqueId(), serverName);
+        if (sp == null) return false;
+        VersionGuard.observed(session, sp);
+        if (isProfileEmpty(sp.groupName, sp.lastLocation)) {
+            session.mark(domain);
+        } else {
+            applyQueue.submit("[EssentialsXDataWorker] apply changed profile for " + p.getName(),
+                    () -> applyProfileToPlayer(u, sp));
+        }
+        return false;
     }
 
     // ─────────────────────────── Import / Export helpers ───────────────────────────
 
-    private void exportProfileAsync(Player p, long now) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+    private void exportProfileAsync(Player p, PlayerSession session, long now) {
+        io(() -> {
             try {
                 UUID id = p.getUniqueId();
                 User u = essentials.getUser(p);
 
                 // Global name and optionally balance
-                db.upsertGlobalUserIfNewer(id, p.getName(), getEssentialsBalanceDouble(u), now);
-                if (balanceWriteEnabled) {
-                    db.updateBalanceIfNewer(id, getEssentialsBalanceDouble(u), now);
-                }
+                writeGlobalUser(p, u, session, now);
 
                 // Per-server profile
                 String grp = safeGroup(u);
                 String loc = LocationCodec.serialize(safeLastLocation(u, p));
-                db.updateGroupIfNewer(id, serverName, grp, now);
-                db.updateLastLocationIfNewer(id, serverName, loc, now);
+                writeProfile(p, u, session, PlayerSession.GROUP, v -> db.updateGroupIfVersion(id, serverName, grp, v, now));
+                writeProfile(p, u, session, PlayerSession.LAST_LOCATION, v -> db.updateLastLocationIfVersion(id, serverName, loc, v, now));
 
-                dirty.put(id, new DirtyBits());
+                session.drain(PlayerSession.ESSENTIALS_DATA);
             } catch (Exception ex) {
                 logger.warning("[EssentialsXDataWorker] export profile failed for " + p.getName() + ": " + ex.getMessage());
             }
         });
     }
 
+    // No explicit save: setLastLocation already goes through Essentials' async config writer
     private void applyProfileToPlayer(User u, DBCommands.ServerProfile sp) {
         if (u == null || sp == null) return;
 
@@ -268,8 +429,6 @@ public final class EssentialsXDataWorker implements Listener {
                 u.setLastLocation(loc);
             }
         } catch (Exception ignored) {}
-
-        try { u.save(); } catch (Exception ignored) {}
     }
 
     // ─────────────────────────── Utils ───────────────────────────
@@ -311,36 +470,40 @@ public final class EssentialsXDataWorker implements Listener {
         return p.getLocation();
     }
 
-    private static double getEssentialsBalanceDouble(User u) {
+    /**
+     * Records a global user row read from the DB: its version and balance.
+     */
+    private static void stored(PlayerSession session, DBCommands.GlobalUser gu) {
+        session.observed(PlayerSession.BALANCE, gu.version);
+        session.setStoredBalance(gu.balance);
+    }
+
+    /**
+     * Essentials balance at the stored precision.
+     */
+    private static BigDecimal getEssentialsBalance(User u) {
         try {
-            return u.getMoney().doubleValue();
+            return DBCommands.scaleBalance(u.getMoney());
         } catch (Exception e) {
-            return 0.0;
+            return DBCommands.scaleBalance(null);
         }
     }
 
+    // No explicit save: setMoney already goes through Essentials' async config writer
     private static void setEssentialsBalanceSafe(User u, BigDecimal amount) {
         try {
             if (amount == null) return;
             // Clamp negative
-            if (amount.doubleValue() < 0) amount = BigDecimal.ZERO;
+            if (amount.signum() < 0) amount = BigDecimal.ZERO;
             u.setMoney(amount);
-            u.save();
         } catch (Exception ignored) {}
     }
 
-    // ─────────────────────────── Dirty flags ───────────────────────────
-
-    private static final class DirtyBits {
-        boolean lastLocation;
-        boolean group;
-        boolean balance;
-
-        DirtyBits lastLocation(boolean v) { this.lastLocation = v; return this; }
-        DirtyBits group(boolean v) { this.group = v; return this; }
-        DirtyBits balance(boolean v) { this.balance = v; return this; }
-
-        DirtyBits markAll() { this.lastLocation = this.group = this.balance = true; return this; }
-        boolean isClean() { return !lastLocation && !group && !balance; }
+    private void io(Runnable r) {
+        try {
+            executors.io().execute(r);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the shutdown flush covers it
+        }
     }
 }
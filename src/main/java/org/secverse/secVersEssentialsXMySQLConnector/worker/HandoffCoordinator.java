@@ -0,0 +1,316 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.LatencyHistogram;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Server-switch handoff: a player's state is read on join only after the server they came
+ * from has committed its quit flush.
+ *
+ * Each player has a lease row in essentials_handoff naming the server that holds their
+ * state. On quit the workers take a hold on the player's quit barrier for every final write
+ * they queue; once all holds are returned the lease is released from the I/O executor, so
+ * after anything that executor still had queued. On join the lease is acquired before any
+ * worker reads: a bounded poll every poll_ms, cut short by the lease release arriving over
+ * the InvalidationBus, and taken over after wait_ms for holders that never release.
+ *
+ * Workers gate their join reads with whenAcquired() and their final writes with hold().
+ */
+public final class HandoffCoordinator implements Listener {
+
+    private static final Runnable NO_HOLD = () -> { };
+
+    private final Plugin plugin;
+    private final DBCommands db;
+    private final SyncExecutors executors;
+    private final String serverName;
+    private final Logger logger;
+    private final long waitNanos;
+    private final long pollMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SecVers-Handoff");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ConcurrentHashMap<UUID, Attempt> acquiring = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, QuitBarrier> barriers = new ConcurrentHashMap<>();
+
+    // Join until lease acquired, and quit until lease released; since start
+    private final LatencyHistogram waitLatency = new LatencyHistogram();
+    private final LatencyHistogram releaseLatency = new LatencyHistogram();
+    private final AtomicLong takeovers = new AtomicLong();
+
+    private static final class Attempt {
+        final UUID uuid;
+        final String name;
+        final long startedAt = System.nanoTime();
+        final CompletableFuture<Void> acquired = new CompletableFuture<>();
+        volatile ScheduledFuture<?> next;
+
+        Attempt(UUID uuid, String name) {
+            this.uuid = uuid;
+            this.name = name;
+        }
+    }
+
+    private static final class QuitBarrier {
+        final long quitAt = System.nanoTime();
+        // One extra hold for the seal, returned a tick after quit once every worker had its turn
+        final AtomicInteger holds = new AtomicInteger(1);
+        final CompletableFuture<Void> released = new CompletableFuture<>();
+        // Run on the I/O executor right after the release, before a rejoin can start
+        final List<Runnable> afterFlush = new CopyOnWriteArrayList<>();
+    }
+
+    public HandoffCoordinator(Plugin plugin, DBCommands db, SyncExecutors executors, String serverName) {
+        this.plugin = plugin;
+        this.db = db;
+        this.executors = executors;
+        this.serverName = serverName;
+        this.logger = plugin.getLogger();
+
+        var cfg = plugin.getConfig();
+        this.waitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(100L, cfg.getLong("handoff.wait_ms", 3000L)));
+        this.pollMs = Math.max(10L, cfg.getLong("handoff.poll_ms", 50L));
+    }
+
+    /**
+     * Releases leases left over from a previous run (e.g. a crash) and registers listeners.
+     */
+    public void start() {
+        try {
+            int stale = db.releaseAllLeases(serverName, System.currentTimeMillis());
+            if (stale > 0) logger.info("[Handoff] released " + stale + " leases left from the last run");
+        } catch (SQLException ex) {
+            logger.warning("[Handoff] releasing old leases failed: " + ex.getMessage());
+        }
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+    }
+
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        scheduler.shutdownNow();
+        acquiring.values().forEach(a -> a.acquired.complete(null));
+        acquiring.clear();
+    }
+
+    /**
+     * Releases every lease this server holds. Call after the shutdown flush has been written.
+     */
+    public void releaseAll() {
+        try {
+            db.releaseAllLeases(serverName, System.currentTimeMillis());
+        } catch (SQLException ex) {
+            logger.warning("[Handoff] releasing leases at shutdown failed: " + ex.getMessage());
+        }
+    }
+
+    // ─────────────────────────── Worker hooks ───────────────────────────
+
+    /**
+     * Runs task once this server holds the player's lease (or waiting gave up). Runs it
+     * directly if no acquisition is pending. task may run on any thread.
+     */
+    public void whenAcquired(UUID uuid, Runnable task) {
+        Attempt a = acquiring.get(uuid);
+        if (a == null) {
+            task.run();
+        } else {
+            a.acquired.whenComplete((v, ex) -> task.run());
+        }
+    }
+
+    /**
+     * Takes a hold on the quit barrier of a player who is quitting. The lease is released
+     * once every hold has been returned by running the returned token (any thread, once).
+     */
+    public Runnable hold(UUID uuid) {
+        QuitBarrier b = barriers.get(uuid);
+        if (b == null) return NO_HOLD;
+        b.holds.incrementAndGet();
+        AtomicBoolean returned = new AtomicBoolean();
+        return () -> { if (returned.compareAndSet(false, true)) arrive(uuid, b); };
+    }
+
+    /**
+     * Runs task on the I/O executor once the quitting player's final writes have committed.
+     * Call from a PlayerQuitEvent handler; returns false if no quit is pending for the player.
+     */
+    public boolean afterQuitFlush(UUID uuid, Runnable task) {
+        QuitBarrier b = barriers.get(uuid);
+        if (b == null) return false;
+        b.afterFlush.add(task);
+        return true;
+    }
+
+    /**
+     * Push path: another server released this player's lease.
+     */
+    public void leaseReleased(UUID uuid) {
+        Attempt a = acquiring.get(uuid);
+        if (a == null) return;
+        ScheduledFuture<?> next = a.next;
+        if (next != null && next.cancel(false)) submit(a, 0);
+    }
+
+    // ─────────────────────────── Events ───────────────────────────
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent e) {
+        Player p = e.getPlayer();
+        Attempt a = new Attempt(p.getUniqueId(), p.getName());
+        acquiring.put(a.uuid, a);
+
+        // Rejoining the same server: our own release must land first
+        QuitBarrier local = barriers.get(a.uuid);
+        if (local != null) {
+            local.released.whenComplete((v, ex) -> submit(a, 0));
+        } else {
+            submit(a, 0);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        Attempt a = acquiring.remove(id);
+        if (a != null) a.acquired.complete(null);
+
+        QuitBarrier b = new QuitBarrier();
+        barriers.put(id, b);
+        // Seal next tick, after every worker's quit handler took its holds
+        Bukkit.getScheduler().runTask(plugin, () -> arrive(id, b));
+    }
+
+    // ─────────────────────────── Acquire ───────────────────────────
+
+    private void submit(Attempt a, long delayMs) {
+        try {
+            // The scheduler only times the poll; the lease statements run on the I/O executor
+            a.next = scheduler.schedule(() -> {
+                try {
+                    executors.io().execute(() -> attempt(a));
+                } catch (RejectedExecutionException ex) {
+                    finish(a);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            finish(a);
+        }
+    }
+
+    private void attempt(Attempt a) {
+        if (a.acquired.isDone()) return;
+        try {
+            if (db.tryAcquireLease(a.uuid, serverName, System.currentTimeMillis())) {
+                acquired(a);
+                return;
+            }
+            if (System.nanoTime() - a.startedAt >= waitNanos) {
+                String holder = db.getLeaseHolder(a.uuid);
+                db.forceAcquireLease(a.uuid, serverName, System.currentTimeMillis());
+                takeovers.incrementAndGet();
+                logger.warning("[Handoff] lease of " + a.name + " still held by " + holder + " after "
+                        + TimeUnit.NANOSECONDS.toMillis(waitNanos) + " ms; taking over");
+                acquired(a);
+                return;
+            }
+        } catch (SQLException ex) {
+            // Never keep a join waiting on a broken lease table
+            logger.warning("[Handoff] lease check failed for " + a.name + ": " + ex.getMessage());
+            acquired(a);
+            return;
+        }
+        submit(a, pollMs);
+    }
+
+    private void acquired(Attempt a) {
+        waitLatency.recordNanos(System.nanoTime() - a.startedAt);
+        finish(a);
+    }
+
+    /**
+     * Ends the wait. The entry goes now rather than on quit, which never comes for a join
+     * cancelled before PlayerQuitEvent.
+     */
+    private void finish(Attempt a) {
+        acquiring.remove(a.uuid, a);
+        a.acquired.complete(null);
+    }
+
+    // ─────────────────────────── Release ───────────────────────────
+
+    private void arrive(UUID uuid, QuitBarrier b) {
+        if (b.holds.decrementAndGet() != 0) return;
+        try {
+            executors.io().execute(() -> release(uuid, b));
+        } catch (RejectedExecutionException ex) {
+            // Shutting down; releaseAll() covers it
+            barriers.remove(uuid, b);
+            b.released.complete(null);
+        }
+    }
+
+    private void release(UUID uuid, QuitBarrier b) {
+        try {
+            db.releaseLease(uuid, serverName, System.currentTimeMillis());
+        } catch (SQLException ex) {
+            logger.warning("[Handoff] lease release failed for " + uuid + ": " + ex.getMessage());
+        } finally {
+            releaseLatency.recordNanos(System.nanoTime() - b.quitAt);
+            for (Runnable r : b.afterFlush) {
+                try {
+                    r.run();
+                } catch (RuntimeException ex) {
+                    logger.warning("[Handoff] after-flush task failed for " + uuid + ": " + ex.getMessage());
+                }
+            }
+            barriers.remove(uuid, b);
+            b.released.complete(null);
+        }
+    }
+
+    // ─────────────────────────── Stats ───────────────────────────
+
+    /** Join-to-lease percentile in µs, since start. */
+    public long waitPercentileMicros(double pct) {
+        return waitLatency.percentileMicros(pct);
+    }
+
+    /** Quit-to-release percentile in µs, since start. */
+    public long releasePercentileMicros(double pct) {
+        return releaseLatency.percentileMicros(pct);
+    }
+
+    public long getTakeovers() {
+        return takeovers.get();
+    }
+}
@@ -13,9 +13,18 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.EssentialsMapper;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.HomesCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.LocationCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSessions;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncEvents;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.VersionGuard;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
 
 public final class HomeDataWorker implements Listener {
@@ -23,6 +32,12 @@ public final class HomeDataWorker implements Listener {
     private final Plugin plugin;
     private final Essentials essentials;
     private final DBCommands db;
+    private final PlayerSessions sessions;
+    private final MainThreadApplyQueue applyQueue;
+    private final SyncExecutors executors;
+    private final HandoffCoordinator handoff; // may be null
+    // Skip the join comparison when presence shows the player's last clean quit was here
+    private final boolean skipUnchangedJoins;
     private final String serverName;
     private final Logger logger;
 
@@ -32,24 +47,37 @@ public final class HomeDataWorker implements Listener {
     // Optional debounce after a command to batch multiple changes quickly
     private final int debounceTicks;
 
-    // Player dirty flags
-    private final Map<UUID, Boolean> dirty = new ConcurrentHashMap<>();
+    // Homes set per apply step, keeps large imports within the tick budget
+    private static final int HOMES_PER_STEP = 16;
 
     private BukkitRunnable flushTask;
 
+    // Periodic flushes written / failed since start
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
     public HomeDataWorker(Plugin plugin,
                           Essentials essentials,
                           DBCommands db,
+                          PlayerSessions sessions,
+                          MainThreadApplyQueue applyQueue,
+                          SyncExecutors executors,
+                          HandoffCoordinator handoff,
                           String serverName,
                           int flushIntervalSeconds,
                           int debounceTicks) {
         this.plugin = plugin;
         this.essentials = essentials;
         this.db = db;
+        this.sessions = sessions;
+        this.applyQueue = applyQueue;
+        this.executors = executors;
+        this.handoff = handoff;
         this.serverName = serverName;
         this.flushIntervalSeconds = Math.max(5, flushIntervalSeconds);
         this.debounceTicks = Math.max(1, debounceTicks);
         this.logger = plugin.getLogger();
+        this.skipUnchangedJoins = handoff != null && plugin.getConfig().getBoolean("presence.enabled", true);
     }
 
     /**
@@ -62,9 +90,7 @@ public final class HomeDataWorker implements Listener {
             @Override
             public void run() {
                 for (Player p : Bukkit.getOnlinePlayers()) {
-                    if (dirty.getOrDefault(p.getUniqueId(), false)) {
-                        flushHomesAsync(p);
-                    }
+                    flushHomesAsync(p);
                 }
             }
         };
@@ -79,75 +105,114 @@ public final class HomeDataWorker implements Listener {
         if (flushTask != null) {
             try { flushTask.cancel(); } catch (Exception ignored) {}
         }
-        dirty.clear();
     }
 
+    public long getFlushes() { return flushes.get(); }
+
+    public long getFlushFailures() { return flushFailures.get(); }
+
     // ─────────────────────────── Event hooks ───────────────────────────
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onJoin(PlayerJoinEvent e) {
         Player p = e.getPlayer();
         UUID id = p.getUniqueId();
+        PlayerSession session = sessions.get(id);
 
-        // Decide import or export based on current state vs DB
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        // Decide import or export based on current state vs DB, once the previous server let go
+        Runnable decide = () -> io(() -> {
             long now = System.currentTimeMillis();
             try {
+                Map<String, org.bukkit.Location> localHomes = EssentialsMapper.extractHomes(essentials.getUser(p));
+                boolean localEmpty = localHomes.isEmpty();
+
+                // Back on the server they cleanly left, row untouched since: local homes are what we wrote
+                if (skipUnchangedJoins && !localEmpty) {
+                    DBCommands.ServerProfile unchanged = db.getUnchangedServerProfileVersions(id, serverName);
+                    if (unchanged != null) {
+                        VersionGuard.observed(session, unchanged);
+                        session.drain(PlayerSession.HOMES);
+                        return;
+                    }
+                }
+
                 db.ensureServerProfile(id, serverName, now);
 
                 DBCommands.ServerProfile sp = db.getServerProfile(id, serverName);
+                if (sp != null) VersionGuard.observed(session, sp);
                 String dbHomesJson = sp != null ? sp.homes : null;
                 Map<String, org.bukkit.Location> dbHomes = HomesCodec.deserialize(dbHomesJson);
 
-                Map<String, org.bukkit.Location> localHomes = EssentialsMapper.extractHomes(essentials.getUser(p));
-
-                boolean localEmpty = localHomes.isEmpty();
                 boolean dbEmpty = dbHomes.isEmpty();
 
                 if (localEmpty && !dbEmpty) {
                     // Import DB -> Player
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        try {
-                            applyHomesToPlayer(p, dbHomes);
-                        } catch (Exception ex) {
-                            logger.warning("[HomeDataWorker] apply DB->Player homes failed for " + p.getName() + ": " + ex.getMessage());
-                        }
-                    });
-                    dirty.put(id, false);
+                    queueHomesApply(p, dbHomes, "apply DB->Player homes");
+                    session.drain(PlayerSession.HOMES);
                 } else if (dbEmpty && !localEmpty) {
                     // Export Player -> DB
-                    exportHomesAsync(p, now);
+                    exportHomesAsync(p, session, now);
                 } else if (!dbEmpty && !localEmpty) {
                     // Both have data; if not equal, DB wins
                     if (!homesEqual(dbHomes, localHomes)) {
-                        Bukkit.getScheduler().runTask(plugin, () -> {
-                            try {
-                                applyHomesToPlayer(p, dbHomes);
-                            } catch (Exception ex) {
-                                logger.warning("[HomeDataWorker] reconcile DB->Player homes failed for " + p.getName() + ": " + ex.getMessage());
-                            }
-                        });
-                        dirty.put(id, false);
+                        queueHomesApply(p, dbHomes, "reconcile DB->Player homes");
+                        session.drain(PlayerSession.HOMES);
                     } else {
-                        dirty.put(id, false);
+                        session.drain(PlayerSession.HOMES);
                     }
                 } else {
                     // Both empty, nothing to do
-                    dirty.put(id, false);
+                    session.drain(PlayerSession.HOMES);
                 }
             } catch (Exception ex) {
                 logger.warning("[HomeDataWorker] onJoin decision failed for " + p.getName() + ": " + ex.getMessage());
                 // As a fallback, mark dirty to export whatever exists soon
-                dirty.put(id, true);
+                session.mark(PlayerSession.HOMES);
             }
         });
+        if (handoff != null) handoff.whenAcquired(id, decide);
+        else decide.run();
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onQuit(PlayerQuitEvent e) {
         Player p = e.getPlayer();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> flushHomesAsync(p));
-        dirty.remove(p.getUniqueId());
+        PlayerSession session = sessions.get(p.getUniqueId());
+        if (session.drain(PlayerSession.HOMES) == 0) return;
+        finalFlush(p, session, handoff != null ? handoff.hold(p.getUniqueId()) : null);
+    }
+
+    /**
+     * Queues a final homes flush for every online player with dirty homes.
+     * Writes run on the shared I/O executor, so shutdown waits for them.
+     *
+     * @return number of players queued
+     */
+    public int flushAllForShutdown() {
+        int queued = 0;
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            PlayerSession session = sessions.get(p.getUniqueId());
+            if (session.drain(PlayerSession.HOMES) == 0) continue;
+            finalFlush(p, session, null);
+            queued++;
+        }
+        return queued;
+    }
+
+    /**
+     * @param hold handoff hold returned once the write is done; may be null
+     */
+    private void finalFlush(Player p, PlayerSession session, Runnable hold) {
+        // Shared I/O executor instead of a Bukkit async task: shutdown drains it before the DB closes
+        executors.io().execute(() -> {
+            try {
+                exportHomesAsync(p, session, System.currentTimeMillis());
+            } catch (Exception ex) {
+                logger.warning("[HomeDataWorker] final flush homes failed for " + p.getName() + ": " + ex.getMessage());
+            } finally {
+                if (hold != null) hold.run();
+            }
+        });
     }
     
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -158,14 +223,35 @@ public final class HomeDataWorker implements Listener {
 
         if (lower.startsWith("/sethome") || lower.startsWith("/delhome") || lower.startsWith("/renamehome")) {
             Player p = e.getPlayer();
-            UUID id = p.getUniqueId();
-            dirty.put(id, true);
+            sessions.get(p.getUniqueId()).mark(PlayerSession.HOMES);
 
             // Debounce export a few ticks later to let Essentials finish its own write
             Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, () -> flushHomesAsync(p), debounceTicks);
         }
     }
 
+    // ─────────────────────────── Change feed ───────────────────────────
+
+    /**
+     * Applies a profile row that changed while the player is online. Same rule as on join:
+     * stored homes win, except when they are empty. Unless forced, the row is ignored while
+     * the player has home changes that are not written yet, and the apply is dropped if such
+     * a change arrives before it runs. Called on the I/O executor.
+     */
+    public void applyRemoteProfile(Player p, DBCommands.ServerProfile sp, boolean force) {
+        PlayerSession session = sessions.get(p.getUniqueId());
+        if (!force && session.isDirty(PlayerSession.HOMES)) return;
+        VersionGuard.observed(session, sp);
+
+        Map<String, org.bukkit.Location> dbHomes = HomesCodec.deserialize(sp.homes);
+        if (dbHomes.isEmpty()) return;
+        Map<String, org.bukkit.Location> localHomes = EssentialsMapper.extractHomes(essentials.getUser(p));
+        if (homesEqual(dbHomes, localHomes)) return;
+
+        BooleanSupplier stale = force ? () -> false : () -> session.isDirty(PlayerSession.HOMES);
+        queueHomesApply(p, dbHomes, "feed DB->Player homes", stale);
+    }
+
     // ─────────────────────────── Core logic ───────────────────────────
 
     /**
@@ -173,49 +259,110 @@ public final class HomeDataWorker implements Listener {
      */
     private void flushHomesAsync(Player p) {
         if (p == null || !p.isOnline()) return;
-        if (!dirty.getOrDefault(p.getUniqueId(), false)) return;
+        PlayerSession session = sessions.get(p.getUniqueId());
+        if (!session.isDirty(PlayerSession.HOMES)) return;
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        io(() -> {
+            if (session.drain(PlayerSession.HOMES) == 0) return;
             long now = System.currentTimeMillis();
             try {
-                exportHomesAsync(p, now);
-                dirty.put(p.getUniqueId(), false);
+                exportHomesAsync(p, session, now);
+                flushes.incrementAndGet();
             } catch (Exception ex) {
+                flushFailures.incrementAndGet();
+                session.mark(PlayerSession.HOMES);
                 logger.warning("[HomeDataWorker] flush homes failed for " + p.getName() + ": " + ex.getMessage());
             }
         });
     }
 
     /**
-     * Exports current local homes to DB using only-if-newer guard.
+     * Exports current local homes to DB against the session's homes version. A row changed
+     * elsewhere since it was last read is not overwritten; it is reconciled like on join.
      */
-    private void exportHomesAsync(Player p, long now) throws Exception {
+    private void exportHomesAsync(Player p, PlayerSession session, long now) throws Exception {
+        SyncEvents.Flush ev = new SyncEvents.Flush();
+        ev.begin();
         User u = essentials.getUser(p);
         Map<String, org.bukkit.Location> homes = EssentialsMapper.extractHomes(u);
         String json = HomesCodec.serialize(homes);
-        db.updateHomesIfNewer(p.getUniqueId(), serverName, json, now);
+        UUID id = p.getUniqueId();
+        boolean written = VersionGuard.write(session, PlayerSession.HOMES,
+                v -> db.updateHomesIfVersion(id, serverName, json, v, now));
+        if (!written) reconcileStale(p, session);
+
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.worker = "homes";
+            ev.player = p.getName();
+            ev.rows = written ? 1 : 0;
+            ev.bytes = json != null ? json.length() : 0;
+            ev.commit();
+        }
     }
 
     /**
-     * Applies a homes map to the player, replacing existing homes.
-     * This runs on the main thread only.
+     * Same rule as on join: stored homes win unless they are empty, in which case the local
+     * homes are exported again on the next flush against the version just read.
      */
-    private void applyHomesToPlayer(Player p, Map<String, org.bukkit.Location> homes) {
-        User u = essentials.getUser(p);
+    private void reconcileStale(Player p, PlayerSession session) throws Exception {
+        DBCommands.ServerProfile sp = db.getServerProfile(p.getUniqueId(), serverName);
+        if (sp == null) return;
+        if (HomesCodec.deserialize(sp.homes).isEmpty()) {
+            VersionGuard.observed(session, sp);
+            session.mark(PlayerSession.HOMES);
+        } else {
+            applyRemoteProfile(p, sp, true);
+        }
+    }
+
+    /**
+     * Queues replacing the player's homes with the given map on the main thread.
+     * Only stale homes are deleted and only new or moved homes are set, in chunks of
+     * HOMES_PER_STEP so the apply queue can spread large sets across ticks.
+     * No explicit save: setHome/delHome already go through Essentials' async config writer.
+     */
+    private void queueHomesApply(Player p, Map<String, org.bukkit.Location> homes, String what) {
+        queueHomesApply(p, homes, what, () -> false);
+    }
 
-        // Clear existing homes first
-        List<String> existing = u.getHomes();
-        for (String h : new ArrayList<>(existing)) {
+    /**
+     * As above; steps still pending when stale returns true are skipped.
+     */
+    private void queueHomesApply(Player p, Map<String, org.bukkit.Location> homes, String what, BooleanSupplier stale) {
+        List<Map.Entry<String, org.bukkit.Location>> entries = new ArrayList<>(homes.entrySet());
+        int chunks = (entries.size() + HOMES_PER_STEP - 1) / HOMES_PER_STEP;
+
+        Runnable[] steps = new Runnable[1 + chunks];
+        steps[0] = () -> { if (!stale.getAsBoolean()) removeStaleHomes(p, homes); };
+        for (int c = 0; c < chunks; c++) {
+            List<Map.Entry<String, org.bukkit.Location>> slice =
+                    entries.subList(c * HOMES_PER_STEP, Math.min(entries.size(), (c + 1) * HOMES_PER_STEP));
+            steps[1 + c] = () -> { if (!stale.getAsBoolean()) setHomes(p, slice); };
+        }
+        applyQueue.submit("[HomeDataWorker] " + what + " for " + p.getName(), steps);
+    }
+
+    private void removeStaleHomes(Player p, Map<String, org.bukkit.Location> keep) {
+        if (!p.isOnline()) return;
+        User u = essentials.getUser(p);
+        for (String h : new ArrayList<>(u.getHomes())) {
+            if (keep.containsKey(h)) continue;
             try { u.delHome(h); } catch (Exception ignored) {}
         }
+    }
 
-        // Set new homes
-        for (Map.Entry<String, org.bukkit.Location> e : homes.entrySet()) {
+    private void setHomes(Player p, List<Map.Entry<String, org.bukkit.Location>> homes) {
+        if (!p.isOnline()) return;
+        User u = essentials.getUser(p);
+        for (Map.Entry<String, org.bukkit.Location> e : homes) {
             if (e.getValue() == null) continue;
+            try {
+                org.bukkit.Location cur = u.getHome(e.getKey());
+                if (cur != null && LocationCodec.serialize(cur).equals(LocationCodec.serialize(e.getValue()))) continue;
+            } catch (Exception ignored) {}
             try { u.setHome(e.getKey(), e.getValue()); } catch (Exception ignored) {}
         }
-
-        try { u.save(); } catch (Exception ignored) {}
     }
 
     /**
@@ -228,4 +375,12 @@ public final class HomeDataWorker implements Listener {
         String jb = HomesCodec.serialize(b);
         return Objects.equals(ja, jb);
     }
-}
\ No newline at end of file
+
+    private void io(Runnable r) {
+        try {
+            executors.io().execute(r);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; the shutdown flush covers it
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Tag;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.BloomFilter;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.UidHolderCache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Network-wide registry of shulker UIDs (essentials_item_uids: uid -> holder, server, last seen).
+ *
+ * Fed from the dupe audit with the UIDs found in a player's inventories. Main-thread side:
+ * - Fixed-size LRU/TTL cache of uid -> last holder (UidHolderCache, UUIDs as two longs).
+ *   A UID seen again with the same holder is only rewritten after refreshMs.
+ * - Bloom filter of (uid, holder) pairs already registered, so UIDs that fell out of the LRU
+ *   do not go back to the DB.
+ * - Holder changes on this server are checked right away: if the previous holder is online
+ *   here and still carries the UID, that is a conflict.
+ *
+ * New sightings are written in batches on the I/O executor. Before the upsert the current
+ * rows are read; a row from another server with another holder seen less than
+ * conflictWindowMs ago is a conflict as well (same item on two servers at once).
+ */
+final class ItemUidRegistry {
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final DBCommands db;
+    private final SyncExecutors executors;
+    private final String serverName;
+    private final NamespacedKey uidKey;
+    private final boolean auditLog;
+
+    private final long refreshMs;
+    private final long conflictWindowMs;
+    private final int batchSize;
+
+    private final UidHolderCache cache;
+    private final BloomFilter registered;
+    private List<DBCommands.ItemUidSighting> pending = new ArrayList<>();
+
+    private BukkitRunnable flushTask;
+
+    // Metrics
+    private volatile long sightingsWritten;
+    private volatile long sightingsSkipped;
+    private volatile long conflicts;
+
+    ItemUidRegistry(Plugin plugin,
+                    DBCommands db,
+                    SyncExecutors executors,
+                    String serverName,
+                    NamespacedKey uidKey,
+                    boolean auditLog) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.db = db;
+        this.executors = executors;
+        this.serverName = serverName;
+        this.uidKey = uidKey;
+        this.auditLog = auditLog;
+
+        var cfg = plugin.getConfig();
+        int cacheSize = Math.max(100, cfg.getInt("dupeProtection.uidRegistry.cacheSize", 10_000));
+        long cacheTtlMs = Math.max(1, cfg.getLong("dupeProtection.uidRegistry.cacheTtlSeconds", 3600L)) * 1000L;
+        this.refreshMs = Math.max(1, cfg.getLong("dupeProtection.uidRegistry.refreshSeconds", 600L)) * 1000L;
+        this.conflictWindowMs = Math.max(1, cfg.getLong("dupeProtection.uidRegistry.conflictWindowSeconds", 30L)) * 1000L;
+        this.batchSize = Math.max(1, cfg.getInt("dupeProtection.uidRegistry.batchSize", 200));
+        this.registered = new BloomFilter(cfg.getInt("dupeProtection.uidRegistry.bloomExpected", 200_000), 0.01);
+        this.cache = new UidHolderCache(cacheSize, cacheTtlMs);
+    }
+
+    void start() {
+        flushTask = new BukkitRunnable() {
+            @Override public void run() { flush(); }
+        };
+        flushTask.runTaskTimer(plugin, 20L, 20L);
+    }
+
+    /**
+     * Stops the flush timer and hands the remaining sightings to the I/O executor.
+     */
+    void stop() {
+        if (flushTask != null) try { flushTask.cancel(); } catch (Exception ignored) {}
+        flush();
+        cache.clear();
+        registered.clear();
+    }
+
+    /**
+     * Records the shulker UIDs found in the given contents as held by the player. Main thread only.
+     */
+    void observe(Player holder, ItemStack[]... contents) {
+        UUID holderId = holder.getUniqueId();
+        long now = System.currentTimeMillis();
+        Set<UUID> inThisAudit = null;
+
+        for (ItemStack[] arr : contents) {
+            for (ItemStack it : arr) {
+                UUID uid = uidOf(it);
+                if (uid == null) continue;
+
+                if (inThisAudit == null) inThisAudit = new HashSet<>();
+                if (!inThisAudit.add(uid)) {
+                    conflict(uid, holderId, serverName, holderId, serverName);
+                    continue;
+                }
+                record(uid, holderId, now);
+            }
+        }
+    }
+
+    private void record(UUID uid, UUID holder, long now) {
+        long uHi = uid.getMostSignificantBits(), uLo = uid.getLeastSignificantBits();
+        long hHi = holder.getMostSignificantBits(), hLo = holder.getLeastSignificantBits();
+
+        int slot = cache.find(uHi, uLo, now);
+        boolean sameHolder = slot >= 0 && cache.holderHi(slot) == hHi && cache.holderLo(slot) == hLo;
+        if (sameHolder) {
+            if (now - cache.writtenAt(slot) < refreshMs) {
+                sightingsSkipped++;
+                return;
+            }
+        } else if (slot < 0 && registered.mightContain(pairHi(uid, holder), pairLo(uid, holder))) {
+            // Registered before and evicted or expired from the cache since
+            cache.put(uHi, uLo, hHi, hLo, now, now);
+            sightingsSkipped++;
+            return;
+        } else if (slot >= 0) {
+            UUID prevHolder = new UUID(cache.holderHi(slot), cache.holderLo(slot));
+            Player prev = Bukkit.getPlayer(prevHolder);
+            if (prev != null && carries(prev, uid)) {
+                conflict(uid, holder, serverName, prevHolder, serverName);
+            }
+        }
+
+        if (slot >= 0) cache.update(slot, hHi, hLo, now);
+        else cache.put(uHi, uLo, hHi, hLo, now, now);
+        if (registered.isSaturated()) registered.clear();
+        registered.put(pairHi(uid, holder), pairLo(uid, holder));
+
+        DBCommands.ItemUidSighting s = new DBCommands.ItemUidSighting();
+        s.uid = uid;
+        s.holder = holder;
+        s.serverName = serverName;
+        s.lastSeen = now;
+        pending.add(s);
+        if (pending.size() >= batchSize) flush();
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+        List<DBCommands.ItemUidSighting> batch = pending;
+        pending = new ArrayList<>();
+        try {
+            executors.io().execute(() -> writeBatch(batch));
+        } catch (RejectedExecutionException ex) {
+            logger.warning("[DupeGuard] UID registry batch of " + batch.size() + " dropped: executor stopped");
+        }
+    }
+
+    /**
+     * I/O thread. Reads the current rows, upserts the batch and reports cross-server conflicts.
+     */
+    private void writeBatch(List<DBCommands.ItemUidSighting> batch) {
+        Map<UUID, DBCommands.ItemUidSighting> before;
+        try {
+            List<UUID> uids = new ArrayList<>(batch.size());
+            for (DBCommands.ItemUidSighting s : batch) uids.add(s.uid);
+            before = db.inTransaction(() -> {
+                Map<UUID, DBCommands.ItemUidSighting> rows = db.getItemUids(uids);
+                db.upsertItemUids(batch);
+                return rows;
+            });
+            sightingsWritten += batch.size();
+        } catch (Exception ex) {
+            logger.warning("[DupeGuard] UID registry write failed for " + batch.size() + " sightings: " + ex.getMessage());
+            return;
+        }
+
+        for (DBCommands.ItemUidSighting s : batch) {
+            DBCommands.ItemUidSighting prev = before.get(s.uid);
+            if (prev == null) continue;
+            if (prev.holder.equals(s.holder) || serverName.equals(prev.serverName)) continue;
+            if (s.lastSeen - prev.lastSeen < conflictWindowMs) {
+                conflict(s.uid, s.holder, serverName, prev.holder, prev.serverName);
+            }
+        }
+    }
+
+    private void conflict(UUID uid, UUID holder, String server, UUID otherHolder, String otherServer) {
+        conflicts++;
+        if (!auditLog) return;
+        logger.warning("[DupeGuard] UID conflict uid=" + uid
+                + " holder=" + holder + "@" + server
+                + " other=" + otherHolder + "@" + otherServer);
+    }
+
+    // ─────────────────────────── Item helpers ───────────────────────────
+
+    private UUID uidOf(ItemStack it) {
+        if (it == null || it.getType().isAir() || !Tag.SHULKER_BOXES.isTagged(it.getType())) return null;
+        String raw = it.getPersistentDataContainer().get(uidKey, PersistentDataType.STRING);
+        if (raw == null || raw.isBlank()) return null;
+        try {
+            return UUID.fromString(raw);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private boolean carries(Player p, UUID uid) {
+        for (ItemStack it : p.getInventory().getContents()) if (uid.equals(uidOf(it))) return true;
+        for (ItemStack it : p.getEnderChest().getContents()) if (uid.equals(uidOf(it))) return true;
+        return false;
+    }
+
+    private static long pairHi(UUID uid, UUID holder) {
+        return uid.getMostSignificantBits() ^ Long.rotateLeft(holder.getLeastSignificantBits(), 17);
+    }
+
+    private static long pairLo(UUID uid, UUID holder) {
+        return uid.getLeastSignificantBits() ^ Long.rotateLeft(holder.getMostSignificantBits(), 41);
+    }
+
+    // ─────────────────────────── Metrics ───────────────────────────
+
+    long getSightingsWritten() { return sightingsWritten; }
+    long getSightingsSkipped() { return sightingsSkipped; }
+    long getConflicts() { return conflicts; }
+
+    /**
+     * Fixed heap footprint of the cache and the Bloom filter, in bytes.
+     */
+    long memoryBytes() { return cache.sizeInBytes() + registered.sizeInBytes(); }
+
+    int cachedUids() { return cache.size(); }
+}
@@ -25,16 +25,26 @@ import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DirtyCoalescer;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.ItemStackCodec;
 import org.secverse.secVersEssentialsXMySQLConnector.helper.LocationCodec;
-
-import java.io.*;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.MainThreadApplyQueue;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSession;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PlayerSessions;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PotionEffectsCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SlowOpLog;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncEvents;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.VersionGuard;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.XxHash64;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -49,6 +59,12 @@ import java.util.logging.Logger;
  *    - Shulker boxes only: a persistent UID is embedded in ItemMeta to harden against
  *      classic shulker-duplication. Non-shulker items never receive UIDs.
  *
+ * Threading:
+ * - Player state is copied on the main thread under a per-tick budget, encoded on the
+ *   CPU pool and written on the I/O executor (see SnapshotPipeline).
+ * - Imported state is decoded on the CPU pool and applied in steps through the
+ *   tick-budgeted MainThreadApplyQueue.
+ *
  * Safety:
  * - Per-player single-flight for flushes.
  * - Suppression window after DB->Player import to avoid bounce exports.
@@ -61,8 +77,22 @@ import java.util.logging.Logger;
  *   auditLog: true
  *   suppressMsAfterImport: 1500
  *   rescanSeconds: 60
+ *   scanBudgetMs: 1               # main-thread time per tick for the sharded periodic scan
+ *   uidRegistry:                  # network-wide shulker UID registry (essentials_item_uids)
+ *     enabled: true
+ *     cacheSize: 10000
+ *     cacheTtlSeconds: 3600
+ *     refreshSeconds: 600
+ *     conflictWindowSeconds: 30
+ *     batchSize: 200
+ *     bloomExpected: 200000
  *   embedUidForShulkersOnly: true
  *   cleanupOldUidsOnStart: true
+ * playerdata:
+ *   capture_budget_ms: 2
+ * sync:
+ *   encode_queue: 64
+ *   write_queue: 64
  */
 public final class PlayerDataWorker implements Listener {
 
@@ -73,6 +103,16 @@ public final class PlayerDataWorker implements Listener {
     private final Plugin plugin;
     private final Essentials essentials;
     private final DBCommands db;
+    private final PlayerSessions sessions;
+    private final SyncExecutors executors;
+    private final SnapshotPipeline pipeline;
+    private final MainThreadApplyQueue applyQueue;
+    private final SlowOpLog slowLog;        // may be null
+    private final HandoffCoordinator handoff; // may be null
+    // Skip the join comparison when presence shows the player's last clean quit was here
+    private final boolean skipUnchangedJoins;
+    // Gzip inventory blobs; off until every server reads them
+    private final boolean compressInventories;
     private final String serverName;
     private final Logger logger;
 
@@ -87,7 +127,11 @@ public final class PlayerDataWorker implements Listener {
     private final boolean cleanupOldUidsOnStart;
 
     private BukkitRunnable flushTask;
-    private BukkitRunnable dupeScanTask;
+    private final DupeAuditScheduler auditScheduler;
+
+    // Periodic flushes written / failed since start
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
 
     public enum Action {
         LOG,
@@ -101,23 +145,48 @@ public final class PlayerDataWorker implements Listener {
     public PlayerDataWorker(Plugin plugin,
                             Essentials essentials,
                             DBCommands db,
+                            PlayerSessions sessions,
+                            SyncExecutors executors,
+                            MainThreadApplyQueue applyQueue,
+                            SlowOpLog slowLog,
+                            HandoffCoordinator handoff,
                             String serverName,
                             int flushIntervalSeconds) {
         this.plugin = plugin;
         this.essentials = essentials;
         this.db = db;
+        this.sessions = sessions;
+        this.coalescer = new DirtyCoalescer(sessions);
+        this.auditCache = new DupeAuditCache(this::computeStackKey);
+        this.executors = executors;
+        this.applyQueue = applyQueue;
+        this.slowLog = slowLog;
+        this.handoff = handoff;
         this.serverName = serverName;
         this.flushIntervalSeconds = Math.max(5, flushIntervalSeconds);
         this.logger = plugin.getLogger();
 
         var cfg = plugin.getConfig();
+        this.skipUnchangedJoins = handoff != null && cfg.getBoolean("presence.enabled", true);
+        this.compressInventories = cfg.getBoolean("sync.compress_inventories", false);
         this.dupeEnabled = cfg.getBoolean("dupeProtection.enabled", true);
         this.dupeAction = parseAction(cfg.getString("dupeProtection.action", "LOG"));
         this.dupeAuditLog = cfg.getBoolean("dupeProtection.auditLog", true);
         this.suppressMsAfterImport = cfg.getLong("dupeProtection.suppressMsAfterImport", 1500L);
         this.dupeRescanSeconds = Math.max(10, cfg.getInt("dupeProtection.rescanSeconds", 60));
+        this.auditScheduler = new DupeAuditScheduler(plugin, this::auditPlayerInventories,
+                cfg.getLong("dupeProtection.scanBudgetMs", 1L), dupeRescanSeconds);
         this.onlyShulkerUID = cfg.getBoolean("dupeProtection.embedUidForShulkersOnly", true);
         this.cleanupOldUidsOnStart = cfg.getBoolean("dupeProtection.cleanupOldUidsOnStart", true);
+        this.uidRegistry = dupeEnabled && onlyShulkerUID && cfg.getBoolean("dupeProtection.uidRegistry.enabled", true)
+                ? new ItemUidRegistry(plugin, db, executors, serverName, UID_KEY, dupeAuditLog)
+                : null;
+
+        this.pipeline = new SnapshotPipeline(plugin, executors,
+                cfg.getLong("playerdata.capture_budget_ms", 2L),
+                cfg.getInt("sync.encode_queue", 64),
+                cfg.getInt("sync.write_queue", 64),
+                compressInventories);
     }
 
     private static Action parseAction(String s) {
@@ -130,47 +199,21 @@ public final class PlayerDataWorker implements Listener {
     // Sync state and guards
     // --------------------------------------------------------------------------------------------
 
-    private final Map<UUID, DirtyBits> dirty = new ConcurrentHashMap<>();
-    private final Set<UUID> flushing = ConcurrentHashMap.newKeySet();
-    private final Map<UUID, SyncGuard> guards = new ConcurrentHashMap<>();
-
-    private static final class DirtyBits {
-        boolean xp;
-        boolean vitals;
-        boolean meta;
-        long lastMarkedAt;
-
-        DirtyBits xp(boolean v) { this.xp = v; touch(); return this; }
-        DirtyBits vitals(boolean v) { this.vitals = v; touch(); return this; }
-        DirtyBits meta(boolean v) { this.meta = v; touch(); return this; }
-        DirtyBits markAll() { this.xp = this.vitals = this.meta = true; touch(); return this; }
-        boolean isClean() { return !xp && !vitals && !meta; }
-        void touch() { this.lastMarkedAt = System.currentTimeMillis(); }
-        boolean isRecent(long ms) { return System.currentTimeMillis() - lastMarkedAt < ms; }
-    }
-
-    private static final class SyncGuard {
-        enum Phase { IDLE, IMPORTING, APPLYING }
-        volatile Phase phase = Phase.IDLE;
-        volatile long lastAppliedAt = 0L;
-        boolean suppressExportsNow(long windowMs) {
-            return System.currentTimeMillis() - lastAppliedAt < windowMs;
-        }
-    }
+    // Dirty domains, flush single-flight and the import guard live in the shared PlayerSession,
+    // so they are dropped with the session; event marks go through the coalescer
+    private final DirtyCoalescer coalescer;
+
+    // Per-slot content keys and duplicate groups for the dupe audit, main thread only
+    private final DupeAuditCache auditCache;
 
     // --------------------------------------------------------------------------------------------
     // Dupe tracking
     // --------------------------------------------------------------------------------------------
 
     private final NamespacedKey UID_KEY = new NamespacedKey("secverse", "item_uid");
-    private final Map<String, SeenUid> seenUids = new ConcurrentHashMap<>();
 
-    private static final class SeenUid {
-        volatile UUID lastPlayerHolder;
-        volatile String lastContext;
-        volatile long lastSeenMs;
-        volatile int occurrences;
-    }
+    // Network-wide shulker UID registry; null when dupe protection or shulker UIDs are off
+    private final ItemUidRegistry uidRegistry;
 
     // --------------------------------------------------------------------------------------------
     // Lifecycle
@@ -188,6 +231,9 @@ public final class PlayerDataWorker implements Listener {
             }
         }
 
+        pipeline.start();
+
+        // Runs on the main thread; it only queues capture jobs
         flushTask = new BukkitRunnable() {
             @Override public void run() {
                 for (Player p : Bukkit.getOnlinePlayers()) {
@@ -195,18 +241,11 @@ public final class PlayerDataWorker implements Listener {
                 }
             }
         };
-        flushTask.runTaskTimerAsynchronously(plugin, flushIntervalSeconds * 20L, flushIntervalSeconds * 20L);
+        flushTask.runTaskTimer(plugin, flushIntervalSeconds * 20L, flushIntervalSeconds * 20L);
 
-        if (dupeEnabled && dupeRescanSeconds > 0) {
-            dupeScanTask = new BukkitRunnable() {
-                @Override public void run() {
-                    for (Player p : Bukkit.getOnlinePlayers()) {
-                        auditPlayerInventories(p, "periodic-scan");
-                    }
-                }
-            };
-            dupeScanTask.runTaskTimer(plugin, dupeRescanSeconds * 20L, dupeRescanSeconds * 20L);
-        }
+        // Event audits are coalesced per tick; the periodic scan is sharded across ticks
+        if (dupeEnabled) auditScheduler.start();
+        if (uidRegistry != null) uidRegistry.start();
     }
 
     /**
@@ -215,11 +254,108 @@ public final class PlayerDataWorker implements Listener {
     public void stop() {
         HandlerList.unregisterAll(this);
         if (flushTask != null) try { flushTask.cancel(); } catch (Exception ignored) {}
-        if (dupeScanTask != null) try { dupeScanTask.cancel(); } catch (Exception ignored) {}
-        dirty.clear();
-        flushing.clear();
-        guards.clear();
-        seenUids.clear();
+        auditScheduler.stop();
+        if (uidRegistry != null) uidRegistry.stop();
+        pipeline.stop();
+        logger.info("[PlayerDataWorker] dirty marks recorded=" + coalescer.getRecordedMarks()
+                + " suppressed=" + coalescer.getSuppressedMarks());
+        if (dupeEnabled) {
+            logger.info("[DupeGuard] audits=" + auditScheduler.getAuditsRun()
+                    + " coalesced=" + auditScheduler.getAuditsCoalesced()
+                    + " scanPasses=" + auditScheduler.getScanPasses()
+                    + " avgTickUs=" + auditScheduler.getAvgTickNanos() / 1000
+                    + " maxTickUs=" + auditScheduler.getMaxTickNanos() / 1000);
+        }
+        if (uidRegistry != null) {
+            logger.info("[DupeGuard] uid sightings written=" + uidRegistry.getSightingsWritten()
+                    + " skipped=" + uidRegistry.getSightingsSkipped()
+                    + " conflicts=" + uidRegistry.getConflicts()
+                    + " memoryKb=" + uidRegistry.memoryBytes() / 1024);
+        }
+        coalescer.clear();
+        auditCache.clear();
+    }
+
+    /**
+     * Final flush of every online player at shutdown. Main thread only, call before stop().
+     * Snapshots are captured here, encoded in parallel on the CPU pool and written on the
+     * I/O executor in transactions of at most batchSize rows.
+     * Players still importing are skipped so their pre-import state never reaches the DB, and
+     * rows changed elsewhere since they were read are left for the next join to reconcile.
+     *
+     * @return completes with the number of players written
+     */
+    public CompletableFuture<Integer> flushAllForShutdown(int batchSize) {
+        List<PlayerSnapshot> snaps = new ArrayList<>();
+        List<PlayerSession> snapSessions = new ArrayList<>();
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            PlayerSession session = sessions.get(p.getUniqueId());
+            if (session.getImportPhase() == PlayerSession.ImportPhase.IMPORTING) continue;
+            session.drain(PlayerSession.PLAYER_DATA);
+            snaps.add(PlayerSnapshot.capture(p));
+            snapSessions.add(session);
+        }
+        if (snaps.isEmpty()) return CompletableFuture.completedFuture(0);
+
+        List<CompletableFuture<PlayerSnapshot.Encoded>> encodes = new ArrayList<>(snaps.size());
+        for (PlayerSnapshot snap : snaps) {
+            encodes.add(CompletableFuture.supplyAsync(() -> snap.encode(compressInventories), executors.cpu()));
+        }
+
+        return CompletableFuture.allOf(encodes.toArray(new CompletableFuture[0]))
+                .handle((v, ex) -> {
+                    List<DBCommands.UserState> rows = new ArrayList<>(encodes.size());
+                    for (int i = 0; i < encodes.size(); i++) {
+                        try {
+                            rows.add(toRow(encodes.get(i).join(), snapSessions.get(i)));
+                        } catch (Exception encodeEx) {
+                            logger.warning("[PlayerDataWorker] shutdown encode failed for " + snaps.get(i).name + ": " + encodeEx.getMessage());
+                        }
+                    }
+                    return rows;
+                })
+                .thenApplyAsync(rows -> writeBatches(rows, Math.max(1, batchSize)), executors.io());
+    }
+
+    private int writeBatches(List<DBCommands.UserState> rows, int batchSize) {
+        long now = System.currentTimeMillis();
+        int written = 0;
+        for (int i = 0; i < rows.size(); i += batchSize) {
+            List<DBCommands.UserState> batch = rows.subList(i, Math.min(rows.size(), i + batchSize));
+            try {
+                written += db.inTransaction(() -> db.updateUserStatesIfVersion(batch, now));
+            } catch (Exception ex) {
+                logger.warning("[PlayerDataWorker] shutdown batch of " + batch.size() + " failed: " + ex.getMessage());
+            }
+        }
+        return written;
+    }
+
+    private DBCommands.UserState toRow(PlayerSnapshot.Encoded s, PlayerSession session) {
+        DBCommands.UserState row = new DBCommands.UserState();
+        row.uuid = s.uuid();
+        // Guarded like writeState; a row changed elsewhere is kept and reconciled on the next join
+        row.inventoryVersion = session.version(PlayerSession.INVENTORY);
+        row.xpVersion = session.version(PlayerSession.XP);
+        row.vitalsVersion = session.version(PlayerSession.VITALS);
+        row.metaVersion = session.version(PlayerSession.META);
+        row.serverName = serverName;
+        row.invMain = s.invMain();
+        row.invOffhand = s.invOff();
+        row.invArmor = s.invArmor();
+        row.enderChest = s.ender();
+        row.xpLevel = s.xpLevel();
+        row.xpTotal = s.xpTotal();
+        row.xpProgress = s.xpProgress();
+        row.health = s.health();
+        row.maxHealth = s.maxHealth();
+        row.foodLevel = s.food();
+        row.saturation = s.saturation();
+        row.exhaustion = s.exhaustion();
+        row.gameMode = s.gameMode();
+        row.potionEffects = s.potionEffects();
+        row.bedSpawnLoc = s.bedSpawn();
+        return row;
     }
 
     // --------------------------------------------------------------------------------------------
@@ -230,56 +366,87 @@ public final class PlayerDataWorker implements Listener {
     public void onJoin(PlayerJoinEvent e) {
         Player p = e.getPlayer();
         UUID id = p.getUniqueId();
-        guards.putIfAbsent(id, new SyncGuard());
-        dirty.put(id, new DirtyBits().markAll());
+        PlayerSession session = sessions.get(id);
+        session.mark(PlayerSession.PLAYER_DATA);
 
         if (dupeEnabled && cleanupOldUidsOnStart && onlyShulkerUID) {
             Bukkit.getScheduler().runTask(plugin, () -> stripUidsFromPlayerInventories(p));
         }
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            long now = System.currentTimeMillis();
-            try {
+        // Local state is captured on the main thread; the decision runs on the I/O executor,
+        // once the server the player came from has released them
+        SnapshotPipeline.Job decision = new SnapshotPipeline.Job(id, "onJoin sync decision") {
+            @Override void write(PlayerSnapshot.Encoded local) throws Exception {
+                long now = System.currentTimeMillis();
                 db.ensureGlobalUser(id, p.getName(), now);
+
+                SyncEvents.JoinDecision ev = new SyncEvents.JoinDecision();
+                ev.begin();
+                boolean localEmpty = isLocalFresh(local);
+
+                // Back on the server they cleanly left, row untouched since: local is what we wrote
+                DBCommands.UserState unchanged = skipUnchangedJoins && !localEmpty
+                        ? db.getUnchangedUserStateVersions(id, serverName) : null;
+                if (unchanged != null) {
+                    VersionGuard.observed(session, unchanged);
+                    session.drain(PlayerSession.PLAYER_DATA);
+                    ev.end();
+                    if (ev.shouldCommit()) {
+                        ev.player = local.name();
+                        ev.outcome = "unchanged";
+                        ev.localEmpty = false;
+                        ev.dbUseful = true;
+                        ev.commit();
+                    }
+                    return;
+                }
+
                 db.ensureServerProfile(id, serverName, now);
                 db.ensureUserState(id, serverName, now);
-
                 DBCommands.UserState dbState = db.getUserState(id, serverName);
-                LocalState local = snapshotLocal(p);
+                if (dbState != null) VersionGuard.observed(session, dbState);
 
-                boolean localEmpty = isLocalFresh(local);
                 boolean dbUseful  = hasDbUsefulState(dbState);
+                String outcome;
 
                 if (localEmpty && dbUseful) {
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        try { applyDbStateToPlayer(p, dbState); }
-                        catch (Exception ex) { logger.warning("[PlayerDataWorker] apply DB->Player failed for " + p.getName() + ": " + ex.getMessage()); }
-                    });
-                    dirty.put(id, new DirtyBits());
-                    var g = guards.get(id); if (g != null) g.lastAppliedAt = System.currentTimeMillis();
+                    importDbState(p, dbState, "apply DB->Player");
+                    session.drain(PlayerSession.PLAYER_DATA);
+                    session.markApplied();
+                    outcome = "import";
                 } else if (!dbUseful && hasLocalUsefulState(local)) {
-                    exportPlayerStateAsync(p, now);
+                    writeFullState(session, local, now);
+                    outcome = "export";
                 } else if (dbUseful && hasLocalUsefulState(local)) {
                     if (!dbEqualsLocal(dbState, local)) {
-                        Bukkit.getScheduler().runTask(plugin, () -> {
-                            try { applyDbStateToPlayer(p, dbState); }
-                            catch (Exception ex) { logger.warning("[PlayerDataWorker] reconcile DB->Player failed for " + p.getName() + ": " + ex.getMessage()); }
-                        });
-                        dirty.put(id, new DirtyBits());
-                        var g = guards.get(id); if (g != null) g.lastAppliedAt = System.currentTimeMillis();
+                        importDbState(p, dbState, "reconcile DB->Player");
+                        session.drain(PlayerSession.PLAYER_DATA);
+                        session.markApplied();
+                        outcome = "import";
                     } else {
-                        dirty.put(id, new DirtyBits());
+                        session.drain(PlayerSession.PLAYER_DATA);
+                        outcome = "equal";
                     }
                 } else {
-                    exportPlayerStateAsync(p, now);
+                    writeFullState(session, local, now);
+                    outcome = "export";
+                }
+
+                ev.end();
+                if (ev.shouldCommit()) {
+                    ev.player = local.name();
+                    ev.outcome = outcome;
+                    ev.localEmpty = localEmpty;
+                    ev.dbUseful = dbUseful;
+                    ev.commit();
                 }
-            } catch (Exception ex) {
-                logger.warning("[PlayerDataWorker] onJoin sync decision failed for " + p.getName() + ": " + ex.getMessage());
             }
-        });
+        };
+        if (handoff != null) handoff.whenAcquired(id, () -> pipeline.submit(decision));
+        else pipeline.submit(decision);
 
         if (dupeEnabled) {
-            Bukkit.getScheduler().runTaskLater(plugin, () -> auditPlayerInventories(p, "post-join-scan"), 40L);
+            Bukkit.getScheduler().runTaskLater(plugin, () -> { if (p.isOnline()) auditScheduler.request(p, "post-join-scan"); }, 40L);
         }
     }
 
@@ -287,10 +454,27 @@ public final class PlayerDataWorker implements Listener {
     public void onQuit(PlayerQuitEvent e) {
         Player p = e.getPlayer();
         UUID id = p.getUniqueId();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> flushNow(p));
-        dirty.remove(id);
-        flushing.remove(id);
-        guards.remove(id);
+        // Final flush always writes every domain; capture now, the player is gone next tick
+        // The session is dropped a tick after quit; the write below keeps using this one
+        PlayerSession session = sessions.get(id);
+        session.drain(PlayerSession.PLAYER_DATA);
+        coalescer.forget(p);
+        auditCache.forget(id);
+        auditScheduler.forget(id);
+        // Same rule as the shutdown flush: a half-applied import must never reach the DB,
+        // the row already holds the state being imported
+        if (session.getImportPhase() == PlayerSession.ImportPhase.IMPORTING) return;
+
+        Runnable hold = handoff != null ? handoff.hold(id) : null;
+        pipeline.submitNow(p, new SnapshotPipeline.Job(id, "final flush") {
+            @Override void write(PlayerSnapshot.Encoded state) throws Exception {
+                writeDomains(session, state, PlayerSession.PLAYER_DATA, System.currentTimeMillis());
+            }
+
+            @Override void finished() {
+                if (hold != null) hold.run();
+            }
+        });
     }
 
     // --------------------------------------------------------------------------------------------
@@ -317,30 +501,98 @@ public final class PlayerDataWorker implements Listener {
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onDeath(PlayerDeathEvent e) {
         Player p = e.getEntity();
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+        UUID id = p.getUniqueId();
+        String name = p.getName();
+
+        // Read on the main thread, write on the I/O executor
+        String deathStr = LocationCodec.serialize(p.getLocation());
+        String bedStr = LocationCodec.serialize(p.getBedSpawnLocation());
+        String gameMode = toGameModeString(p.getGameMode());
+        String effects = PotionEffectsCodec.serialize(p.getActivePotionEffects());
+        PlayerSession session = sessions.get(id);
+        executors.io().execute(() -> {
             try {
                 long now = System.currentTimeMillis();
-                String deathStr = LocationCodec.serialize(p.getLocation());
-                String bedStr = LocationCodec.serialize(p.getBedSpawnLocation());
-                db.updateMetadataIfNewer(p.getUniqueId(), serverName,
-                        toGameModeString(p.getGameMode()),
-                        serializePotionEffectsJson(p),
+                boolean written = writeState(session, PlayerSession.META, v -> db.updateMetadataIfVersion(id, serverName,
+                        gameMode,
+                        effects,
                         null,
                         deathStr,
                         bedStr,
-                        now);
+                        v,
+                        now));
+                if (!written) reconcileStale(session, id);
             } catch (Exception ex) {
-                logger.warning("[PlayerDataWorker] onDeath metadata update failed for " + p.getName() + ": " + ex.getMessage());
+                logger.warning("[PlayerDataWorker] onDeath metadata update failed for " + name + ": " + ex.getMessage());
             }
         });
         markAllDirty(p);
     }
 
-    private void markXpDirty(Player p) { dirty.compute(p.getUniqueId(), (k, v) -> debounce((v == null ? new DirtyBits() : v).xp(true))); }
-    private void markVitalsDirty(Player p) { dirty.compute(p.getUniqueId(), (k, v) -> debounce((v == null ? new DirtyBits() : v).vitals(true))); }
-    private void markMetaDirty(Player p) { dirty.compute(p.getUniqueId(), (k, v) -> debounce((v == null ? new DirtyBits() : v).meta(true))); }
-    private void markAllDirty(Player p) { dirty.put(p.getUniqueId(), new DirtyBits().markAll()); }
-    private DirtyBits debounce(DirtyBits b) { return b.isRecent(150) ? b : b; }
+    private void markXpDirty(Player p) { coalescer.mark(p, PlayerSession.XP); }
+    private void markVitalsDirty(Player p) { coalescer.mark(p, PlayerSession.VITALS); }
+    private void markMetaDirty(Player p) { coalescer.mark(p, PlayerSession.META); }
+    private void markAllDirty(Player p) { coalescer.mark(p, PlayerSession.PLAYER_DATA); }
+
+    /**
+     * Number of dirty marks that changed a session bitmask.
+     */
+    public long getRecordedMarks() { return coalescer.getRecordedMarks(); }
+
+    /**
+     * Number of dirty marks skipped because the domain was already dirty.
+     */
+    public long getSuppressedMarks() { return coalescer.getSuppressedMarks(); }
+
+    /**
+     * Dupe audits run since start, including periodic scan audits.
+     */
+    public long getAuditsRun() { return auditScheduler.getAuditsRun(); }
+
+    /**
+     * Audit requests folded into an audit already pending for the same tick.
+     */
+    public long getAuditsCoalesced() { return auditScheduler.getAuditsCoalesced(); }
+
+    /**
+     * Main-thread audit time in the most recent tick that ran audits, in nanoseconds.
+     */
+    public long getAuditLastTickNanos() { return auditScheduler.getLastTickNanos(); }
+
+    public long getAuditAvgTickNanos() { return auditScheduler.getAvgTickNanos(); }
+
+    public long getAuditMaxTickNanos() { return auditScheduler.getMaxTickNanos(); }
+
+    /**
+     * Shulker UIDs seen in two places at once (same or other server). 0 when the registry is off.
+     */
+    public long getUidConflicts() { return uidRegistry != null ? uidRegistry.getConflicts() : 0; }
+
+    /**
+     * Heap held by the UID registry's cache and Bloom filter, in bytes. Fixed at startup.
+     */
+    public long getUidRegistryBytes() { return uidRegistry != null ? uidRegistry.memoryBytes() : 0; }
+
+    public int getUidRegistryCached() { return uidRegistry != null ? uidRegistry.cachedUids() : 0; }
+
+    /**
+     * Main-thread time spent in dupe audits since start, in nanoseconds.
+     */
+    public long getAuditTotalNanos() { return auditScheduler.getTotalTickNanos(); }
+
+    /**
+     * Main-thread time spent capturing snapshots since start, in nanoseconds.
+     */
+    public long getCaptureNanos() { return pipeline.captureNanos(); }
+
+    /**
+     * Snapshots queued for capture.
+     */
+    public int getPipelineBacklog() { return pipeline.backlog(); }
+
+    public long getFlushes() { return flushes.get(); }
+
+    public long getFlushFailures() { return flushFailures.get(); }
 
     // --------------------------------------------------------------------------------------------
     // Periodic flush
@@ -349,77 +601,95 @@ public final class PlayerDataWorker implements Listener {
     private void flushIfDirtyAsync(UUID uuid) {
         Player p = Bukkit.getPlayer(uuid);
         if (p == null) return;
-        DirtyBits bits = dirty.get(uuid);
-        if (bits == null || bits.isClean()) return;
-        if (!flushing.add(uuid)) return;
+        PlayerSession session = sessions.get(uuid);
+        if (!session.isDirty(PlayerSession.PLAYER_DATA)) return;
+        if (!session.tryBeginFlush(PlayerSession.PLAYER_DATA)) return;
+
+        pipeline.submit(new SnapshotPipeline.Job(uuid, "flush") {
+            int bits;
+
+            @Override boolean beforeCapture() {
+                // Drain at capture time so later changes stay dirty for the next cycle
+                bits = session.drain(PlayerSession.PLAYER_DATA);
+                if (bits == 0) return false;
+                return !session.appliedWithin(suppressMsAfterImport);
+            }
 
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
-            try {
-                SyncGuard g = guards.getOrDefault(uuid, new SyncGuard());
-                if (g.suppressExportsNow(suppressMsAfterImport)) {
-                    dirty.put(uuid, new DirtyBits());
-                    return;
-                }
-                flushBits(p, bits);
-            } catch (Exception ex) {
-                logger.warning("[PlayerDataWorker] flush failed for " + p.getName() + ": " + ex.getMessage());
-            } finally {
-                flushing.remove(uuid);
+            @Override void write(PlayerSnapshot.Encoded state) throws Exception {
+                writeDomains(session, state, bits, System.currentTimeMillis());
+                flushes.incrementAndGet();
             }
-        });
-    }
 
-    private void flushNow(Player p) {
-        UUID id = p.getUniqueId();
-        if (!flushing.add(id)) return;
-        try {
-            DirtyBits bits = dirty.get(id);
-            if (bits == null) bits = new DirtyBits().markAll();
-            flushBits(p, bits);
-        } catch (Exception ex) {
-            logger.warning("[PlayerDataWorker] final flush failed for " + p.getName() + ": " + ex.getMessage());
-        } finally {
-            flushing.remove(id);
-        }
-    }
+            @Override void failed(Exception ex) {
+                flushFailures.incrementAndGet();
+                // Re-mark so the next cycle retries
+                session.mark(bits);
+            }
 
-    private void flushBits(Player p, DirtyBits bits) throws Exception {
-        long now = System.currentTimeMillis();
-        UUID id = p.getUniqueId();
+            @Override void finished() {
+                session.endFlush(PlayerSession.PLAYER_DATA);
+            }
+        });
+    }
 
-        if (bits.xp) {
-            db.updateXpIfNewer(id, serverName, p.getLevel(), p.getTotalExperience(), p.getExp(), now);
+    /**
+     * Writes the dirty domains of an encoded snapshot. I/O executor only.
+     * Domains changed elsewhere since this server last read them are not overwritten; the row
+     * is reconciled like on join instead.
+     */
+    private void writeDomains(PlayerSession session, PlayerSnapshot.Encoded s, int bits, long now) throws Exception {
+        UUID id = s.uuid();
+        SyncEvents.Flush ev = new SyncEvents.Flush();
+        ev.begin();
+        int rows = 0;
+        boolean stale = false;
+
+        if ((bits & PlayerSession.XP) != 0) {
+            if (writeState(session, PlayerSession.XP, v -> db.updateXpIfVersion(id, serverName,
+                    s.xpLevel(), s.xpTotal(), s.xpProgress(), v, now))) rows++;
+            else stale = true;
         }
-        if (bits.vitals) {
-            double health = clamp(p.getHealth(), 0, getMaxHealthSafe(p));
-            db.updateVitalsIfNewer(id, serverName,
-                    health,
-                    getMaxHealthSafe(p),
-                    p.getFoodLevel(),
-                    p.getSaturation(),
-                    p.getExhaustion(),
-                    now);
+        if ((bits & PlayerSession.VITALS) != 0) {
+            if (writeState(session, PlayerSession.VITALS, v -> db.updateVitalsIfVersion(id, serverName,
+                    s.health(),
+                    s.maxHealth(),
+                    s.food(),
+                    s.saturation(),
+                    s.exhaustion(),
+                    v, now))) rows++;
+            else stale = true;
         }
-        if (bits.meta) {
-            db.updateMetadataIfNewer(id, serverName,
-                    toGameModeString(p.getGameMode()),
-                    serializePotionEffectsJson(p),
+        if ((bits & PlayerSession.META) != 0) {
+            if (writeState(session, PlayerSession.META, v -> db.updateMetadataIfVersion(id, serverName,
+                    s.gameMode(),
+                    s.potionEffects(),
                     null,
                     null,
-                    LocationCodec.serialize(p.getBedSpawnLocation()),
-                    now);
+                    s.bedSpawn(),
+                    v, now))) rows++;
+            else stale = true;
         }
 
-        if (bits.xp || bits.vitals || bits.meta) {
-            PlayerInventory inv = p.getInventory();
-            byte[] main  = encodeStacks(inv.getStorageContents());
-            byte[] off   = encodeStacks(new ItemStack[]{ inv.getItemInOffHand() });
-            byte[] armor = encodeStacks(inv.getArmorContents());
-            byte[] ender = encodeStacks(p.getEnderChest().getStorageContents());
-            db.updateInventoryIfNewer(id, serverName, main, off, armor, ender, now);
+        if ((bits & PlayerSession.PLAYER_DATA) != 0) {
+            if (writeState(session, PlayerSession.INVENTORY, v -> db.updateInventoryIfVersion(id, serverName,
+                    s.invMain(), s.invOff(), s.invArmor(), s.ender(), v, now))) rows++;
+            else stale = true;
         }
+        if (stale) reconcileStale(session, id);
+
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.worker = "player";
+            ev.player = s.name();
+            ev.rows = rows;
+            ev.bytes = (bits & PlayerSession.PLAYER_DATA) != 0
+                    ? len(s.invMain()) + len(s.invOff()) + len(s.invArmor()) + len(s.ender()) : 0;
+            ev.commit();
+        }
+    }
 
-        dirty.put(id, new DirtyBits());
+    private static int len(byte[] b) {
+        return b != null ? b.length : 0;
     }
 
     // --------------------------------------------------------------------------------------------
@@ -427,111 +697,207 @@ public final class PlayerDataWorker implements Listener {
     // --------------------------------------------------------------------------------------------
 
     /**
-     * Exports the full player state asynchronously.
+     * Writes the full encoded player state. I/O executor only.
+     */
+    private void writeFullState(PlayerSession session, PlayerSnapshot.Encoded s, long now) throws Exception {
+        UUID id = s.uuid();
+        session.drain(PlayerSession.PLAYER_DATA);
+        boolean written = writeState(session, PlayerSession.INVENTORY, v -> db.updateInventoryIfVersion(id, serverName, s.invMain(), s.invOff(), s.invArmor(), s.ender(), v, now));
+        written &= writeState(session, PlayerSession.XP, v -> db.updateXpIfVersion(id, serverName, s.xpLevel(), s.xpTotal(), s.xpProgress(), v, now));
+        written &= writeState(session, PlayerSession.VITALS, v -> db.updateVitalsIfVersion(id, serverName,
+                s.health(), s.maxHealth(),
+                s.food(), s.saturation(), s.exhaustion(), v, now));
+        written &= writeState(session, PlayerSession.META, v -> db.updateMetadataIfVersion(id, serverName,
+                s.gameMode(),
+                s.potionEffects(),
+                null, null,
+                s.bedSpawn(),
+                v, now));
+        if (!written) reconcileStale(session, id);
+    }
+
+    private boolean writeState(PlayerSession session, int domain, VersionGuard.Write write) throws SQLException {
+        return VersionGuard.write(session, domain, write);
+    }
+
+    /**
+     * A write found the row changed elsewhere since this server last read it. Same rule as on
+     * join: stored state wins and is imported, unless it holds nothing useful, in which case the
+     * player's state is written again on the next flush. Offline players only have their
+     * versions refreshed; the stored row is kept. I/O executor only.
      */
-    private void exportPlayerStateAsync(Player p, long now) {
-        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+    private void reconcileStale(PlayerSession session, UUID id) throws SQLException {
+        DBCommands.UserState dbState = db.getUserState(id, serverName);
+        if (dbState == null) return;
+        VersionGuard.observed(session, dbState);
+
+        Player p = Bukkit.getPlayer(id);
+        if (p == null || session.getImportPhase() == PlayerSession.ImportPhase.IMPORTING) return;
+        if (!hasDbUsefulState(dbState)) {
+            session.mark(PlayerSession.PLAYER_DATA);
+            return;
+        }
+        importDbState(p, dbState, "reconcile stale DB->Player");
+        session.drain(PlayerSession.PLAYER_DATA);
+        session.markApplied();
+    }
+
+    // Slot counts used to size decoded arrays off the main thread
+    private static final int STORAGE_SLOTS = 36;
+    private static final int ARMOR_SLOTS = 4;
+    private static final int ENDER_SLOTS = 27;
+
+    private record DecodedState(DBCommands.UserState s,
+                                ItemStack[] main, ItemStack[] armor, ItemStack[] off, ItemStack[] ender) {}
+
+    /**
+     * Decodes a DB snapshot on the CPU pool, then queues its application on the main thread.
+     * Import phase starts immediately so flushes stay suppressed while the apply is pending.
+     */
+    private void importDbState(Player p, DBCommands.UserState s, String what) {
+        if (p == null || s == null) return;
+
+        PlayerSession g = sessions.get(p.getUniqueId());
+        g.setImportPhase(PlayerSession.ImportPhase.IMPORTING);
+
+        executors.cpu().execute(() -> {
+            DecodedState d;
             try {
-                UUID id = p.getUniqueId();
-                PlayerInventory inv = p.getInventory();
-
-                byte[] main  = encodeStacks(inv.getStorageContents());
-                byte[] off   = encodeStacks(new ItemStack[]{ inv.getItemInOffHand() });
-                byte[] armor = encodeStacks(inv.getArmorContents());
-                byte[] ender = encodeStacks(p.getEnderChest().getStorageContents());
-
-                db.updateInventoryIfNewer(id, serverName, main, off, armor, ender, now);
-                db.updateXpIfNewer(id, serverName, p.getLevel(), p.getTotalExperience(), p.getExp(), now);
-
-                double health = clamp(p.getHealth(), 0, getMaxHealthSafe(p));
-                db.updateVitalsIfNewer(id, serverName,
-                        health, getMaxHealthSafe(p),
-                        p.getFoodLevel(), p.getSaturation(), p.getExhaustion(), now);
-
-                db.updateMetadataIfNewer(id, serverName,
-                        toGameModeString(p.getGameMode()),
-                        serializePotionEffectsJson(p),
-                        null, null,
-                        LocationCodec.serialize(p.getBedSpawnLocation()),
-                        now);
-
-                dirty.put(id, new DirtyBits());
+                d = decodeState(s);
             } catch (Exception ex) {
-                logger.warning("[PlayerDataWorker] export Player->DB failed for " + p.getName() + ": " + ex.getMessage());
+                g.setImportPhase(PlayerSession.ImportPhase.IDLE);
+                logger.warning("[PlayerDataWorker] " + what + " decode failed for " + p.getName() + ": " + ex.getMessage());
+                return;
             }
+            ImportApply apply = new ImportApply(p, d, g, what);
+            applyQueue.submit("[PlayerDataWorker] " + what + " for " + p.getName(),
+                    apply::inventory,
+                    apply::enderChest,
+                    apply::stats,
+                    apply::finish);
         });
     }
 
     /**
-     * Applies DB snapshot to a player. Temporarily disables pickup to avoid mid-tick merges.
-     * Starts suppression window to avoid immediate bounce export.
+     * Decodes all inventory blobs. Stacks are private copies, so shulker UIDs can be tagged here too.
      */
-    private void applyDbStateToPlayer(Player p, DBCommands.UserState s) {
-        if (p == null || s == null) return;
+    private DecodedState decodeState(DBCommands.UserState s) {
+        ItemStack[] main  = ItemStackCodec.decode(s.invMain, STORAGE_SLOTS);
+        ItemStack[] armor = ItemStackCodec.decode(s.invArmor, ARMOR_SLOTS);
+        ItemStack[] off   = ItemStackCodec.decode(s.invOffhand, 1);
+        ItemStack[] ender = ItemStackCodec.decode(s.enderChest, ENDER_SLOTS);
+
+        if (dupeEnabled && onlyShulkerUID) {
+            tagUidsShulkerOnly(main);
+            tagUidsShulkerOnly(armor);
+            tagUidsShulkerOnly(off);
+            tagUidsShulkerOnly(ender);
+        }
+        return new DecodedState(s, main, armor, off, ender);
+    }
 
-        UUID id = p.getUniqueId();
-        SyncGuard g = guards.computeIfAbsent(id, k -> new SyncGuard());
-        g.phase = SyncGuard.Phase.IMPORTING;
+    /**
+     * Main-thread steps of one import. Pickup is disabled from the first step until
+     * shortly after the last, and a suppression window starts to avoid a bounce export.
+     */
+    private final class ImportApply {
+        private final Player p;
+        private final DecodedState d;
+        private final PlayerSession g;
+        private final String what;
+        private final SyncEvents.ImportApply ev = new SyncEvents.ImportApply();
+        private boolean prevPickup;
+        private boolean aborted;
+
+        ImportApply(Player p, DecodedState d, PlayerSession g, String what) {
+            this.p = p;
+            this.d = d;
+            this.g = g;
+            this.what = what;
+        }
 
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            boolean prevPickup = p.getCanPickupItems();
-            try {
-                p.setCanPickupItems(false);
-
-                PlayerInventory inv = p.getInventory();
-                ItemStack[] main  = decodeStacks(s.invMain, inv.getStorageContents().length);
-                ItemStack[] armor = decodeStacks(s.invArmor, inv.getArmorContents().length);
-                ItemStack[] off   = decodeStacks(s.invOffhand, 1);
-                ItemStack[] ender = decodeStacks(s.enderChest, p.getEnderChest().getStorageContents().length);
-
-                inv.clear();
-                p.getEnderChest().clear();
-
-                if (dupeEnabled && onlyShulkerUID) {
-                    tagUidsShulkerOnly(main);
-                    tagUidsShulkerOnly(armor);
-                    tagUidsShulkerOnly(off);
-                    tagUidsShulkerOnly(ender);
-                }
+        void inventory() {
+            ev.begin();
+            if (!p.isOnline()) {
+                aborted = true;
+                g.setImportPhase(PlayerSession.ImportPhase.IDLE);
+                commitEvent();
+                return;
+            }
+            prevPickup = p.getCanPickupItems();
+            p.setCanPickupItems(false);
 
-                inv.setStorageContents(main);
-                inv.setArmorContents(armor);
-                inv.setItemInOffHand(off.length > 0 ? off[0] : null);
-                p.getEnderChest().setStorageContents(ender);
-
-                p.setTotalExperience(0);
-                p.setLevel(0);
-                p.setExp(0);
-                p.setLevel(Math.max(0, s.xpLevel));
-                p.setExp(Math.max(0f, Math.min(1f, s.xpProgress)));
-
-                double maxHealth = s.maxHealth > 0 ? s.maxHealth : getMaxHealthSafe(p);
-                var attr = p.getAttribute(Attribute.MAX_HEALTH);
-                if (attr != null) attr.setBaseValue(maxHealth);
-                p.setHealth(clamp(s.health, 0, maxHealth));
-                p.setFoodLevel(s.foodLevel);
-                p.setSaturation(Math.max(0, s.saturation));
-                p.setExhaustion(Math.max(0, s.exhaustion));
-
-                if (s.gameMode != null) {
-                    try { p.setGameMode(GameMode.valueOf(s.gameMode)); } catch (IllegalArgumentException ignored) {}
-                }
-                if (s.bedSpawnLoc != null) {
-                    Location bed = LocationCodec.deserialize(s.bedSpawnLoc);
-                    if (bed != null) p.setBedSpawnLocation(bed, true);
-                }
+            PlayerInventory inv = p.getInventory();
+            inv.clear();
+            inv.setStorageContents(fit(d.main(), inv.getStorageContents().length));
+            inv.setArmorContents(fit(d.armor(), inv.getArmorContents().length));
+            inv.setItemInOffHand(d.off().length > 0 ? d.off()[0] : null);
+        }
 
-                dirty.put(id, new DirtyBits());
-                g.phase = SyncGuard.Phase.APPLYING;
-                g.lastAppliedAt = System.currentTimeMillis();
+        void enderChest() {
+            if (aborted) return;
+            Inventory ec = p.getEnderChest();
+            ec.clear();
+            ec.setStorageContents(fit(d.ender(), ec.getStorageContents().length));
+        }
 
-                if (dupeEnabled) auditPlayerInventories(p, "post-import");
+        void stats() {
+            if (aborted) return;
+            DBCommands.UserState s = d.s();
+
+            p.setTotalExperience(0);
+            p.setLevel(0);
+            p.setExp(0);
+            p.setLevel(Math.max(0, s.xpLevel));
+            p.setExp(Math.max(0f, Math.min(1f, s.xpProgress)));
+
+            double maxHealth = s.maxHealth > 0 ? s.maxHealth : getMaxHealthSafe(p);
+            var attr = p.getAttribute(Attribute.MAX_HEALTH);
+            if (attr != null) attr.setBaseValue(maxHealth);
+            p.setHealth(clamp(s.health, 0, maxHealth));
+            p.setFoodLevel(s.foodLevel);
+            p.setSaturation(Math.max(0, s.saturation));
+            p.setExhaustion(Math.max(0, s.exhaustion));
+
+            if (s.gameMode != null) {
+                try { p.setGameMode(GameMode.valueOf(s.gameMode)); } catch (IllegalArgumentException ignored) {}
+            }
+            if (s.bedSpawnLoc != null) {
+                Location bed = LocationCodec.deserialize(s.bedSpawnLoc);
+                if (bed != null) p.setBedSpawnLocation(bed, true);
+            }
+        }
 
-                Bukkit.getScheduler().runTaskLater(plugin, () -> p.setCanPickupItems(prevPickup), 10L);
+        void finish() {
+            if (aborted) return;
+            commitEvent();
+            try {
+                sessions.get(p.getUniqueId()).drain(PlayerSession.PLAYER_DATA);
+                g.setImportPhase(PlayerSession.ImportPhase.APPLYING);
+                g.markApplied();
+
+                if (dupeEnabled) auditScheduler.request(p, "post-import");
+
+                boolean restore = prevPickup;
+                Bukkit.getScheduler().runTaskLater(plugin, () -> p.setCanPickupItems(restore), 10L);
             } finally {
-                Bukkit.getScheduler().runTaskLater(plugin, () -> g.phase = SyncGuard.Phase.IDLE, 20L);
+                Bukkit.getScheduler().runTaskLater(plugin, () -> g.setImportPhase(PlayerSession.ImportPhase.IDLE), 20L);
             }
-        });
+        }
+
+        private void commitEvent() {
+            ev.end();
+            if (ev.shouldCommit()) {
+                ev.player = p.getName();
+                ev.reason = what;
+                ev.aborted = aborted;
+                ev.commit();
+            }
+        }
+    }
+
+    private static ItemStack[] fit(ItemStack[] arr, int len) {
+        return arr.length == len ? arr : Arrays.copyOf(arr, len);
     }
 
     // --------------------------------------------------------------------------------------------
@@ -598,18 +964,29 @@ public final class PlayerDataWorker implements Listener {
     /**
      * Audits both inventories using hash keys that do not touch ItemMeta.
      * Shulker boxes may additionally carry UIDs but hashing still works for them as well.
+     * Keys and duplicate groups come from the incremental auditCache; only changed slots are re-keyed.
      */
     private void auditPlayerInventories(Player p, String reason) {
         if (!dupeEnabled) return;
-
-        Map<String, List<SlotRef>> keyToSlots = new HashMap<>();
-        collectKeySlots(keyToSlots, p.getInventory());
-        collectKeySlots(keyToSlots, p.getEnderChest());
-
-        for (var e : keyToSlots.entrySet()) {
-            String key = e.getKey();
-            List<SlotRef> slots = e.getValue();
-            if (slots.size() <= 1) continue;
+        SyncEvents.DupeAudit ev = new SyncEvents.DupeAudit();
+        ev.begin();
+        long start = System.nanoTime();
+
+        Inventory inv = p.getInventory();
+        Inventory ec = p.getEnderChest();
+        ItemStack[] invContents = inv.getContents();
+        ItemStack[] ecContents = ec.getContents();
+
+        if (uidRegistry != null) uidRegistry.observe(p, invContents, ecContents);
+
+        List<int[]> groups = auditCache.update(p.getUniqueId(), invContents, ecContents);
+        for (int[] group : groups) {
+            List<SlotRef> slots = new ArrayList<>(group.length);
+            for (int idx : group) {
+                slots.add(idx < invContents.length
+                        ? new SlotRef(inv, idx, invContents[idx])
+                        : new SlotRef(ec, idx - invContents.length, ecContents[idx - invContents.length]));
+            }
 
             int maxStack = slots.get(0).stack.getMaxStackSize();
             int total = slots.stream().mapToInt(sr -> sr.stack.getAmount()).sum();
@@ -653,6 +1030,18 @@ public final class PlayerDataWorker implements Listener {
                     break;
             }
         }
+
+        if (slowLog != null) {
+            slowLog.audit(p.getName(), reason, invContents.length + ecContents.length, System.nanoTime() - start);
+        }
+        ev.end();
+        if (ev.shouldCommit()) {
+            ev.player = p.getName();
+            ev.reason = reason;
+            ev.slots = invContents.length + ecContents.length;
+            ev.duplicateGroups = groups.size();
+            ev.commit();
+        }
     }
 
     private record SlotRef(Inventory inv, int index, ItemStack stack) {}
@@ -668,50 +1057,15 @@ public final class PlayerDataWorker implements Listener {
         return sb.toString();
     }
 
-    private void collectKeySlots(Map<String, List<SlotRef>> map, Inventory inv) {
-        if (inv == null) return;
-        ItemStack[] contents = inv.getContents();
-        if (contents == null) return;
-        for (int i = 0; i < contents.length; i++) {
-            ItemStack it = contents[i];
-            if (it == null || it.getType().isAir()) continue;
-            String key = computeStackKey(it);
-            if (key == null) continue;
-            map.computeIfAbsent(key, k -> new ArrayList<>()).add(new SlotRef(inv, i, it));
-        }
-    }
-
     /**
-     * Computes a stable content key for a stack that ignores amount but includes
-     * material and metadata. No ItemMeta writes are performed.
+     * Computes a stable 64-bit content key for a stack that ignores amount but includes
+     * material and metadata. xxHash64 over Paper's item byte form; no ItemMeta writes are performed.
      */
-    private String computeStackKey(ItemStack it) {
+    private long computeStackKey(ItemStack it) {
         try {
-            ItemStack norm = it.clone();
-            norm.setAmount(1);
-            byte[] blob = serializeStack(norm);
-            byte[] hash = sha256(blob);
-            return Base64.getEncoder().encodeToString(hash);
+            return XxHash64.hash(it.asOne().serializeAsBytes());
         } catch (Exception ex) {
-            return it.getType().name();
-        }
-    }
-
-    private byte[] serializeStack(ItemStack it) throws IOException {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             BukkitObjectOutputStream oos = new BukkitObjectOutputStream(baos)) {
-            oos.writeObject(it);
-            oos.flush();
-            return baos.toByteArray();
-        }
-    }
-
-    private byte[] sha256(byte[] data) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            return md.digest(data);
-        } catch (NoSuchAlgorithmException e) {
-            return Arrays.copyOf(data, Math.min(32, data.length));
+            return XxHash64.hash(it.getType().name().getBytes(StandardCharsets.UTF_8));
         }
     }
 
@@ -732,7 +1086,7 @@ public final class PlayerDataWorker implements Listener {
             if (current != null && isShulkerBox(current)) ensureUidOnItem(current);
         }
 
-        Bukkit.getScheduler().runTask(plugin, () -> auditPlayerInventories(p, "click"));
+        auditScheduler.request(p, "click");
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -742,10 +1096,8 @@ public final class PlayerDataWorker implements Listener {
         ItemStack it = e.getItem();
         if (onlyShulkerUID && isShulkerBox(it)) ensureUidOnItem(it);
 
-        Bukkit.getScheduler().runTask(plugin, () -> {
-            if (e.getSource().getHolder() instanceof Player ps) auditPlayerInventories((Player) e.getSource().getHolder(), "move-src");
-            if (e.getDestination().getHolder() instanceof Player pd) auditPlayerInventories((Player) e.getDestination().getHolder(), "move-dst");
-        });
+        if (e.getSource().getHolder() instanceof Player ps) auditScheduler.request(ps, "move-src");
+        if (e.getDestination().getHolder() instanceof Player pd) auditScheduler.request(pd, "move-dst");
     }
 
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
@@ -765,47 +1117,21 @@ public final class PlayerDataWorker implements Listener {
         ItemStack it = e.getItem().getItemStack();
         if (onlyShulkerUID && isShulkerBox(it)) ensureUidOnItem(it);
 
-        Bukkit.getScheduler().runTask(plugin, () -> auditPlayerInventories(p, "pickup"));
+        auditScheduler.request(p, "pickup");
     }
 
     // --------------------------------------------------------------------------------------------
     // Local snapshot & comparison
     // --------------------------------------------------------------------------------------------
 
-    private record LocalState(byte[] invMain, byte[] invOff, byte[] invArmor, byte[] ender,
-                              int xpLevel, int xpTotal, float xpProgress,
-                              double health, double maxHealth,
-                              int food, float saturation, float exhaustion,
-                              String gameMode, String bedSpawn) {}
-
-    private LocalState snapshotLocal(Player p) {
-        PlayerInventory inv = p.getInventory();
-        return new LocalState(
-                encodeStacks(inv.getStorageContents()),
-                encodeStacks(new ItemStack[]{ inv.getItemInOffHand() }),
-                encodeStacks(inv.getArmorContents()),
-                encodeStacks(p.getEnderChest().getStorageContents()),
-                p.getLevel(),
-                p.getTotalExperience(),
-                p.getExp(),
-                clamp(p.getHealth(), 0, getMaxHealthSafe(p)),
-                getMaxHealthSafe(p),
-                p.getFoodLevel(),
-                p.getSaturation(),
-                p.getExhaustion(),
-                toGameModeString(p.getGameMode()),
-                LocationCodec.serialize(p.getBedSpawnLocation())
-        );
-    }
-
-    private boolean isLocalFresh(LocalState s) {
-        boolean invEmpty = isBlobEmpty(s.invMain) && isBlobEmpty(s.invOff) && isBlobEmpty(s.invArmor) && isBlobEmpty(s.ender);
-        boolean xpEmpty  = s.xpLevel == 0 && s.xpTotal == 0 && s.xpProgress == 0f;
-        boolean vitalsDefault = s.health <= 20.0 && s.maxHealth <= 20.0 && s.food == 20 && s.saturation >= 5.0f;
+    private boolean isLocalFresh(PlayerSnapshot.Encoded s) {
+        boolean invEmpty = isBlobEmpty(s.invMain()) && isBlobEmpty(s.invOff()) && isBlobEmpty(s.invArmor()) && isBlobEmpty(s.ender());
+        boolean xpEmpty  = s.xpLevel() == 0 && s.xpTotal() == 0 && s.xpProgress() == 0f;
+        boolean vitalsDefault = s.health() <= 20.0 && s.maxHealth() <= 20.0 && s.food() == 20 && s.saturation() >= 5.0f;
         return invEmpty && xpEmpty && vitalsDefault;
     }
 
-    private boolean hasLocalUsefulState(LocalState s) { return !isLocalFresh(s); }
+    private boolean hasLocalUsefulState(PlayerSnapshot.Encoded s) { return !isLocalFresh(s); }
 
     private boolean hasDbUsefulState(DBCommands.UserState s) {
         if (s == null) return false;
@@ -815,28 +1141,29 @@ public final class PlayerDataWorker implements Listener {
         return inv || xp || vit;
     }
 
-    private boolean dbEqualsLocal(DBCommands.UserState db, LocalState loc) {
-        if (!Arrays.equals(safe(db.invMain),   safe(loc.invMain)))  return false;
-        if (!Arrays.equals(safe(db.invArmor),  safe(loc.invArmor))) return false;
-        if (!Arrays.equals(safe(db.invOffhand),safe(loc.invOff)))   return false;
-        if (!Arrays.equals(safe(db.enderChest),safe(loc.ender)))    return false;
+    private boolean dbEqualsLocal(DBCommands.UserState db, PlayerSnapshot.Encoded loc) {
+        // By contents: rows written before compression (or by a server without it) are plain
+        if (!ItemStackCodec.sameContents(db.invMain,    loc.invMain()))  return false;
+        if (!ItemStackCodec.sameContents(db.invArmor,   loc.invArmor())) return false;
+        if (!ItemStackCodec.sameContents(db.invOffhand, loc.invOff()))   return false;
+        if (!ItemStackCodec.sameContents(db.enderChest, loc.ender()))    return false;
 
-        if (db.xpLevel != loc.xpLevel) return false;
-        if (db.xpTotal != loc.xpTotal) return false;
-        if (Math.abs(db.xpProgress - loc.xpProgress) > 1e-4) return false;
+        if (db.xpLevel != loc.xpLevel()) return false;
+        if (db.xpTotal != loc.xpTotal()) return false;
+        if (Math.abs(db.xpProgress - loc.xpProgress()) > 1e-4) return false;
 
-        if (Math.abs(db.health - loc.health) > 1e-3) return false;
-        if (Math.abs(db.maxHealth - loc.maxHealth) > 1e-3) return false;
-        if (db.foodLevel != loc.food) return false;
-        if (Math.abs(db.saturation - loc.saturation) > 1e-3) return false;
-        if (Math.abs(db.exhaustion - loc.exhaustion) > 1e-3) return false;
+        if (Math.abs(db.health - loc.health()) > 1e-3) return false;
+        if (Math.abs(db.maxHealth - loc.maxHealth()) > 1e-3) return false;
+        if (db.foodLevel != loc.food()) return false;
+        if (Math.abs(db.saturation - loc.saturation()) > 1e-3) return false;
+        if (Math.abs(db.exhaustion - loc.exhaustion()) > 1e-3) return false;
 
         String gm = db.gameMode != null ? db.gameMode : "";
-        String lgm = loc.gameMode != null ? loc.gameMode : "";
+        String lgm = loc.gameMode() != null ? loc.gameMode() : "";
         if (!gm.equals(lgm)) return false;
 
         String bedDb = db.bedSpawnLoc != null ? db.bedSpawnLoc : "";
-        String bedLo = loc.bedSpawn != null ? loc.bedSpawn : "";
+        String bedLo = loc.bedSpawn() != null ? loc.bedSpawn() : "";
         return bedDb.equals(bedLo);
     }
 
@@ -844,73 +1171,13 @@ public final class PlayerDataWorker implements Listener {
     // Serialization helpers
     // --------------------------------------------------------------------------------------------
 
-    private static byte[] encodeStacks(ItemStack[] items) {
-        if (items == null) return null;
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             BukkitObjectOutputStream oos = new BukkitObjectOutputStream(baos)) {
-            oos.writeInt(items.length);
-            for (ItemStack it : items) {
-                oos.writeObject(it);
-            }
-            oos.flush();
-            return baos.toByteArray();
-        } catch (IOException ex) {
-            return null;
-        }
-    }
-
-    private static ItemStack[] decodeStacks(byte[] blob, int expectedLength) {
-        if (blob == null || blob.length == 0) return new ItemStack[expectedLength];
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(blob);
-             BukkitObjectInputStream ois = new BukkitObjectInputStream(bais)) {
-            int len = ois.readInt();
-            ItemStack[] arr = new ItemStack[len];
-            for (int i = 0; i < len; i++) {
-                try {
-                    Object o = ois.readObject();
-                    arr[i] = (o instanceof ItemStack) ? (ItemStack) o : null;
-                } catch (ClassNotFoundException ignored) {
-                    arr[i] = null;
-                }
-            }
-            if (len == expectedLength) return arr;
-            ItemStack[] out = new ItemStack[expectedLength];
-            System.arraycopy(arr, 0, out, 0, Math.min(len, expectedLength));
-            return out;
-        } catch (IOException ex) {
-            return new ItemStack[expectedLength];
-        }
-    }
-
     private static boolean isBlobEmpty(byte[] b) { return b == null || b.length == 0; }
     private static boolean notEmpty(byte[] b) { return b != null && b.length > 0; }
-    private static byte[] safe(byte[] b) { return b == null ? new byte[0] : b; }
 
     // --------------------------------------------------------------------------------------------
     // Misc
     // --------------------------------------------------------------------------------------------
 
-    private static String serializePotionEffectsJson(Player p) {
-        if (p == null || p.getActivePotionEffects().isEmpty()) return "[]";
-        StringBuilder sb = new StringBuilder(256);
-        sb.append('[');
-        boolean first = true;
-        for (var eff : p.getActivePotionEffects()) {
-            if (!first) sb.append(',');
-            first = false;
-            String key = eff.getType().getKey().toString();
-            sb.append('{')
-                    .append("\"type\":\"").append(key).append("\",")
-                    .append("\"duration\":").append(eff.getDuration()).append(',')
-                    .append("\"amplifier\":").append(eff.getAmplifier()).append(',')
-                    .append("\"ambient\":").append(eff.isAmbient()).append(',')
-                    .append("\"particles\":").append(eff.hasParticles())
-                    .append('}');
-        }
-        sb.append(']');
-        return sb.toString();
-    }
-
     private static String toGameModeString(GameMode gm) { return gm != null ? gm.name() : null; }
 
     private static double getMaxHealthSafe(Player p) {
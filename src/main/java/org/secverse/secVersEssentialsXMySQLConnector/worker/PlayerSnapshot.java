@@ -0,0 +1,110 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.potion.PotionEffect;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.ItemStackCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.LocationCodec;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.PotionEffectsCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of a player's syncable state.
+ *
+ * {@link #capture(Player)} must run on the main thread. It only copies: item stacks are
+ * cloned and potion effects collected, nothing is serialized. {@link #encode(boolean)} is pure
+ * and may run on any thread.
+ */
+final class PlayerSnapshot {
+
+    final UUID uuid;
+    final String name;
+
+    private final ItemStack[] main;
+    private final ItemStack[] offhand;
+    private final ItemStack[] armor;
+    private final ItemStack[] ender;
+
+    private final int xpLevel;
+    private final int xpTotal;
+    private final float xpProgress;
+    private final double health;
+    private final double maxHealth;
+    private final int food;
+    private final float saturation;
+    private final float exhaustion;
+    private final GameMode gameMode;
+    private final List<PotionEffect> effects;
+    private final Location bedSpawn;
+
+    private PlayerSnapshot(Player p) {
+        PlayerInventory inv = p.getInventory();
+        this.uuid = p.getUniqueId();
+        this.name = p.getName();
+        this.main = ItemStackCodec.copyOf(inv.getStorageContents());
+        this.offhand = ItemStackCodec.copyOf(new ItemStack[]{ inv.getItemInOffHand() });
+        this.armor = ItemStackCodec.copyOf(inv.getArmorContents());
+        this.ender = ItemStackCodec.copyOf(p.getEnderChest().getStorageContents());
+        this.xpLevel = p.getLevel();
+        this.xpTotal = p.getTotalExperience();
+        this.xpProgress = p.getExp();
+        this.maxHealth = maxHealthOf(p);
+        this.health = Math.max(0, Math.min(maxHealth, p.getHealth()));
+        this.food = p.getFoodLevel();
+        this.saturation = p.getSaturation();
+        this.exhaustion = p.getExhaustion();
+        this.gameMode = p.getGameMode();
+        this.effects = new ArrayList<>(p.getActivePotionEffects());
+        Location bed = p.getBedSpawnLocation();
+        this.bedSpawn = bed != null ? bed.clone() : null;
+    }
+
+    /**
+     * Copies the player's state. Main thread only.
+     */
+    static PlayerSnapshot capture(Player p) {
+        return new PlayerSnapshot(p);
+    }
+
+    /**
+     * Serializes the snapshot, gzipping inventories if compress is set. Safe on any thread.
+     */
+    Encoded encode(boolean compress) {
+        return new Encoded(
+                uuid,
+                name,
+                ItemStackCodec.encode(main, compress),
+                ItemStackCodec.encode(offhand, compress),
+                ItemStackCodec.encode(armor, compress),
+                ItemStackCodec.encode(ender, compress),
+                xpLevel, xpTotal, xpProgress,
+                health, maxHealth,
+                food, saturation, exhaustion,
+                gameMode != null ? gameMode.name() : null,
+                PotionEffectsCodec.serialize(effects),
+                LocationCodec.serialize(bedSpawn)
+        );
+    }
+
+    static double maxHealthOf(Player p) {
+        var attr = p.getAttribute(Attribute.MAX_HEALTH);
+        return attr != null ? attr.getValue() : 20.0;
+    }
+
+    /**
+     * Encoded form of a snapshot, ready to be written or compared against the DB row.
+     */
+    record Encoded(UUID uuid, String name,
+                   byte[] invMain, byte[] invOff, byte[] invArmor, byte[] ender,
+                   int xpLevel, int xpTotal, float xpProgress,
+                   double health, double maxHealth,
+                   int food, float saturation, float exhaustion,
+                   String gameMode, String potionEffects, String bedSpawn) {}
+}
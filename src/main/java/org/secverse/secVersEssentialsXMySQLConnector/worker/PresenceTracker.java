@@ -0,0 +1,170 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.DBCommands;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Keeps essentials_presence current: which server each player is on, and how their last
+ * session ended. Rows are written at join and quit; heartbeats for everyone online go out
+ * as one statement per interval.
+ *
+ * A session's quit_at is only recorded once its final flush has committed, which needs the
+ * handoff quit barrier; without handoff quits are recorded with quit_at 0. The row versions
+ * recorded with it let workers skip join reconciliation when the player was last here and their
+ * rows were not written since; quit_at itself is only a flag there, never compared to a clock.
+ */
+public final class PresenceTracker implements Listener {
+
+    private final Plugin plugin;
+    private final DBCommands db;
+    private final SyncExecutors executors;
+    private final HandoffCoordinator handoff; // may be null
+    private final String serverName;
+    private final Logger logger;
+    private final int heartbeatSeconds;
+
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+    private BukkitRunnable heartbeatTask;
+
+    public PresenceTracker(Plugin plugin, DBCommands db, SyncExecutors executors, HandoffCoordinator handoff, String serverName) {
+        this.plugin = plugin;
+        this.db = db;
+        this.executors = executors;
+        this.handoff = handoff;
+        this.serverName = serverName;
+        this.logger = plugin.getLogger();
+        this.heartbeatSeconds = Math.max(5, plugin.getConfig().getInt("presence.heartbeat_seconds", 30));
+    }
+
+    /**
+     * Ends sessions left over from a previous run, records players already online (reload)
+     * and starts the heartbeat.
+     */
+    public void start() {
+        try {
+            int stale = db.markAllAbsent(serverName, 0L);
+            if (stale > 0) logger.info("[Presence] ended " + stale + " sessions left from the last run");
+        } catch (SQLException ex) {
+            logger.warning("[Presence] ending old sessions failed: " + ex.getMessage());
+        }
+        for (Player p : Bukkit.getOnlinePlayers()) joined(p);
+        Bukkit.getPluginManager().registerEvents(this, plugin);
+
+        heartbeatTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                io(() -> heartbeat());
+            }
+        };
+        long period = heartbeatSeconds * 20L;
+        heartbeatTask.runTaskTimerAsynchronously(plugin, period, period);
+    }
+
+    public void stop() {
+        HandlerList.unregisterAll(this);
+        if (heartbeatTask != null) {
+            try { heartbeatTask.cancel(); } catch (Exception ignored) {}
+        }
+    }
+
+    /**
+     * Ends every session on this server. Call after the shutdown flush; flushed says whether
+     * it finished, which decides if the sessions count as cleanly ended.
+     */
+    public void leaveAll(boolean flushed) {
+        try {
+            db.markAllAbsent(serverName, flushed ? System.currentTimeMillis() : 0L);
+        } catch (SQLException ex) {
+            logger.warning("[Presence] ending sessions at shutdown failed: " + ex.getMessage());
+        }
+        online.clear();
+    }
+
+    /**
+     * Heartbeat interval; rows with an older heartbeat than a few of these are stale.
+     */
+    public int getHeartbeatSeconds() {
+        return heartbeatSeconds;
+    }
+
+    // ─────────────────────────── Events ───────────────────────────
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent e) {
+        joined(e.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        online.remove(id);
+
+        // After the final flush when handoff can tell us; that is what makes quit_at usable
+        Runnable clean = () -> leave(id, System.currentTimeMillis());
+        if (handoff != null && handoff.afterQuitFlush(id, clean)) return;
+        io(() -> leave(id, 0L));
+    }
+
+    // ─────────────────────────── Writes ───────────────────────────
+
+    private void joined(Player p) {
+        UUID id = p.getUniqueId();
+        String name = p.getName();
+        online.add(id);
+        // Behind any pending quit of the same player, so a rejoin never gets ended by it
+        Runnable write = () -> io(() -> {
+            try {
+                db.markPresent(id, name, serverName, System.currentTimeMillis());
+            } catch (SQLException ex) {
+                logger.warning("[Presence] join failed for " + name + ": " + ex.getMessage());
+            }
+        });
+        if (handoff != null) handoff.whenAcquired(id, write);
+        else write.run();
+    }
+
+    private void leave(UUID id, long quitAt) {
+        try {
+            db.markAbsent(id, serverName, quitAt);
+        } catch (SQLException ex) {
+            logger.warning("[Presence] quit failed for " + id + ": " + ex.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        List<UUID> ids = new ArrayList<>(online);
+        if (ids.isEmpty()) return;
+        try {
+            db.heartbeatPresence(serverName, ids, System.currentTimeMillis());
+        } catch (SQLException ex) {
+            logger.warning("[Presence] heartbeat failed: " + ex.getMessage());
+        }
+    }
+
+    private void io(Runnable r) {
+        try {
+            executors.io().execute(r);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down; leaveAll() covers it
+        }
+    }
+}
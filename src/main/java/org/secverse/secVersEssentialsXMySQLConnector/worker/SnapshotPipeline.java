@@ -0,0 +1,229 @@
+package org.secverse.secVersEssentialsXMySQLConnector.worker;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.secverse.secVersEssentialsXMySQLConnector.helper.SyncExecutors;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Three-stage export pipeline for player state.
+ *
+ * 1) Capture: main thread, at most captureBudget per tick. Copies the player's state.
+ * 2) Encode:  CPU pool. Serializes (and optionally compresses) the copy.
+ * 3) Write:   I/O executor. Runs the job's DB statements.
+ *
+ * Stages are bounded by permits, all taken at capture: an encode permit, returned once the
+ * copy is encoded, and a write permit, returned once it is written. When either stage falls
+ * behind, capture stops for the rest of the tick and the remaining jobs stay queued in order
+ * for later ticks; encoder threads never wait for the write stage.
+ *
+ * Urgent jobs (quit) bypass the budget and the bounds because the player is gone next tick.
+ */
+final class SnapshotPipeline {
+
+    /**
+     * A unit of export work. Callbacks run on the thread named in each method.
+     */
+    abstract static class Job {
+        final UUID uuid;
+        final String what;
+
+        Job(UUID uuid, String what) {
+            this.uuid = uuid;
+            this.what = what;
+        }
+
+        /** Main thread, right before capture. Return false to drop the job. */
+        boolean beforeCapture() { return true; }
+
+        /** I/O thread. Writes the encoded state. */
+        abstract void write(PlayerSnapshot.Encoded state) throws Exception;
+
+        /** Any thread. Called if encoding or writing failed. */
+        void failed(Exception ex) { }
+
+        /** Any thread. Always called exactly once when the job leaves the pipeline. */
+        void finished() { }
+    }
+
+    private final Plugin plugin;
+    private final Logger logger;
+    private final SyncExecutors executors;
+    private final long captureBudgetNanos;
+    private final boolean compress;
+
+    private final Queue<Job> pending = new ConcurrentLinkedQueue<>();
+    private final Semaphore encodeSlots;
+    private final Semaphore writeSlots;
+
+    private BukkitRunnable captureTask;
+
+    // Ticks in which capture stopped early because encoders were saturated
+    private volatile long backpressureTicks;
+    // Main-thread time spent capturing, summed over all ticks
+    private volatile long captureNanos;
+
+    SnapshotPipeline(Plugin plugin,
+                     SyncExecutors executors,
+                     long captureBudgetMs,
+                     int encodeQueue,
+                     int writeQueue,
+                     boolean compress) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.executors = executors;
+        this.captureBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, captureBudgetMs));
+        this.encodeSlots = new Semaphore(Math.max(1, encodeQueue));
+        this.writeSlots = new Semaphore(Math.max(1, writeQueue));
+        this.compress = compress;
+    }
+
+    void start() {
+        captureTask = new BukkitRunnable() {
+            @Override public void run() { captureTick(); }
+        };
+        captureTask.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    /**
+     * Stops capturing. Jobs still waiting for capture are finished without being written.
+     */
+    void stop() {
+        if (captureTask != null) try { captureTask.cancel(); } catch (Exception ignored) {}
+        Job j;
+        while ((j = pending.poll()) != null) j.finished();
+    }
+
+    /**
+     * Queues a job for budgeted capture. Thread-safe.
+     */
+    void submit(Job job) {
+        pending.add(job);
+    }
+
+    /**
+     * Captures immediately and bypasses all bounds. Main thread only.
+     */
+    void submitNow(Player p, Job job) {
+        if (!job.beforeCapture()) {
+            job.finished();
+            return;
+        }
+        encode(PlayerSnapshot.capture(p), job, false);
+    }
+
+    int backlog() {
+        return pending.size();
+    }
+
+    long backpressureTicks() {
+        return backpressureTicks;
+    }
+
+    long captureNanos() {
+        return captureNanos;
+    }
+
+    // ─────────────────────────── Stages ───────────────────────────
+
+    private void captureTick() {
+        if (pending.isEmpty()) return;
+        long start = System.nanoTime();
+        try {
+            captureFrom(start);
+        } finally {
+            captureNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void captureFrom(long start) {
+        Job job;
+        while ((job = pending.peek()) != null) {
+            if (!encodeSlots.tryAcquire()) {
+                backpressureTicks++;
+                return;
+            }
+            if (!writeSlots.tryAcquire()) {
+                encodeSlots.release();
+                backpressureTicks++;
+                return;
+            }
+            pending.poll();
+
+            Player p = Bukkit.getPlayer(job.uuid);
+            if (p == null || !job.beforeCapture()) {
+                encodeSlots.release();
+                writeSlots.release();
+                job.finished();
+                continue;
+            }
+            encode(PlayerSnapshot.capture(p), job, true);
+
+            if (System.nanoTime() - start >= captureBudgetNanos) return;
+        }
+    }
+
+    private void encode(PlayerSnapshot snap, Job job, boolean bounded) {
+        try {
+            executors.cpu().execute(() -> {
+                PlayerSnapshot.Encoded enc;
+                try {
+                    enc = snap.encode(compress);
+                } catch (Exception ex) {
+                    if (bounded) {
+                        encodeSlots.release();
+                        writeSlots.release();
+                    }
+                    fail(job, snap.name, ex);
+                    return;
+                }
+                // The write permit was taken at capture, so this never waits
+                if (bounded) encodeSlots.release();
+                write(enc, job, bounded);
+            });
+        } catch (RejectedExecutionException ex) {
+            if (bounded) {
+                encodeSlots.release();
+                writeSlots.release();
+            }
+            fail(job, snap.name, ex);
+        }
+    }
+
+    private void write(PlayerSnapshot.Encoded enc, Job job, boolean bounded) {
+        try {
+            executors.io().execute(() -> {
+                try {
+                    job.write(enc);
+                } catch (Exception ex) {
+                    fail(job, enc.name(), ex);
+                    return;
+                } finally {
+                    if (bounded) writeSlots.release();
+                }
+                job.finished();
+            });
+        } catch (RejectedExecutionException ex) {
+            if (bounded) writeSlots.release();
+            fail(job, enc.name(), ex);
+        }
+    }
+
+    private void fail(Job job, String name, Exception ex) {
+        try {
+            job.failed(ex);
+        } finally {
+            job.finished();
+        }
+        logger.warning("[PlayerDataWorker] " + job.what + " failed for " + name + ": " + ex.getMessage());
+    }
+}